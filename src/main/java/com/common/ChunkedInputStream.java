@@ -0,0 +1,79 @@
+package main.java.com.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+ * Decodes a Transfer-Encoding: chunked body (RFC 9112 §7.1) from the underlying
+ * connection. Chunk extensions and trailer fields are read and discarded.
+ * Closing does not close the connection.
+ */
+public class ChunkedInputStream extends InputStream {
+
+    private static final int MAX_LINE = 8192;  // chunk-size line / trailer line limit
+
+    private final InputStream in;     // connection stream (shared, not owned)
+    private long chunkLeft;           // bytes left in the current chunk
+    private boolean eof;              // last-chunk and trailers consumed
+
+    public ChunkedInputStream(InputStream in) {
+        this.in = in;
+    }
+
+    @Override public int read() throws IOException {
+        if (!ensureChunk()) return -1;
+        int b = in.read();
+        if (b == -1) throw new EOFException("Chunk truncated");
+        chunkLeft--;
+        return b;
+    }
+
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!ensureChunk()) return -1;
+        int n = in.read(b, off, (int) Math.min(len, chunkLeft));
+        if (n == -1) throw new EOFException("Chunk truncated");
+        chunkLeft -= n;
+        return n;
+    }
+
+    @Override public int available() throws IOException {
+        return eof ? 0 : (int) Math.min(in.available(), chunkLeft);
+    }
+
+    // last-chunk and trailers were read; the connection is at the next message
+    public boolean isFinished() { return eof; }
+
+    @Override public void close() { /* connection is owned by the caller */ }
+
+    // position on a chunk with data left; false once the terminating chunk is seen
+    private boolean ensureChunk() throws IOException {
+        if (eof) return false;
+        if (chunkLeft > 0) return true;
+
+        String line = HttpIo.readLine(in, MAX_LINE);
+        if (line == null) throw new EOFException("Missing chunk size");
+        if (line.isEmpty()) {                       // CRLF that closed the previous chunk
+            line = HttpIo.readLine(in, MAX_LINE);
+            if (line == null) throw new EOFException("Missing chunk size");
+        }
+        int semi = line.indexOf(';');               // drop chunk extensions
+        String size = (semi >= 0 ? line.substring(0, semi) : line).trim();
+        try {
+            chunkLeft = Long.parseLong(size, 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad chunk size: " + size);
+        }
+        if (chunkLeft < 0) throw new IOException("Bad chunk size: " + size);
+
+        if (chunkLeft == 0) {
+            // skip trailer fields up to the final blank line
+            String t;
+            while ((t = HttpIo.readLine(in, MAX_LINE)) != null && !t.isEmpty()) { }
+            eof = true;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+package main.java.com.common;
+
+import java.io.FileInputStream;
+import java.util.Properties;
+
+/*
+ * Utility for reading optional settings from api.properties (shared with ApiKeyConfig).
+ * Priority for each key: env var (capture.sampleRate → CAPTURE_SAMPLE_RATE) → properties file → default.
+ */
+public final class Config {
+
+    private static final String PROP_FILE = "api.properties"; // shared with ApiKeyConfig
+
+    // value for a key, or def when not configured
+    public static String get(String key, String def) {
+        String env = System.getenv(key.replace('.', '_').replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase());
+        if (env != null && !env.isBlank()) return env.trim();
+
+        try (FileInputStream in = new FileInputStream(PROP_FILE)) {
+            Properties p = new Properties();
+            p.load(in);
+            String v = p.getProperty(key);
+            if (v != null && !v.isBlank()) return v.trim();
+        } catch (Exception ignored) { /* file missing or unreadable → default */ }
+        return def;
+    }
+
+    public static int getInt(String key, int def) {
+        try { return Integer.parseInt(get(key, String.valueOf(def))); }
+        catch (NumberFormatException e) { return def; }
+    }
+
+    public static long getLong(String key, long def) {
+        try { return Long.parseLong(get(key, String.valueOf(def))); }
+        catch (NumberFormatException e) { return def; }
+    }
+
+    public static double getDouble(String key, double def) {
+        try { return Double.parseDouble(get(key, String.valueOf(def))); }
+        catch (NumberFormatException e) { return def; }
+    }
+
+    private Config() { } // prevent instantiation
+}
@@ -0,0 +1,46 @@
+package main.java.com.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+ * Body stream framed by Content-Length: yields exactly `length` bytes of the
+ * underlying connection, then EOF. Closing does not close the connection.
+ */
+public class FixedLengthInputStream extends InputStream {
+
+    private final InputStream in;     // connection stream (shared, not owned)
+    private long remaining;           // body bytes not yet returned
+
+    public FixedLengthInputStream(InputStream in, long length) {
+        this.in = in;
+        this.remaining = length;
+    }
+
+    @Override public int read() throws IOException {
+        if (remaining <= 0) return -1;
+        int b = in.read();
+        if (b == -1) throw new EOFException("Body ended " + remaining + " bytes early");
+        remaining--;
+        return b;
+    }
+
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining <= 0) return -1;
+        if (len == 0) return 0;
+        int n = in.read(b, off, (int) Math.min(len, remaining));
+        if (n == -1) throw new EOFException("Body ended " + remaining + " bytes early");
+        remaining -= n;
+        return n;
+    }
+
+    @Override public int available() throws IOException {
+        return (int) Math.min(in.available(), remaining);
+    }
+
+    // all `length` bytes were returned; the connection is at the next message
+    public boolean isFinished() { return remaining <= 0; }
+
+    @Override public void close() { /* connection is owned by the caller */ }
+}
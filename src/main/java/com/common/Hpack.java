@@ -0,0 +1,303 @@
+package main.java.com.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * HPACK header compression for HTTP/2 (RFC 7541): static table, dynamic table,
+ * integer / string primitives and one Encoder + Decoder per connection direction.
+ * Names and values are treated as ISO-8859-1 octets, like HTTP/1.1 header lines.
+ */
+public final class Hpack {
+
+    // One header field; names are lower-case on the wire
+    public record Header(String name, String value) {
+        int size() { return name.length() + value.length() + 32; } // RFC 7541 §4.1 entry size
+    }
+
+    public static final int DEFAULT_TABLE_SIZE = 4096;
+
+    private static final Header[] STATIC = {
+            null,
+            new Header(":authority", ""),
+            new Header(":method", "GET"),
+            new Header(":method", "POST"),
+            new Header(":path", "/"),
+            new Header(":path", "/index.html"),
+            new Header(":scheme", "http"),
+            new Header(":scheme", "https"),
+            new Header(":status", "200"),
+            new Header(":status", "204"),
+            new Header(":status", "206"),
+            new Header(":status", "304"),
+            new Header(":status", "400"),
+            new Header(":status", "404"),
+            new Header(":status", "500"),
+            new Header("accept-charset", ""),
+            new Header("accept-encoding", "gzip, deflate"),
+            new Header("accept-language", ""),
+            new Header("accept-ranges", ""),
+            new Header("accept", ""),
+            new Header("access-control-allow-origin", ""),
+            new Header("age", ""),
+            new Header("allow", ""),
+            new Header("authorization", ""),
+            new Header("cache-control", ""),
+            new Header("content-disposition", ""),
+            new Header("content-encoding", ""),
+            new Header("content-language", ""),
+            new Header("content-length", ""),
+            new Header("content-location", ""),
+            new Header("content-range", ""),
+            new Header("content-type", ""),
+            new Header("cookie", ""),
+            new Header("date", ""),
+            new Header("etag", ""),
+            new Header("expect", ""),
+            new Header("expires", ""),
+            new Header("from", ""),
+            new Header("host", ""),
+            new Header("if-match", ""),
+            new Header("if-modified-since", ""),
+            new Header("if-none-match", ""),
+            new Header("if-range", ""),
+            new Header("if-unmodified-since", ""),
+            new Header("last-modified", ""),
+            new Header("link", ""),
+            new Header("location", ""),
+            new Header("max-forwards", ""),
+            new Header("proxy-authenticate", ""),
+            new Header("proxy-authorization", ""),
+            new Header("range", ""),
+            new Header("referer", ""),
+            new Header("refresh", ""),
+            new Header("retry-after", ""),
+            new Header("server", ""),
+            new Header("set-cookie", ""),
+            new Header("strict-transport-security", ""),
+            new Header("transfer-encoding", ""),
+            new Header("user-agent", ""),
+            new Header("vary", ""),
+            new Header("via", ""),
+            new Header("www-authenticate", ""),
+    };
+
+    private static final Map<Header,Integer> STATIC_FULL = new HashMap<>(); // exact (name, value) → index
+    private static final Map<String,Integer> STATIC_NAME = new HashMap<>(); // name → lowest index
+    static {
+        for (int i = STATIC.length - 1; i > 0; i--) {
+            STATIC_FULL.put(STATIC[i], i);
+            STATIC_NAME.put(STATIC[i].name(), i);
+        }
+    }
+
+    // ----- Dynamic table (shared by encoder and decoder) -----
+
+    private static class DynamicTable {
+        final ArrayDeque<Header> entries = new ArrayDeque<>(); // newest first (index 62)
+        int size;                                              // sum of entry sizes
+        int maxSize = DEFAULT_TABLE_SIZE;
+
+        Header get(int index) throws IOException {
+            if (index <= 0) throw new IOException("HPACK index 0");
+            if (index < STATIC.length) return STATIC[index];
+            int i = index - STATIC.length;
+            if (i >= entries.size()) throw new IOException("HPACK index out of range: " + index);
+            Iterator<Header> it = entries.iterator();
+            while (i-- > 0) it.next();
+            return it.next();
+        }
+
+        void add(Header h) {
+            size += h.size();
+            entries.addFirst(h);
+            evict(); // an entry larger than the table simply empties it
+        }
+
+        void resize(int max) {
+            maxSize = max;
+            evict();
+        }
+
+        private void evict() {
+            while (size > maxSize && !entries.isEmpty()) size -= entries.removeLast().size();
+        }
+    }
+
+    // ----- Decoder -----
+
+    public static final class Decoder {
+        private final DynamicTable table = new DynamicTable();
+        private final int settingsLimit; // our SETTINGS_HEADER_TABLE_SIZE
+
+        public Decoder(int settingsLimit) {
+            this.settingsLimit = settingsLimit;
+            table.maxSize = settingsLimit;
+        }
+
+        // decode one complete header block (HEADERS + CONTINUATION payloads)
+        public List<Header> decode(byte[] block) throws IOException {
+            List<Header> out = new ArrayList<>();
+            int[] pos = {0};
+            while (pos[0] < block.length) {
+                int b = block[pos[0]] & 0xFF;
+                if ((b & 0x80) != 0) {                              // indexed field
+                    out.add(table.get(readInt(block, pos, 7)));
+                } else if ((b & 0x40) != 0) {                       // literal, incremental indexing
+                    Header h = readLiteral(block, pos, 6);
+                    table.add(h);
+                    out.add(h);
+                } else if ((b & 0x20) != 0) {                       // dynamic table size update
+                    int max = readInt(block, pos, 5);
+                    if (max > settingsLimit) throw new IOException("HPACK table size " + max + " over limit");
+                    table.resize(max);
+                } else {                                            // literal without / never indexed
+                    out.add(readLiteral(block, pos, 4));
+                }
+            }
+            return out;
+        }
+
+        private Header readLiteral(byte[] block, int[] pos, int prefix) throws IOException {
+            int nameIndex = readInt(block, pos, prefix);
+            String name = nameIndex == 0 ? readString(block, pos) : table.get(nameIndex).name();
+            return new Header(name, readString(block, pos));
+        }
+    }
+
+    // ----- Encoder -----
+
+    public static final class Encoder {
+        // values that change per message – indexing them would only churn the table
+        private static final Set<String> NO_INDEX = Set.of(
+                ":path", "content-length", "content-range", "date", "etag",
+                "if-none-match", "if-modified-since", "last-modified", "age");
+        // credentials must never be stored by intermediaries (RFC 7541 §7.1.3)
+        private static final Set<String> SENSITIVE = Set.of(
+                "authorization", "proxy-authorization", "cookie", "set-cookie", "x-api-key");
+
+        private final DynamicTable table = new DynamicTable();
+        private int pendingResize = -1; // size update to announce at the start of the next block
+
+        // apply the peer's SETTINGS_HEADER_TABLE_SIZE (we never use more than the default)
+        public void setMaxTableSize(int peerLimit) {
+            int max = Math.min(peerLimit, DEFAULT_TABLE_SIZE);
+            if (max != table.maxSize) {
+                table.resize(max);
+                pendingResize = max;
+            }
+        }
+
+        public byte[] encode(List<Header> headers) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+            if (pendingResize >= 0) {
+                writeInt(out, 0x20, 5, pendingResize);
+                pendingResize = -1;
+            }
+            for (Header h : headers) {
+                int full = 0, nameOnly = 0;
+                Integer s = STATIC_FULL.get(h);
+                if (s != null) {
+                    full = s;
+                } else {
+                    Integer n = STATIC_NAME.get(h.name());
+                    if (n != null) nameOnly = n;
+                    int i = STATIC.length;
+                    for (Header d : table.entries) {
+                        if (d.name().equals(h.name())) {
+                            if (d.value().equals(h.value())) { full = i; break; }
+                            if (nameOnly == 0) nameOnly = i;
+                        }
+                        i++;
+                    }
+                }
+
+                if (full > 0) {
+                    writeInt(out, 0x80, 7, full);
+                } else if (SENSITIVE.contains(h.name())) {
+                    writeInt(out, 0x10, 4, nameOnly);               // never indexed
+                    if (nameOnly == 0) writeString(out, h.name());
+                    writeString(out, h.value());
+                } else if (NO_INDEX.contains(h.name())) {
+                    writeInt(out, 0x00, 4, nameOnly);               // without indexing
+                    if (nameOnly == 0) writeString(out, h.name());
+                    writeString(out, h.value());
+                } else {
+                    writeInt(out, 0x40, 6, nameOnly);               // incremental indexing
+                    if (nameOnly == 0) writeString(out, h.name());
+                    writeString(out, h.value());
+                    table.add(h);
+                }
+            }
+            return out.toByteArray();
+        }
+    }
+
+    // ----- Primitives (RFC 7541 §5) -----
+
+    private static int readInt(byte[] b, int[] pos, int prefix) throws IOException {
+        int mask = (1 << prefix) - 1;
+        int value = b[pos[0]++] & mask;
+        if (value < mask) return value;
+        int shift = 0;
+        while (true) {
+            if (pos[0] >= b.length) throw new IOException("HPACK integer truncated");
+            int x = b[pos[0]++] & 0xFF;
+            value += (x & 0x7F) << shift;
+            if (value < 0 || shift > 21) throw new IOException("HPACK integer overflow");
+            if ((x & 0x80) == 0) return value;
+            shift += 7;
+        }
+    }
+
+    private static String readString(byte[] b, int[] pos) throws IOException {
+        if (pos[0] >= b.length) throw new IOException("HPACK string truncated");
+        boolean huffman = (b[pos[0]] & 0x80) != 0;
+        int len = readInt(b, pos, 7);
+        if (pos[0] + len > b.length) throw new IOException("HPACK string truncated");
+        byte[] raw = huffman
+                ? HpackHuffman.decode(b, pos[0], len)
+                : Arrays.copyOfRange(b, pos[0], pos[0] + len);
+        pos[0] += len;
+        return new String(raw, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int flags, int prefix, int value) {
+        int mask = (1 << prefix) - 1;
+        if (value < mask) {
+            out.write(flags | value);
+            return;
+        }
+        out.write(flags | mask);
+        value -= mask;
+        while (value >= 0x80) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    // Huffman-code the string whenever that is shorter
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        byte[] raw = s.getBytes(StandardCharsets.ISO_8859_1);
+        int hlen = HpackHuffman.encodedLength(raw);
+        if (hlen < raw.length) {
+            writeInt(out, 0x80, 7, hlen);
+            HpackHuffman.encode(raw, out);
+        } else {
+            writeInt(out, 0x00, 7, raw.length);
+            out.write(raw, 0, raw.length);
+        }
+    }
+
+    private Hpack() { } // prevent instantiation
+}
@@ -0,0 +1,108 @@
+package main.java.com.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/*
+ * Static Huffman code of HPACK (RFC 7541 Appendix B).
+ * The code is canonical, so only the bit length of each symbol is tabulated;
+ * codes are assigned at class load in (length, symbol) order. Symbol 256 is EOS.
+ */
+public final class HpackHuffman {
+
+    // code length in bits for symbols 0..256
+    private static final byte[] LENGTHS = {
+            13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28,   //   0..15
+            28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,   //  16..31
+             6, 10, 10, 12, 13,  6,  8, 11, 10, 10,  8, 11,  8,  6,  6,  6,   //  ' '..'/'
+             5,  5,  5,  6,  6,  6,  6,  6,  6,  6,  7,  8, 15,  6, 12, 10,   //  '0'..'?'
+            13,  6,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,  7,   //  '@'..'O'
+             7,  7,  7,  7,  7,  7,  7,  7,  8,  7,  8, 13, 19, 13, 14,  6,   //  'P'..'_'
+            15,  5,  6,  5,  6,  5,  6,  6,  6,  5,  7,  7,  6,  6,  6,  5,   //  '`'..'o'
+             6,  7,  6,  5,  5,  6,  7,  7,  7,  7,  7, 15, 11, 14, 13, 28,   //  'p'..127
+            20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,   // 128..143
+            24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,   // 144..159
+            22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23,   // 160..175
+            21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,   // 176..191
+            26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25,   // 192..207
+            19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,   // 208..223
+            20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,   // 224..239
+            26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26,   // 240..255
+            30                                                                // EOS
+    };
+
+    private static final int[] CODES = new int[257];  // right-aligned code bits per symbol
+    private static final int[] TREE;                   // decode trie: [node*2 + bit] → child, or ~symbol for a leaf
+
+    static {
+        // canonical assignment: shorter codes first, ties broken by symbol value
+        int code = 0, prevLen = 0;
+        for (int len = 1; len <= 30; len++) {
+            for (int sym = 0; sym < 257; sym++) {
+                if (LENGTHS[sym] != len) continue;
+                code <<= (len - prevLen);
+                prevLen = len;
+                CODES[sym] = code++;
+            }
+        }
+
+        // binary trie with at most 256 internal nodes
+        int[] tree = new int[2 * 256];
+        int nodes = 1;
+        for (int sym = 0; sym < 256; sym++) {
+            int node = 0;
+            for (int i = LENGTHS[sym] - 1; i > 0; i--) {
+                int slot = node * 2 + ((CODES[sym] >>> i) & 1);
+                if (tree[slot] == 0) tree[slot] = nodes++;
+                node = tree[slot];
+            }
+            tree[node * 2 + (CODES[sym] & 1)] = ~sym;
+        }
+        TREE = tree;
+    }
+
+    // number of bytes s would take once Huffman-coded
+    public static int encodedLength(byte[] s) {
+        long bits = 0;
+        for (byte b : s) bits += LENGTHS[b & 0xFF];
+        return (int) ((bits + 7) >>> 3);
+    }
+
+    public static void encode(byte[] s, ByteArrayOutputStream out) {
+        long acc = 0;   // pending bits, right-aligned
+        int  n   = 0;   // number of pending bits
+        for (byte b : s) {
+            int sym = b & 0xFF;
+            acc = (acc << LENGTHS[sym]) | CODES[sym];
+            n += LENGTHS[sym];
+            while (n >= 8) {
+                n -= 8;
+                out.write((int) (acc >>> n));
+            }
+        }
+        if (n > 0) out.write((int) ((acc << (8 - n)) | (0xFF >>> n))); // pad with EOS prefix (all ones)
+    }
+
+    public static byte[] decode(byte[] src, int off, int len) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(len * 2);
+        int node = 0, depth = 0;   // depth = bits consumed since the last symbol
+        boolean allOnes = true;    // those bits are all 1 (valid EOS padding)
+        for (int i = off; i < off + len; i++) {
+            for (int bit = 7; bit >= 0; bit--) {
+                int b = (src[i] >>> bit) & 1;
+                int next = TREE[node * 2 + b];
+                if (next == 0) throw new IOException("Invalid Huffman code");
+                if (next < 0) {
+                    out.write(~next);
+                    node = 0; depth = 0; allOnes = true;
+                } else {
+                    node = next; depth++; allOnes &= (b == 1);
+                }
+            }
+        }
+        if (depth > 7 || !allOnes) throw new IOException("Invalid Huffman padding");
+        return out.toByteArray();
+    }
+
+    private HpackHuffman() { } // prevent instantiation
+}
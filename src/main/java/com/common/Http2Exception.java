@@ -0,0 +1,16 @@
+package main.java.com.common;
+
+import java.io.IOException;
+
+// Connection error carrying the HTTP/2 error code to report in GOAWAY (RFC 9113 §5.4.1).
+public class Http2Exception extends IOException {
+    private static final long serialVersionUID = 1L;
+    private final int errorCode;                  // e.g. Http2Frame.PROTOCOL_ERROR
+
+    public Http2Exception(int errorCode, String message) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
+    public int getErrorCode() { return errorCode; }
+}
@@ -0,0 +1,85 @@
+package main.java.com.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * One HTTP/2 frame (RFC 9113 §4): 9-byte header + payload, plus the protocol
+ * constants shared by the server and client sessions.
+ */
+public record Http2Frame(int type, int flags, int streamId, byte[] payload) {
+
+    public static final byte[] PREFACE =
+            "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    // frame types
+    public static final int DATA = 0x0, HEADERS = 0x1, PRIORITY = 0x2, RST_STREAM = 0x3,
+            SETTINGS = 0x4, PUSH_PROMISE = 0x5, PING = 0x6, GOAWAY = 0x7,
+            WINDOW_UPDATE = 0x8, CONTINUATION = 0x9;
+
+    // flags
+    public static final int END_STREAM = 0x1, ACK = 0x1, END_HEADERS = 0x4,
+            PADDED = 0x8, PRIORITY_FLAG = 0x20;
+
+    // SETTINGS identifiers
+    public static final int HEADER_TABLE_SIZE = 0x1, ENABLE_PUSH = 0x2, MAX_CONCURRENT_STREAMS = 0x3,
+            INITIAL_WINDOW_SIZE = 0x4, MAX_FRAME_SIZE = 0x5, MAX_HEADER_LIST_SIZE = 0x6;
+
+    // error codes
+    public static final int NO_ERROR = 0x0, PROTOCOL_ERROR = 0x1, INTERNAL_ERROR = 0x2,
+            FLOW_CONTROL_ERROR = 0x3, STREAM_CLOSED = 0x5, FRAME_SIZE_ERROR = 0x6,
+            REFUSED_STREAM = 0x7, CANCEL = 0x8, COMPRESSION_ERROR = 0x9;
+
+    public static final int DEFAULT_MAX_FRAME = 16384;
+    public static final int DEFAULT_WINDOW    = 65535;
+
+    public boolean has(int flag) { return (flags & flag) != 0; }
+
+    // read the next frame; null on clean EOF between frames
+    public static Http2Frame read(InputStream in, int maxFrameSize) throws IOException {
+        byte[] h = new byte[9];
+        int n = in.readNBytes(h, 0, 9);
+        if (n == 0) return null;
+        if (n < 9) throw new EOFException("Truncated frame header");
+        int len = ((h[0] & 0xFF) << 16) | ((h[1] & 0xFF) << 8) | (h[2] & 0xFF);
+        if (len > maxFrameSize) throw new Http2Exception(FRAME_SIZE_ERROR, "Frame of " + len + " bytes");
+        byte[] payload = in.readNBytes(len);
+        if (payload.length < len) throw new EOFException("Truncated frame payload");
+        return new Http2Frame(h[3] & 0xFF, h[4] & 0xFF, readInt(h, 5) & 0x7FFFFFFF, payload);
+    }
+
+    public static void write(OutputStream out, int type, int flags, int streamId,
+                             byte[] p, int off, int len) throws IOException {
+        byte[] h = {
+                (byte) (len >>> 16), (byte) (len >>> 8), (byte) len,
+                (byte) type, (byte) flags,
+                (byte) (streamId >>> 24), (byte) (streamId >>> 16), (byte) (streamId >>> 8), (byte) streamId
+        };
+        out.write(h);
+        if (len > 0) out.write(p, off, len);
+    }
+
+    // big-endian 32-bit int at `off`
+    public static int readInt(byte[] b, int off) {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16)
+                | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+
+    public static byte[] intBytes(int v) {
+        return new byte[] { (byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v };
+    }
+
+    // encode SETTINGS pairs given as {id, value, id, value, ...}
+    public static byte[] settings(int... pairs) {
+        byte[] p = new byte[pairs.length * 3];
+        for (int i = 0, o = 0; i < pairs.length; i += 2, o += 6) {
+            p[o] = (byte) (pairs[i] >>> 8);
+            p[o + 1] = (byte) pairs[i];
+            System.arraycopy(intBytes(pairs[i + 1]), 0, p, o + 2, 4);
+        }
+        return p;
+    }
+}
@@ -0,0 +1,486 @@
+package main.java.com.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static main.java.com.common.Http2Frame.*;
+
+/*
+ * Transport-independent HTTP/2 connection core shared by server and client:
+ * frame loop, SETTINGS / PING / GOAWAY handling, HPACK state, the stream table
+ * and flow control in both directions. Subclasses decide what a header block
+ * means (a new request on the server, a response on the client).
+ *
+ * Threading: one reader thread runs readLoop(); any number of stream threads
+ * call sendHeaders / sendData, which serialize on writeLock and block on
+ * flowLock while the peer's send window is exhausted.
+ */
+public abstract class Http2Session {
+
+    private static final int CONN_WINDOW      = 16 * 1024 * 1024; // our connection-level receive window
+    private static final int MAX_HEADER_BLOCK = 256 * 1024;       // cap on HEADERS + CONTINUATION bytes
+
+    protected final InputStream in;
+    private final OutputStream out;
+    private final Object writeLock = new Object();  // frames (and encoder state) leave in one order
+    private final Object flowLock  = new Object();  // send windows and stream-slot waits
+
+    private final Hpack.Encoder encoder = new Hpack.Encoder();
+    private final Hpack.Decoder decoder = new Hpack.Decoder(Hpack.DEFAULT_TABLE_SIZE);
+    protected final Map<Integer,Stream> streams = new ConcurrentHashMap<>();
+    protected final int maxConcurrentStreams;       // how many streams the peer may open
+
+    private int  peerMaxFrame      = DEFAULT_MAX_FRAME;
+    private int  peerInitialWindow = DEFAULT_WINDOW;  // guarded by flowLock
+    protected volatile int peerMaxConcurrent = Integer.MAX_VALUE;
+    private long connSendWindow    = DEFAULT_WINDOW;  // guarded by flowLock
+    private int  connRecvUnacked;                     // reader thread only
+    protected int lastPeerStreamId;                   // reader thread only
+    protected volatile boolean closed;                // connection unusable
+    protected volatile boolean goingAway;             // peer sent GOAWAY
+
+    protected Http2Session(InputStream in, OutputStream out, int maxConcurrentStreams) {
+        this.in = in;
+        this.out = out;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    // ----- Hooks -----
+
+    // a complete header block arrived on `streamId`
+    protected abstract void onHeaders(int streamId, List<Hpack.Header> fields, boolean endStream) throws IOException;
+
+    // peer sent GOAWAY; streams above lastStreamId were not processed
+    protected void onGoAway(int lastStreamId) { }
+
+    // stream was reset by the peer or failed with the connection
+    protected void onReset(int streamId, int errorCode) { }
+
+    // about to block for the next frame (e.g. to arm an idle timeout)
+    protected void awaitingFrame() { }
+
+    // ----- Connection setup -----
+
+    // our SETTINGS (+ connection window bump); the client writes the preface first
+    protected void sendSettings(boolean client) throws IOException {
+        synchronized (writeLock) {
+            if (client) out.write(PREFACE);
+            byte[] s = settings(MAX_CONCURRENT_STREAMS, maxConcurrentStreams,
+                                INITIAL_WINDOW_SIZE, DEFAULT_WINDOW,
+                                ENABLE_PUSH, 0);
+            if (!client) s = Arrays.copyOf(s, 12); // ENABLE_PUSH is client-only
+            Http2Frame.write(out, SETTINGS, 0, 0, s, 0, s.length);
+            byte[] inc = intBytes(CONN_WINDOW - DEFAULT_WINDOW);
+            Http2Frame.write(out, WINDOW_UPDATE, 0, 0, inc, 0, 4);
+            out.flush();
+        }
+    }
+
+    // ----- Read side -----
+
+    // process frames until EOF or a connection error; all streams are failed afterwards
+    protected void readLoop() throws IOException {
+        try {
+            Http2Frame f;
+            while (!closed) {
+                awaitingFrame();
+                if ((f = Http2Frame.read(in, DEFAULT_MAX_FRAME)) == null) break;
+                handleFrame(f);
+            }
+        } catch (Http2Exception e) {
+            goAway(e.getErrorCode(), e.getMessage());
+        } finally {
+            closed = true;
+            for (Stream s : streams.values()) {
+                s.reset(CANCEL);
+                onReset(s.id, CANCEL);
+            }
+            streams.clear();
+            synchronized (flowLock) { flowLock.notifyAll(); }
+        }
+    }
+
+    private void handleFrame(Http2Frame f) throws IOException {
+        switch (f.type()) {
+            case DATA          -> onData(f);
+            case HEADERS       -> onHeaderBlock(f);
+            case PRIORITY      -> { } // advisory only
+            case RST_STREAM    -> {
+                Stream s = streams.remove(f.streamId());
+                if (s != null) {
+                    s.reset(readInt(f.payload(), 0));
+                    onReset(s.id, readInt(f.payload(), 0));
+                }
+                synchronized (flowLock) { flowLock.notifyAll(); }
+            }
+            case SETTINGS      -> {
+                if (f.streamId() != 0) throw new Http2Exception(PROTOCOL_ERROR, "SETTINGS on a stream");
+                if (f.has(ACK)) return;
+                applySettings(f.payload());
+                writeFrame(SETTINGS, ACK, 0, new byte[0]);
+            }
+            case PING          -> {
+                if (f.payload().length != 8) throw new Http2Exception(FRAME_SIZE_ERROR, "PING size");
+                if (!f.has(ACK)) writeFrame(PING, ACK, 0, f.payload());
+            }
+            case GOAWAY        -> {
+                goingAway = true;
+                onGoAway(readInt(f.payload(), 0) & 0x7FFFFFFF);
+            }
+            case WINDOW_UPDATE -> onWindowUpdate(f);
+            case PUSH_PROMISE, CONTINUATION ->
+                    throw new Http2Exception(PROTOCOL_ERROR, "Unexpected frame type " + f.type());
+            default            -> { } // unknown frame types are ignored (RFC 9113 §4.1)
+        }
+    }
+
+    private void onData(Http2Frame f) throws IOException {
+        if (f.streamId() == 0) throw new Http2Exception(PROTOCOL_ERROR, "DATA on stream 0");
+        byte[] p = f.payload();
+
+        // connection window is replenished on receipt; per-stream buffering is bounded by the stream window
+        connRecvUnacked += p.length;
+        if (connRecvUnacked >= CONN_WINDOW / 2) {
+            writeFrame(WINDOW_UPDATE, 0, 0, intBytes(connRecvUnacked));
+            connRecvUnacked = 0;
+        }
+
+        Stream s = streams.get(f.streamId());
+        if (s == null || s.remoteClosed) {
+            resetClosed(f.streamId());
+            return;
+        }
+        int start = f.has(PADDED) ? 1 : 0;
+        int end   = p.length - (f.has(PADDED) ? p[0] & 0xFF : 0);
+        if (start > end) throw new Http2Exception(PROTOCOL_ERROR, "Bad padding");
+        if (!s.takeRecvWindow(p.length)) {
+            resetStream(s, FLOW_CONTROL_ERROR);
+            return;
+        }
+        if (p.length > end - start) s.credit(p.length - (end - start)); // padding is never read by the body consumer
+        if (end > start) s.body.offer(Arrays.copyOfRange(p, start, end));
+        if (f.has(END_STREAM)) remoteEnd(s);
+    }
+
+    private void onHeaderBlock(Http2Frame f) throws IOException {
+        if (f.streamId() == 0) throw new Http2Exception(PROTOCOL_ERROR, "HEADERS on stream 0");
+        byte[] p = f.payload();
+        int start = 0, end = p.length;
+        if (f.has(PADDED)) { start = 1; end -= p[0] & 0xFF; }
+        if (f.has(PRIORITY_FLAG)) start += 5;
+        if (start > end) throw new Http2Exception(PROTOCOL_ERROR, "Bad HEADERS padding");
+
+        byte[] block = Arrays.copyOfRange(p, start, end);
+        boolean endHeaders = f.has(END_HEADERS);
+        while (!endHeaders) {
+            Http2Frame c = Http2Frame.read(in, DEFAULT_MAX_FRAME);
+            if (c == null || c.type() != CONTINUATION || c.streamId() != f.streamId()) {
+                throw new Http2Exception(PROTOCOL_ERROR, "Expected CONTINUATION");
+            }
+            if (block.length + c.payload().length > MAX_HEADER_BLOCK) {
+                throw new Http2Exception(PROTOCOL_ERROR, "Header block too large");
+            }
+            int off = block.length;
+            block = Arrays.copyOf(block, off + c.payload().length);
+            System.arraycopy(c.payload(), 0, block, off, c.payload().length);
+            endHeaders = c.has(END_HEADERS);
+        }
+
+        List<Hpack.Header> fields;
+        try {
+            fields = decoder.decode(block);
+        } catch (IOException e) {
+            throw new Http2Exception(COMPRESSION_ERROR, e.getMessage());
+        }
+        onHeaders(f.streamId(), fields, f.has(END_STREAM));
+    }
+
+    private void applySettings(byte[] p) throws IOException {
+        if (p.length % 6 != 0) throw new Http2Exception(FRAME_SIZE_ERROR, "SETTINGS size");
+        for (int i = 0; i < p.length; i += 6) {
+            int id = ((p[i] & 0xFF) << 8) | (p[i + 1] & 0xFF);
+            int v  = readInt(p, i + 2);
+            switch (id) {
+                case HEADER_TABLE_SIZE      -> { synchronized (writeLock) { encoder.setMaxTableSize(v); } }
+                case MAX_CONCURRENT_STREAMS -> peerMaxConcurrent = v;
+                case INITIAL_WINDOW_SIZE    -> {
+                    if (v < 0) throw new Http2Exception(FLOW_CONTROL_ERROR, "Window too large");
+                    synchronized (flowLock) {
+                        int delta = v - peerInitialWindow;
+                        peerInitialWindow = v;
+                        for (Stream s : streams.values()) s.sendWindow += delta;
+                        flowLock.notifyAll();
+                    }
+                }
+                case MAX_FRAME_SIZE         -> {
+                    if (v < DEFAULT_MAX_FRAME || v > 0xFFFFFF) throw new Http2Exception(PROTOCOL_ERROR, "MAX_FRAME_SIZE");
+                    peerMaxFrame = v;
+                }
+                default -> { } // ENABLE_PUSH, MAX_HEADER_LIST_SIZE, unknown: nothing to do
+            }
+        }
+    }
+
+    // settings carried in the HTTP2-Settings header of an h2c upgrade request
+    protected void applyUpgradeSettings(byte[] payload) throws IOException {
+        applySettings(payload);
+    }
+
+    private void onWindowUpdate(Http2Frame f) throws IOException {
+        int inc = readInt(f.payload(), 0) & 0x7FFFFFFF;
+        synchronized (flowLock) {
+            if (f.streamId() == 0) {
+                if (inc == 0) throw new Http2Exception(PROTOCOL_ERROR, "Zero WINDOW_UPDATE");
+                connSendWindow += inc;
+                if (connSendWindow > Integer.MAX_VALUE) throw new Http2Exception(FLOW_CONTROL_ERROR, "Window overflow");
+            } else {
+                Stream s = streams.get(f.streamId());
+                if (s == null) return;
+                s.sendWindow += inc;
+                if (inc == 0 || s.sendWindow > Integer.MAX_VALUE) {
+                    resetStream(s, inc == 0 ? PROTOCOL_ERROR : FLOW_CONTROL_ERROR);
+                }
+            }
+            flowLock.notifyAll();
+        }
+    }
+
+    // ----- Write side -----
+
+    // encode and send a header block, split into CONTINUATION frames as needed
+    public void sendHeaders(Stream s, List<Hpack.Header> fields, boolean endStream) throws IOException {
+        synchronized (writeLock) {
+            if (closed) throw new IOException("HTTP/2 connection closed");
+            byte[] block = encoder.encode(fields);
+            int off = 0;
+            boolean first = true;
+            do {
+                int n = Math.min(block.length - off, peerMaxFrame);
+                boolean last = off + n == block.length;
+                int flags = (last ? END_HEADERS : 0) | (first && endStream ? END_STREAM : 0);
+                Http2Frame.write(out, first ? HEADERS : CONTINUATION, flags, s.id, block, off, n);
+                off += n;
+                first = false;
+            } while (off < block.length);
+            out.flush();
+        }
+        if (endStream) localEnd(s);
+    }
+
+    // send body bytes within the peer's connection and stream windows; blocks while they are exhausted
+    public void sendData(Stream s, byte[] b, int off, int len, boolean endStream) throws IOException {
+        do {
+            int n = len == 0 ? 0 : acquireWindow(s, Math.min(len, peerMaxFrame));
+            boolean last = endStream && n == len;
+            synchronized (writeLock) {
+                if (closed) throw new IOException("HTTP/2 connection closed");
+                Http2Frame.write(out, DATA, last ? END_STREAM : 0, s.id, b, off, n);
+                out.flush();
+            }
+            off += n;
+            len -= n;
+        } while (len > 0);
+        if (endStream) localEnd(s);
+    }
+
+    private int acquireWindow(Stream s, int want) throws IOException {
+        synchronized (flowLock) {
+            while (true) {
+                if (s.resetCode >= 0 || closed) throw new IOException("Stream " + s.id + " closed");
+                long avail = Math.min(connSendWindow, s.sendWindow);
+                if (avail > 0) {
+                    int n = (int) Math.min(avail, want);
+                    connSendWindow -= n;
+                    s.sendWindow -= n;
+                    return n;
+                }
+                waitFlow();
+            }
+        }
+    }
+
+    public void resetStream(Stream s, int code) throws IOException {
+        streams.remove(s.id);
+        s.reset(code);
+        writeFrame(RST_STREAM, 0, s.id, intBytes(code));
+        synchronized (flowLock) { flowLock.notifyAll(); }
+    }
+
+    // a frame for a stream that is already closed or reset: a stream error (RFC 9113 §5.1),
+    // the other streams of the connection carry on
+    protected void resetClosed(int streamId) throws IOException {
+        writeFrame(RST_STREAM, 0, streamId, intBytes(STREAM_CLOSED));
+    }
+
+    // stop accepting streams and tell the peer why
+    public void goAway(int code, String debug) {
+        try {
+            byte[] msg = debug == null ? new byte[0] : debug.getBytes(StandardCharsets.UTF_8);
+            byte[] p = Arrays.copyOf(intBytes(lastPeerStreamId), 8 + msg.length);
+            System.arraycopy(intBytes(code), 0, p, 4, 4);
+            System.arraycopy(msg, 0, p, 8, msg.length);
+            writeFrame(GOAWAY, 0, 0, p);
+        } catch (IOException ignored) { /* peer already gone */ }
+        closed = true;
+    }
+
+    private void writeFrame(int type, int flags, int streamId, byte[] p) throws IOException {
+        synchronized (writeLock) {
+            Http2Frame.write(out, type, flags, streamId, p, 0, p.length);
+            out.flush();
+        }
+    }
+
+    // ----- Stream bookkeeping -----
+
+    protected Stream openStream(int id) {
+        Stream s = new Stream(id);
+        synchronized (flowLock) { s.sendWindow = peerInitialWindow; }
+        streams.put(id, s);
+        return s;
+    }
+
+    protected void remoteEnd(Stream s) {
+        s.remoteClosed = true;
+        s.body.finish();
+        closeIfDone(s);
+    }
+
+    private void localEnd(Stream s) {
+        s.localClosed = true;
+        closeIfDone(s);
+    }
+
+    private void closeIfDone(Stream s) {
+        if (s.localClosed && s.remoteClosed && streams.remove(s.id) != null) {
+            synchronized (flowLock) { flowLock.notifyAll(); }
+        }
+    }
+
+    // block until fewer than `limit` streams are open (client side of MAX_CONCURRENT_STREAMS)
+    protected void awaitStreamSlot(int limit) throws IOException {
+        synchronized (flowLock) {
+            while (streams.size() >= limit) {
+                if (closed) throw new IOException("HTTP/2 connection closed");
+                waitFlow();
+            }
+        }
+    }
+
+    private void waitFlow() throws IOException {
+        try {
+            flowLock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    // One stream: send window, receive window and the incoming body
+    public final class Stream {
+        public final int id;
+        private long sendWindow;                       // guarded by flowLock
+        private int recvWindow = DEFAULT_WINDOW;       // guarded by this
+        private int recvUnacked;                       // consumed but not yet credited, guarded by this
+        private final StreamBody body = new StreamBody(this);
+        private volatile boolean localClosed, remoteClosed;
+        private volatile int resetCode = -1;
+
+        Stream(int id) { this.id = id; }
+
+        public InputStream body() { return body; }
+        public boolean isLocalClosed()  { return localClosed; }
+        public boolean isRemoteClosed() { return remoteClosed; }
+        public boolean isReset() { return resetCode >= 0; }
+
+        // max wait for the next DATA frame when reading body() (0 = forever)
+        public void setReadTimeout(int millis) { body.readTimeout = millis; }
+
+        private synchronized boolean takeRecvWindow(int n) {
+            if (n > recvWindow) return false;
+            recvWindow -= n;
+            return true;
+        }
+
+        // body bytes consumed by the application → reopen the stream window in batches
+        private void credit(int n) throws IOException {
+            int inc;
+            synchronized (this) {
+                recvUnacked += n;
+                if (recvUnacked < DEFAULT_WINDOW / 2 || remoteClosed) return;
+                inc = recvUnacked;
+                recvUnacked = 0;
+                recvWindow += inc;
+            }
+            writeFrame(WINDOW_UPDATE, 0, id, intBytes(inc));
+        }
+
+        private void reset(int code) {
+            resetCode = code;
+            body.fail();
+        }
+    }
+
+    // Incoming DATA of one stream, readable as a blocking InputStream
+    private final class StreamBody extends InputStream {
+        private final Stream stream;
+        private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+        private byte[] cur;
+        private int pos;
+        private boolean finished, failed;
+        private volatile int readTimeout;               // ms, 0 = block forever
+
+        StreamBody(Stream stream) { this.stream = stream; }
+
+        synchronized void offer(byte[] b) { chunks.add(b); notifyAll(); }
+        synchronized void finish()        { finished = true; notifyAll(); }
+        synchronized void fail()          { failed = true; notifyAll(); }
+
+        @Override public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            int n;
+            synchronized (this) {
+                while (cur == null || pos == cur.length) {
+                    if (!chunks.isEmpty()) { cur = chunks.poll(); pos = 0; continue; }
+                    if (finished) return -1;
+                    if (failed) throw new IOException("Stream " + stream.id + " reset");
+                    try {
+                        long t0 = System.nanoTime();
+                        wait(readTimeout);
+                        if (readTimeout > 0 && chunks.isEmpty() && !finished && !failed
+                                && System.nanoTime() - t0 >= readTimeout * 1_000_000L)
+                            throw new SocketTimeoutException("Stream " + stream.id + " read timed out");
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                n = Math.min(len, cur.length - pos);
+                System.arraycopy(cur, pos, b, off, n);
+                pos += n;
+            }
+            stream.credit(n);
+            return n;
+        }
+
+        @Override public synchronized int available() {
+            int n = cur == null ? 0 : cur.length - pos;
+            for (byte[] c : chunks) n += c.length;
+            return n;
+        }
+    }
+}
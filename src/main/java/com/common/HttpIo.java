@@ -0,0 +1,79 @@
+package main.java.com.common;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Byte-level helpers shared by the server and client for reading HTTP/1.1 framing
+ * (request/status lines, header lines, chunk-size lines) straight off a socket stream.
+ */
+public final class HttpIo {
+
+    // Thrown when a single line exceeds the caller's limit (maps to 414 / 431 on the server)
+    public static final class LineTooLongException extends IOException {
+        private static final long serialVersionUID = 1L;
+        public LineTooLongException(int max) { super("Line exceeds " + max + " bytes"); }
+    }
+
+    // Read one CRLF (or bare LF) terminated line as ISO-8859-1; null on EOF before any byte
+    public static String readLine(InputStream in, int maxBytes) throws IOException {
+        if (in instanceof LineBufferedInputStream l) return l.readLine(maxBytes);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') break;
+            if (buf.size() >= maxBytes) throw new LineTooLongException(maxBytes);
+            buf.write(b);
+        }
+        if (b == -1 && buf.size() == 0) return null;
+        return trimCr(buf.toString(StandardCharsets.ISO_8859_1));
+    }
+
+    /*
+     * BufferedInputStream whose lines are found by scanning its buffer, not fetched one
+     * synchronized read() at a time; wrap connections whose heads are parsed with readLine.
+     */
+    public static final class LineBufferedInputStream extends BufferedInputStream {
+        public LineBufferedInputStream(InputStream in) { super(in); }
+
+        synchronized String readLine(int maxBytes) throws IOException {
+            ByteArrayOutputStream partial = null;         // line spanning buffer refills
+            while (true) {
+                if (pos >= count) {
+                    if (read() == -1) {                   // refill (blocks)
+                        if (partial == null || partial.size() == 0) return null;
+                        return trimCr(partial.toString(StandardCharsets.ISO_8859_1));
+                    }
+                    pos--;                                // the byte stays in the buffer
+                }
+                int end = pos;
+                while (end < count && buf[end] != '\n') end++;
+                int len = end - pos;
+                if ((partial == null ? 0 : partial.size()) + len > maxBytes) throw new LineTooLongException(maxBytes);
+                if (end < count) {
+                    String line;
+                    if (partial == null) {
+                        line = new String(buf, pos, len, StandardCharsets.ISO_8859_1);
+                    } else {
+                        partial.write(buf, pos, len);
+                        line = partial.toString(StandardCharsets.ISO_8859_1);
+                    }
+                    pos = end + 1;
+                    return trimCr(line);
+                }
+                if (partial == null) partial = new ByteArrayOutputStream(Math.max(64, len * 2));
+                partial.write(buf, pos, len);
+                pos = count;
+            }
+        }
+    }
+
+    private static String trimCr(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    private HttpIo() { } // prevent instantiation
+}
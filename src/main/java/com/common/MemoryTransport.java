@@ -0,0 +1,242 @@
+package main.java.com.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * In-process transport: a connection is two bounded byte pipes, one per direction,
+ * so a server and clients in the same JVM talk through the full HTTP stack without
+ * sockets, loopback latency or ephemeral port limits. Ports live in this instance's
+ * own registry (host names are ignored), so independent tests don't see each other;
+ * hand the same instance to the server and the client.
+ * A full pipe blocks the writer like a full socket buffer, so flow control and slow
+ * readers behave as they would over TCP, just without the kernel's timing noise.
+ */
+public final class MemoryTransport implements Transport {
+
+    private static final int DEFAULT_BUFFER = 16 * 1024; // per direction, like a small socket buffer
+    private static final PipeConnection CLOSED = new PipeConnection(null, null, null); // wakes accept()
+
+    private final int bufferSize;
+    private final Map<Integer,MemoryListener> listeners = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    public MemoryTransport() { this(DEFAULT_BUFFER); }
+
+    public MemoryTransport(int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("bufferSize must be > 0");
+        this.bufferSize = bufferSize;
+    }
+
+    @Override public Listener listen(int port) throws IOException {
+        MemoryListener l = new MemoryListener(port);
+        if (listeners.putIfAbsent(port, l) != null) throw new BindException("Address already in use: mem:" + port);
+        return l;
+    }
+
+    // no handshake to wait for: succeeds at once if someone listens on the port
+    @Override public Connection connect(String host, int port, int timeoutMs) throws IOException {
+        MemoryListener l = listeners.get(port);
+        if (l == null) throw new ConnectException("Connection refused: mem:" + port);
+        long id = ids.incrementAndGet();
+        Pipe up = new Pipe(bufferSize), down = new Pipe(bufferSize);
+        PipeConnection client = new PipeConnection(down, up, "mem:" + port);
+        PipeConnection server = new PipeConnection(up, down, "mem:client-" + id);
+        l.offer(server);
+        return client;
+    }
+
+    // ----- listener -----
+
+    private final class MemoryListener implements Listener {
+        private final int port;
+        private final BlockingQueue<PipeConnection> backlog = new LinkedBlockingQueue<>();
+        private volatile boolean closed;
+
+        MemoryListener(int port) { this.port = port; }
+
+        void offer(PipeConnection c) throws IOException {
+            if (closed) throw new ConnectException("Connection refused: mem:" + port);
+            backlog.add(c);
+        }
+
+        @Override public Connection accept() throws IOException {
+            try {
+                PipeConnection c = backlog.take();
+                if (c == CLOSED) {
+                    backlog.add(CLOSED);                  // for other accepting threads
+                    throw new SocketException("Listener closed");
+                }
+                return c;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        @Override public void close() {
+            if (closed) return;
+            closed = true;
+            listeners.remove(port, this);
+            for (PipeConnection c; (c = backlog.poll()) != null; ) if (c != CLOSED) c.close(); // never accepted
+            backlog.add(CLOSED);
+        }
+    }
+
+    // ----- connection: reads one pipe, writes the other -----
+
+    private static final class PipeConnection implements Connection {
+        private final Pipe in, out;
+        private final String remote;
+        private final InputStream input;
+        private final OutputStream output;
+        private volatile int readTimeout;
+
+        PipeConnection(Pipe in, Pipe out, String remote) {
+            this.in = in;
+            this.out = out;
+            this.remote = remote;
+            this.input = new InputStream() {
+                @Override public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+                }
+                @Override public int read(byte[] b, int off, int len) throws IOException {
+                    return PipeConnection.this.in.read(b, off, len, readTimeout);
+                }
+                @Override public int available() { return PipeConnection.this.in.available(); }
+                @Override public void close() { PipeConnection.this.close(); }
+            };
+            this.output = new OutputStream() {
+                @Override public void write(int b) throws IOException { write(new byte[] { (byte) b }, 0, 1); }
+                @Override public void write(byte[] b, int off, int len) throws IOException {
+                    PipeConnection.this.out.write(b, off, len);
+                }
+                @Override public void close() { PipeConnection.this.close(); }
+            };
+        }
+
+        @Override public InputStream getInputStream() { return input; }
+        @Override public OutputStream getOutputStream() { return output; }
+        @Override public void setReadTimeout(int ms) { readTimeout = ms; }
+        @Override public String getRemoteAddress() { return remote; }
+
+        // like closing a socket: the peer reads EOF after what was already written,
+        // our own blocked reads fail, and the peer's writes fail from now on
+        @Override public void close() {
+            out.closeWrite();
+            in.closeRead();
+        }
+    }
+
+    // ----- pipe: bounded ring buffer, one writer side and one reader side -----
+
+    private static final class Pipe {
+        private final byte[] ring;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition readable = lock.newCondition(), writable = lock.newCondition();
+        private int head, count;                          // next byte to read, bytes buffered
+        private boolean writeClosed;                      // reader drains, then gets EOF
+        private boolean readClosed;                       // reads and writes fail
+
+        Pipe(int size) { this.ring = new byte[size]; }
+
+        int read(byte[] b, int off, int len, int timeoutMs) throws IOException {
+            if (len == 0) return 0;
+            lock.lock();
+            try {
+                long left = timeoutMs > 0 ? TimeUnit.MILLISECONDS.toNanos(timeoutMs) : 0;
+                while (count == 0 || readClosed) {
+                    if (readClosed) throw new SocketException("Socket closed");
+                    if (writeClosed) return -1;
+                    if (timeoutMs == 0) readable.await();
+                    else if ((left = readable.awaitNanos(left)) <= 0 && count == 0 && !writeClosed && !readClosed)
+                        throw new SocketTimeoutException("Read timed out");
+                }
+                int n = Math.min(len, Math.min(count, ring.length - head));
+                System.arraycopy(ring, head, b, off, n);
+                head = (head + n) % ring.length;
+                count -= n;
+                writable.signal();
+                return n;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void write(byte[] b, int off, int len) throws IOException {
+            lock.lock();
+            try {
+                while (len > 0) {
+                    if (writeClosed) throw new SocketException("Socket closed");
+                    if (readClosed) throw new SocketException("Broken pipe");
+                    if (count == ring.length) {
+                        writable.await();
+                        continue;
+                    }
+                    int tail = (head + count) % ring.length;
+                    int n = Math.min(len, Math.min(ring.length - count, ring.length - tail));
+                    System.arraycopy(b, off, ring, tail, n);
+                    count += n;
+                    off += n;
+                    len -= n;
+                    readable.signal();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int available() {
+            lock.lock();
+            try {
+                return readClosed ? 0 : count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void closeWrite() {
+            lock.lock();
+            try {
+                writeClosed = true;
+                readable.signalAll();
+                writable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void closeRead() {
+            lock.lock();
+            try {
+                readClosed = true;
+                count = 0;
+                readable.signalAll();
+                writable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
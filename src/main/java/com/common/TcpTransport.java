@@ -0,0 +1,44 @@
+package main.java.com.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+// Transport over java.net sockets: a ServerSocket per listener, one Socket per connection.
+public final class TcpTransport implements Transport {
+
+    @Override public Listener listen(int port) throws IOException {
+        return listen(null, port);
+    }
+
+    @Override public Listener listen(String bindAddress, int port) throws IOException {
+        ServerSocket ss = new ServerSocket(port, 0, bindAddress == null ? null : InetAddress.getByName(bindAddress));
+        return new Listener() {
+            @Override public Connection accept() throws IOException { return new SocketConnection(ss.accept()); }
+            @Override public void close() throws IOException { ss.close(); }
+        };
+    }
+
+    @Override public Connection connect(String host, int port, int timeoutMs) throws IOException {
+        Socket sock = new Socket();
+        try {
+            sock.connect(new InetSocketAddress(host, port), timeoutMs);
+        } catch (IOException e) {
+            sock.close();
+            throw e;
+        }
+        return new SocketConnection(sock);
+    }
+
+    private record SocketConnection(Socket socket) implements Connection {
+        @Override public InputStream getInputStream() throws IOException { return socket.getInputStream(); }
+        @Override public OutputStream getOutputStream() throws IOException { return socket.getOutputStream(); }
+        @Override public void setReadTimeout(int ms) throws IOException { socket.setSoTimeout(ms); }
+        @Override public String getRemoteAddress() { return String.valueOf(socket.getInetAddress()); }
+        @Override public void close() throws IOException { socket.close(); }
+    }
+}
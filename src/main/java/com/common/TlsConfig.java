@@ -0,0 +1,85 @@
+package main.java.com.common;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.KeyStore;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/*
+ * Utility for building TLS contexts from the same api.properties file as the API key (via Config).
+ * Keys: tls.port, tls.keystore, tls.keystorePassword, tls.keystoreType,
+ *       tls.truststore, tls.truststorePassword, tls.sessionCacheSize, tls.sessionTimeout.
+ * Priority for each key: env var (TLS_KEYSTORE, ...) → properties file → default.
+ */
+public final class TlsConfig {
+
+    private static SSLContext client;                          // shared so sessions are resumed
+
+    static {
+        // stateless resumption (RFC 5077 / TLS 1.3 tickets) on both sides; must be set before JSSE loads
+        System.setProperty("jdk.tls.server.enableSessionTicketExtension", "true");
+        System.setProperty("jdk.tls.client.enableSessionTicketExtension", "true");
+    }
+
+    // value for a tls.* key, or def when not configured
+    public static String get(String key, String def) {
+        return Config.get(key, def);
+    }
+
+    public static int port(int def) {
+        return Config.getInt("tls.port", def);
+    }
+
+    // server context from the configured keystore; null ⇒ TLS disabled
+    public static SSLContext serverContext() throws Exception {
+        String path = get("tls.keystore", null);
+        if (path == null) return null;
+
+        char[] pass = get("tls.keystorePassword", "").toCharArray();
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(loadStore(path, pass), pass);
+
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        ctx.init(kmf.getKeyManagers(), null, null);
+        tuneSessions(ctx.getServerSessionContext());
+        return ctx;
+    }
+
+    // process-wide client context (keeps the session cache between requests)
+    public static synchronized SSLContext clientContext() throws Exception {
+        if (client == null) client = newClientContext();
+        return client;
+    }
+
+    // fresh client context with an empty session cache (forces full handshakes)
+    public static SSLContext newClientContext() throws Exception {
+        TrustManagerFactory tmf = null;
+        String path = get("tls.truststore", null);
+        if (path != null) {
+            tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init(loadStore(path, get("tls.truststorePassword", "").toCharArray()));
+        }
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        ctx.init(null, tmf == null ? null : tmf.getTrustManagers(), null);
+        tuneSessions(ctx.getClientSessionContext());
+        return ctx;
+    }
+
+    private static void tuneSessions(SSLSessionContext sessions) {
+        sessions.setSessionCacheSize(Integer.parseInt(get("tls.sessionCacheSize", "20000")));
+        sessions.setSessionTimeout(Integer.parseInt(get("tls.sessionTimeout", "86400"))); // seconds
+    }
+
+    private static KeyStore loadStore(String path, char[] pass) throws Exception {
+        KeyStore ks = KeyStore.getInstance(get("tls.keystoreType", "PKCS12"));
+        try (InputStream in = new FileInputStream(path)) {
+            ks.load(in, pass);
+        }
+        return ks;
+    }
+
+    private TlsConfig() { } // prevent instantiation
+}
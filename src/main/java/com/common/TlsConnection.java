@@ -0,0 +1,235 @@
+package main.java.com.common;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+
+/*
+ * TLS over any pair of byte streams, driven by an SSLEngine.
+ * The engine only ever sees ByteBuffers, so the same code works on blocking
+ * sockets today and on a non-blocking transport later. Reads and writes may run
+ * concurrently (HTTP/2 reader + stream writers); each side has its own lock.
+ */
+public class TlsConnection implements Closeable {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SSLEngine engine;
+    private final InputStream netIn;                 // ciphertext from the peer
+    private final OutputStream netOut;               // ciphertext to the peer
+    private final Object readLock = new Object();    // guards inNet / inApp / unwrap
+    private final Object writeLock = new Object();   // guards outNet / wrap
+
+    private ByteBuffer inNet;                        // undecrypted records (read mode)
+    private ByteBuffer inApp;                        // decrypted bytes not yet returned (read mode)
+    private ByteBuffer outNet;                       // scratch for wrap()
+    private boolean inputClosed;                     // EOF or close_notify received
+
+    private final InputStream appIn = new AppInput();
+    private final OutputStream appOut = new AppOutput();
+
+    public TlsConnection(SSLEngine engine, InputStream netIn, OutputStream netOut) {
+        this.engine = engine;
+        this.netIn = netIn;
+        this.netOut = netOut;
+        SSLSession s = engine.getSession();
+        inNet  = ByteBuffer.allocate(s.getPacketBufferSize()).flip();
+        inApp  = ByteBuffer.allocate(s.getApplicationBufferSize()).flip();
+        outNet = ByteBuffer.allocate(s.getPacketBufferSize());
+    }
+
+    // server side: offer the given ALPN protocols in preference order
+    public static TlsConnection server(SSLContext ctx, InputStream in, OutputStream out, String... alpn) {
+        SSLEngine e = ctx.createSSLEngine();
+        e.setUseClientMode(false);
+        SSLParameters p = e.getSSLParameters();
+        p.setApplicationProtocols(alpn);
+        e.setSSLParameters(p);
+        return new TlsConnection(e, in, out);
+    }
+
+    // client side: host/port key the session cache (resumption) and drive SNI + hostname checks
+    public static TlsConnection client(SSLContext ctx, String host, int port,
+                                       InputStream in, OutputStream out, String... alpn) {
+        SSLEngine e = ctx.createSSLEngine(host, port);
+        e.setUseClientMode(true);
+        SSLParameters p = e.getSSLParameters();
+        p.setApplicationProtocols(alpn);
+        p.setEndpointIdentificationAlgorithm("HTTPS");
+        e.setSSLParameters(p);
+        return new TlsConnection(e, in, out);
+    }
+
+    public InputStream getInputStream()   { return appIn; }
+    public OutputStream getOutputStream() { return appOut; }
+    public SSLSession getSession()        { return engine.getSession(); }
+
+    // negotiated ALPN protocol ("h2", "http/1.1") or null if none
+    public String getApplicationProtocol() {
+        String p = engine.getApplicationProtocol();
+        return p == null || p.isEmpty() ? null : p;
+    }
+
+    // run the handshake to completion
+    public void handshake() throws IOException {
+        engine.beginHandshake();
+        HandshakeStatus hs = engine.getHandshakeStatus();
+        while (hs != HandshakeStatus.FINISHED && hs != HandshakeStatus.NOT_HANDSHAKING) {
+            switch (hs) {
+                case NEED_WRAP -> hs = wrap(EMPTY);
+                case NEED_TASK -> hs = runTasks();
+                default        -> {               // NEED_UNWRAP / NEED_UNWRAP_AGAIN
+                    synchronized (readLock) { hs = unwrap(); }
+                    if (inputClosed) throw new EOFException("Connection closed during TLS handshake");
+                }
+            }
+        }
+    }
+
+    // send close_notify; the underlying streams are owned by the caller
+    @Override public void close() {
+        engine.closeOutbound();
+        try {
+            while (!engine.isOutboundDone()) wrap(EMPTY);
+        } catch (IOException ignored) { /* peer already gone */ }
+    }
+
+    // ----- engine plumbing -----
+
+    private HandshakeStatus wrap(ByteBuffer src) throws IOException {
+        synchronized (writeLock) {
+            while (true) {
+                outNet.clear();
+                SSLEngineResult r = engine.wrap(src, outNet);
+                switch (r.getStatus()) {
+                    case BUFFER_OVERFLOW -> outNet = ByteBuffer.allocate(outNet.capacity() * 2);
+                    case OK, CLOSED -> {
+                        outNet.flip();
+                        netOut.write(outNet.array(), 0, outNet.limit());
+                        netOut.flush();
+                        return r.getHandshakeStatus();
+                    }
+                    default -> throw new SSLException("Unexpected wrap status " + r.getStatus());
+                }
+            }
+        }
+    }
+
+    // decrypt what is buffered (reading more records as needed); caller holds readLock
+    private HandshakeStatus unwrap() throws IOException {
+        while (true) {
+            inApp.compact();                                   // write mode
+            SSLEngineResult r;
+            try {
+                r = engine.unwrap(inNet, inApp);
+            } finally {
+                inApp.flip();                                  // back to read mode
+            }
+            switch (r.getStatus()) {
+                case OK -> { return r.getHandshakeStatus(); }
+                case CLOSED -> {
+                    inputClosed = true;
+                    return r.getHandshakeStatus();
+                }
+                case BUFFER_OVERFLOW -> inApp = grow(inApp, engine.getSession().getApplicationBufferSize());
+                case BUFFER_UNDERFLOW -> {
+                    if (!fillNet()) {
+                        inputClosed = true;
+                        try { engine.closeInbound(); } catch (SSLException ignored) { /* truncated stream */ }
+                        return engine.getHandshakeStatus();
+                    }
+                }
+            }
+        }
+    }
+
+    // read more ciphertext into inNet; false on EOF
+    private boolean fillNet() throws IOException {
+        inNet.compact();                                       // write mode
+        if (!inNet.hasRemaining()) {
+            inNet.flip();
+            inNet = grow(inNet, engine.getSession().getPacketBufferSize());
+            inNet.compact();
+        }
+        int n = netIn.read(inNet.array(), inNet.arrayOffset() + inNet.position(), inNet.remaining());
+        if (n > 0) inNet.position(inNet.position() + n);
+        inNet.flip();
+        return n > 0;
+    }
+
+    // copy a read-mode buffer into a larger one, still in read mode
+    private static ByteBuffer grow(ByteBuffer b, int min) {
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(b.capacity() * 2, b.remaining() + min));
+        bigger.put(b).flip();
+        return bigger;
+    }
+
+    private HandshakeStatus runTasks() {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) task.run();
+        return engine.getHandshakeStatus();
+    }
+
+    // post-handshake messages (TLS 1.3 session tickets, key updates) seen while reading data
+    private void afterUnwrap(HandshakeStatus hs) throws IOException {
+        while (true) {
+            switch (hs) {
+                case NEED_TASK -> hs = runTasks();
+                case NEED_WRAP -> hs = wrap(EMPTY);
+                default -> { return; }
+            }
+        }
+    }
+
+    // Decrypted side of the connection
+    private final class AppInput extends InputStream {
+        @Override public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            synchronized (readLock) {
+                while (!inApp.hasRemaining()) {
+                    if (inputClosed) return -1;
+                    afterUnwrap(unwrap());
+                }
+                int n = Math.min(len, inApp.remaining());
+                inApp.get(b, off, n);
+                return n;
+            }
+        }
+
+        @Override public int available() {
+            synchronized (readLock) { return inApp.remaining(); }
+        }
+    }
+
+    // Plaintext written here leaves as TLS records
+    private final class AppOutput extends OutputStream {
+        @Override public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer src = ByteBuffer.wrap(b, off, len);
+            synchronized (writeLock) {
+                while (src.hasRemaining()) {
+                    if (engine.isOutboundDone()) throw new SSLException("TLS connection closed");
+                    wrap(src);
+                }
+            }
+        }
+    }
+}
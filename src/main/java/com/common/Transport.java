@@ -0,0 +1,39 @@
+package main.java.com.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/*
+ * Where the bytes of a connection go. SimpleHttpServer listens and SimpleHttpClient
+ * connects through one of these; everything above the two streams (TLS, HTTP/1.1,
+ * HTTP/2 framing, parsing, routing) is the same whichever is plugged in:
+ *   TcpTransport    – java.net sockets (the default)
+ *   MemoryTransport – in-process pipes, for benchmarks and tests without the kernel
+ * Close semantics follow sockets: closing a connection makes the peer read EOF, and
+ * any read blocked on the closed side fail, which is how deadlines cut connections off.
+ */
+public interface Transport {
+
+    Listener listen(int port) throws IOException;
+
+    // same, on one local address only (null = all); transports without addresses ignore it
+    default Listener listen(String bindAddress, int port) throws IOException {
+        return listen(port);
+    }
+
+    // timeoutMs = 0 waits as long as the transport does; expiry → SocketTimeoutException
+    Connection connect(String host, int port, int timeoutMs) throws IOException;
+
+    interface Listener extends Closeable {
+        Connection accept() throws IOException;           // blocks; fails once closed
+    }
+
+    interface Connection extends Closeable {
+        InputStream getInputStream() throws IOException;
+        OutputStream getOutputStream() throws IOException;
+        void setReadTimeout(int ms) throws IOException;   // 0 = none; expiry → SocketTimeoutException
+        String getRemoteAddress();                        // for logs
+    }
+}
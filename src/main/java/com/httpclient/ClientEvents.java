@@ -0,0 +1,114 @@
+package main.java.com.httpclient;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// Flight Recorder events for the phases of one client exchange (same pattern as the
+// server's: fields are only filled in when shouldCommit() says the event is recorded).
+// Timings cover a single attempt; retries and hedges show up as separate events.
+final class ClientEvents {
+
+    private ClientEvents() { }
+
+    @Category({ "HTTP", "Client" })
+    @StackTrace(false)
+    @Threshold("10 ms")
+    abstract static class Exchange extends Event {
+        @Label("Method") String method;
+        @Label("Host") String host;
+        @Label("Port") int port;
+        @Label("Path") String path;
+
+        final void target(String method, ParsedUrl u) {
+            this.method = method;
+            this.host = u.host();
+            this.port = u.port();
+            this.path = u.path();
+        }
+    }
+
+    @Name("http.client.Connect")
+    @Label("HTTP Connect")
+    @Description("TCP connect plus TLS handshake of a new connection")
+    static final class Connect extends Exchange {
+        @Label("Protocol") String protocol;
+    }
+
+    @Name("http.client.Write")
+    @Label("HTTP Write")
+    @Description("Request head and body written and flushed (HTTP/1.1)")
+    static final class Write extends Exchange {
+        @Label("Bytes") @DataAmount long bytes;
+    }
+
+    @Name("http.client.FirstByte")
+    @Label("HTTP Time To First Byte")
+    @Description("Request sent until the first response byte (HTTP/1.1); whole stream exchange until HEADERS (HTTP/2)")
+    static final class FirstByte extends Exchange {
+        @Label("Status") int status;
+    }
+
+    @Name("http.client.BodyRead")
+    @Label("HTTP Body Read")
+    @Description("Response head until the body is fully read or closed; includes the caller's own pace")
+    static final class BodyRead extends Exchange {
+        @Label("Status") int status;
+        @Label("Bytes") @DataAmount long bytes;
+        @Label("Complete") @Description("False if closed before the end") boolean complete;
+    }
+
+    // body wrapper that commits a BodyRead at EOF or close; only installed while the event is enabled
+    static final class BodyStream extends FilterInputStream {
+        private final BodyRead event;
+        private long bytes;
+        private boolean done;
+
+        BodyStream(InputStream in, BodyRead event) {
+            super(in);
+            this.event = event;
+            event.begin();
+        }
+
+        @Override public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) finish(true);
+            else bytes++;
+            return b;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) finish(true);
+            else bytes += n;
+            return n;
+        }
+
+        @Override public void close() throws IOException {
+            abandon();
+            super.close();
+        }
+
+        // closed before EOF (HttpResponse.close() releases the connection without closing the stream)
+        void abandon() { finish(false); }
+
+        private void finish(boolean eof) {
+            if (done) return;
+            done = true;
+            event.end();
+            if (event.shouldCommit()) {
+                event.bytes = bytes;
+                event.complete = eof;
+                event.commit();
+            }
+        }
+    }
+}
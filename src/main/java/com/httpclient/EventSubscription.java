@@ -0,0 +1,113 @@
+package main.java.com.httpclient;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/*
+ * A text/event-stream subscription (see SimpleHttpClient.subscribe). One daemon thread
+ * reads the stream and calls the listener per event. When the stream ends or fails it
+ * reconnects after the server's "retry:" delay (doubling while attempts keep failing)
+ * and sends Last-Event-ID, so the server resumes where the stream stopped.
+ * A 204 answer ends the subscription, as does close().
+ */
+public class EventSubscription implements Closeable {
+
+    private static final int READ_TIMEOUT_MS = 45_000;  // the server comments every 15 s while idle
+    private static final long MAX_DELAY_MS = 30_000;
+
+    private final SimpleHttpClient client;
+    private final String url;
+    private final Consumer<ServerSentEvent> listener;
+    private final Thread thread;
+    private volatile String lastEventId;
+    private volatile long retryMs = 3000;
+    private volatile HttpResponse current;
+    private volatile boolean closed;
+
+    EventSubscription(SimpleHttpClient client, String url, String lastEventId, Consumer<ServerSentEvent> listener) {
+        this.client = client;
+        this.url = url;
+        this.lastEventId = lastEventId;
+        this.listener = listener;
+        thread = new Thread(this::run, "sse " + url);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // id of the last event received (what a reconnect resumes from)
+    public String getLastEventId() { return lastEventId; }
+
+    @Override public void close() {
+        closed = true;
+        thread.interrupt();
+        HttpResponse r = current;
+        if (r != null) try { r.close(); } catch (IOException ignored) { } // unblocks the read
+    }
+
+    private void run() {
+        RequestOptions o = new RequestOptions().setReadTimeout(READ_TIMEOUT_MS).setMaxRetries(0);
+        long delay = 0;
+        while (!closed) {
+            try {
+                Map<String, String> h = new HashMap<>();
+                h.put("Accept", "text/event-stream");
+                h.put("Cache-Control", "no-store");          // keeps HttpCache out of the way
+                if (lastEventId != null) h.put("Last-Event-ID", lastEventId);
+                HttpResponse r = client.requestStreaming("GET", url, h, null, o);
+                current = r;
+                try (r) {
+                    if (r.getStatusCode() == 204) return;
+                    if (r.getStatusCode() == 200 && r.getBodyStream() != null) {
+                        delay = 0;
+                        read(new BufferedReader(new InputStreamReader(r.getBodyStream(), StandardCharsets.UTF_8)));
+                    }
+                }
+            } catch (Exception e) {
+                if (closed) return;
+            }
+            delay = delay == 0 ? retryMs : Math.min(delay * 2, MAX_DELAY_MS);
+            try { Thread.sleep(delay); } catch (InterruptedException e) { return; }
+        }
+    }
+
+    // event stream parsing (HTML Living Standard, "Server-sent events")
+    private void read(BufferedReader in) throws IOException {
+        StringBuilder data = new StringBuilder();
+        String event = null;
+        boolean hasData = false;
+        String line;
+        while (!closed && (line = in.readLine()) != null) {
+            if (line.isEmpty()) {                           // blank line dispatches
+                if (hasData) listener.accept(new ServerSentEvent(lastEventId, event == null ? "message" : event, data.toString()));
+                data.setLength(0);
+                event = null;
+                hasData = false;
+                continue;
+            }
+            if (line.startsWith(":")) continue;             // comment / heartbeat
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(colon + 1);
+            if (value.startsWith(" ")) value = value.substring(1);
+            switch (field) {
+                case "data" -> {
+                    if (hasData) data.append('\n');
+                    data.append(value);
+                    hasData = true;
+                }
+                case "event" -> event = value;
+                case "id" -> { if (!value.contains("\0")) lastEventId = value; }
+                case "retry" -> {
+                    if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) retryMs = Long.parseLong(value);
+                }
+                default -> { }
+            }
+        }
+    }
+}
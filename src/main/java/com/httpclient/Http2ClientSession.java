@@ -0,0 +1,181 @@
+package main.java.com.httpclient;
+
+import main.java.com.common.Hpack;
+import main.java.com.common.Http2Frame;
+import main.java.com.common.Http2Session;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+ * Client side of an HTTP/2 connection (h2c with prior knowledge, or h2 negotiated
+ * via ALPN over TLS). One session per host:port is
+ * shared by all threads of a SimpleHttpClient; each request() becomes a stream.
+ */
+class Http2ClientSession extends Http2Session {
+
+    private final Closeable connection;
+    private final CookieStore cookies;                    // Set-Cookie from responses (null = ignored)
+    private final String host;
+    private final Map<Integer,CompletableFuture<HttpResponse>> pending = new ConcurrentHashMap<>();
+    private int nextStreamId = 1;                         // client streams are odd, guarded by this
+
+    // in / out are the connection's streams, or the decrypted streams of a TLS connection on it
+    Http2ClientSession(Closeable connection, InputStream in, OutputStream out,
+                       CookieStore cookies, String host) throws IOException {
+        super(new BufferedInputStream(in), new BufferedOutputStream(out), 0); // no server push
+        this.connection = connection;
+        this.cookies = cookies;
+        this.host = host;
+        sendSettings(true);
+
+        Thread reader = new Thread(() -> {
+            try { readLoop(); } catch (IOException ignored) { /* streams are failed in readLoop */ }
+            finally { close(); }
+        }, "h2c-" + host);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    // usable for new streams
+    boolean isOpen() { return !closed && !goingAway; }
+
+    // send one request on a new stream and wait for the response head; the body is either
+    // `body` or streamed from `stream` (readTimeout: max wait for the head and between body
+    // reads, 0 = forever; decompress: undo Content-Encoding: gzip)
+    HttpResponse exchange(List<Hpack.Header> fields, byte[] body, InputStream stream, boolean decompress,
+                          int readTimeout) throws IOException {
+        CompletableFuture<HttpResponse> done = new CompletableFuture<>();
+        Stream s;
+        synchronized (this) { // stream ids must hit the wire in increasing order
+            // only this block opens streams, so the free slot can't be taken before openStream
+            awaitStreamSlot(peerMaxConcurrent); // honour the server's SETTINGS_MAX_CONCURRENT_STREAMS
+            s = openStream(nextStreamId);
+            s.setReadTimeout(readTimeout);
+            pending.put(nextStreamId, done);
+            nextStreamId += 2;
+            sendHeaders(s, fields, body == null && stream == null);
+        }
+        try {
+            if (body != null) sendData(s, body, 0, body.length, true);
+            else if (stream != null) sendStream(s, stream);
+        } catch (IOException e) {
+            // a refused stream fails the body send too; report the refusal, it can be retried
+            if (done.isCompletedExceptionally() && refused(done)) throw new RefusedStreamException(e.getMessage());
+            throw e;
+        }
+
+        HttpResponse resp;
+        try {
+            resp = await(done, readTimeout);
+        } catch (TimeoutException e) {
+            pending.remove(s.id);
+            resetStream(s, Http2Frame.CANCEL);
+            throw new SocketTimeoutException("Read timed out");
+        }
+        // body streams off the connection; closing early cancels just this stream
+        resp.setBodyStream(decompress ? SimpleHttpClient.decode(resp, s.body()) : s.body(), () -> {
+            if (!s.isRemoteClosed() && !s.isReset()) resetStream(s, Http2Frame.CANCEL);
+        });
+        return resp;
+    }
+
+    private static HttpResponse await(CompletableFuture<HttpResponse> done, int timeout)
+            throws IOException, TimeoutException {
+        try {
+            return timeout > 0 ? done.get(timeout, TimeUnit.MILLISECONDS) : done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RefusedStreamException r) throw new RefusedStreamException(r.getMessage());
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static boolean refused(CompletableFuture<HttpResponse> done) {
+        try {
+            done.getNow(null);
+            return false;
+        } catch (CompletionException e) {
+            return e.getCause() instanceof RefusedStreamException;
+        }
+    }
+
+    // request body as DATA frames until EOF; a failed read cancels the stream
+    private void sendStream(Stream s, InputStream stream) throws IOException {
+        byte[] buf = new byte[16 * 1024];
+        try {
+            for (int n; (n = stream.read(buf)) != -1; ) {
+                if (n > 0) sendData(s, buf, 0, n, false);
+            }
+        } catch (IOException e) {
+            pending.remove(s.id);
+            resetStream(s, Http2Frame.CANCEL);
+            throw e;
+        }
+        sendData(s, buf, 0, 0, true);
+    }
+
+    @Override
+    protected void onHeaders(int id, List<Hpack.Header> fields, boolean endStream) {
+        Stream s = streams.get(id);
+        CompletableFuture<HttpResponse> done = pending.get(id);
+        if (s != null && done != null) {
+            HttpResponse resp = new HttpResponse();
+            for (Hpack.Header h : fields) {
+                if (h.name().equals(":status")) {
+                    resp.setStatusCode(Integer.parseInt(h.value()));
+                    resp.setStatusMessage("");
+                } else {
+                    resp.addHeader(h.name(), h.value());
+                    if (cookies != null && h.name().equals("set-cookie")) cookies.addFromHeader(h.value(), host);
+                }
+            }
+            if (resp.getStatusCode() >= 100 && resp.getStatusCode() < 200) return; // interim response
+            pending.remove(id).complete(resp);
+        }
+        if (s != null && endStream) remoteEnd(s); // end of response (or trailers)
+    }
+
+    @Override
+    protected void onReset(int id, int errorCode) {
+        CompletableFuture<HttpResponse> done = pending.remove(id);
+        if (done == null) return;
+        done.completeExceptionally(errorCode == Http2Frame.REFUSED_STREAM
+                ? new RefusedStreamException("Stream " + id + " refused")
+                : new IOException("Stream " + id + " reset, error " + errorCode));
+    }
+
+    @Override
+    protected void onGoAway(int lastStreamId) {
+        // streams the server never looked at are safe to retry elsewhere
+        for (Stream s : streams.values()) {
+            if (s.id > lastStreamId) onReset(s.id, Http2Frame.REFUSED_STREAM);
+        }
+    }
+
+    // the server did not process the request (RFC 9113 §8.7), so it can be sent again
+    static final class RefusedStreamException extends IOException {
+        private static final long serialVersionUID = 1L;
+        RefusedStreamException(String m) { super(m); }
+    }
+
+    void close() {
+        if (!closed) goAway(Http2Frame.NO_ERROR, null);
+        try { connection.close(); } catch (IOException ignored) { }
+    }
+}
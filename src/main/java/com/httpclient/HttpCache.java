@@ -0,0 +1,605 @@
+package main.java.com.httpclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+ * Private (per-client) HTTP cache following RFC 9111:
+ *   • freshness from Cache-Control max-age, Expires, or 10 % of the Last-Modified age
+ *   • stale / no-cache entries are revalidated with If-None-Match / If-Modified-Since;
+ *     a 304 refreshes the stored headers and the body is served from the cache
+ *   • request Cache-Control no-store / no-cache / max-age=0 are honoured
+ *   • Vary is respected (Vary: * is never stored)
+ *   • a successful unsafe method invalidates the target URI (plus Location / Content-Location)
+ *   • memory tier: LRU bounded by body bytes
+ *   • disk tier: one file per entry, read back through a read-only memory map, so a
+ *     restart keeps the cache and hits on disk entries do not copy the body onto the heap
+ *   • concurrent misses / revalidations for the same request collapse into one fetch
+ *   • misses stream to the caller; a storable body is copied into the entry as it is
+ *     read (up to maxEntryBytes), anything else passes through untouched
+ */
+public class HttpCache {
+
+    // the actual network exchange (SimpleHttpClient's uncached path)
+    @FunctionalInterface
+    interface Fetcher {
+        HttpResponse fetch(String method, String url, Map<String, String> headers, String body) throws Exception;
+    }
+
+    private static final int MAGIC = 0x48434331;         // "HCC1", disk entry format
+    private static final Set<Integer> HEURISTIC_STATUS = Set.of(200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501);
+    private static final Set<String> UNSAFE = Set.of("POST", "PUT", "DELETE", "PATCH");
+    private static final Set<String> NOT_STORED = Set.of("connection", "keep-alive", "transfer-encoding",
+            "content-encoding", "content-length", "set-cookie", "x-cache", "age"); // body is stored decoded
+
+    private final Path dir;                              // disk tier (null = memory only)
+    private final long maxMemoryBytes, maxDiskBytes;
+    private volatile long maxEntryBytes = 8L << 20;      // larger bodies stream through uncached
+
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(16, 0.75f, true); // guarded by itself
+    private long memoryBytes;                            // guarded by memory
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);   // file → size, guarded by itself
+    private long diskBytes;                              // guarded by disk
+    private final Map<String, CompletableFuture<Entry>> inflight = new ConcurrentHashMap<>(); // collapsed fetches
+
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(),
+            revalidated = new AtomicLong(), collapsed = new AtomicLong();
+
+    public HttpCache(Path dir, long maxMemoryBytes, long maxDiskBytes) throws IOException {
+        this.dir = dir;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        if (dir != null) loadDiskIndex();
+    }
+
+    // memory-only cache
+    public HttpCache(long maxMemoryBytes) throws IOException {
+        this(null, maxMemoryBytes, 0);
+    }
+
+    // cap on one stored body; bigger responses are passed on without being cached
+    public void setMaxEntryBytes(long max) { this.maxEntryBytes = max; }
+
+    // counters for dashboards / logging
+    public long getHits()        { return hits.get(); }        // served without touching the network
+    public long getMisses()      { return misses.get(); }      // full fetch
+    public long getRevalidated() { return revalidated.get(); } // 304 → body served from cache
+    public long getCollapsed()   { return collapsed.get(); }   // waited on someone else's fetch
+
+    // ----- request path -----
+
+    // waitMs: max wait on a collapsed fetch before going to the network alone (0 = forever)
+    HttpResponse exchange(String method, String url, Map<String, String> headers, String body,
+                          Fetcher net, long waitMs) throws Exception {
+        String m = method.toUpperCase();
+        if (!m.equals("GET") || hasConditional(headers)) {
+            HttpResponse resp = net.fetch(method, url, headers, body);
+            if (UNSAFE.contains(m) && resp.getStatusCode() < 400) invalidate(url, resp.getHeaders());
+            return resp;
+        }
+
+        Map<String, String> reqCc = directives(header(headers, "Cache-Control"));
+        if (reqCc.containsKey("no-store")) return net.fetch(method, url, headers, body);
+        boolean forceRevalidate = reqCc.containsKey("no-cache") || "0".equals(reqCc.get("max-age"))
+                || "no-cache".equalsIgnoreCase(header(headers, "Pragma"));
+
+        String key = ParsedUrl.parse(url).toString();
+        Entry cached = lookup(key, headers);
+        if (cached != null && !forceRevalidate && cached.isFresh(System.currentTimeMillis())) {
+            hits.incrementAndGet();
+            return cached.toResponse("HIT");
+        }
+
+        // miss or stale: only one fetch per (url, request headers) at a time
+        String flight = key + " " + (headers == null ? "" : new TreeMap<>(headers));
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> leader = inflight.putIfAbsent(flight, mine);
+        if (leader != null) {
+            // the leader's entry is ready when its caller has read the body; a slow or abandoned
+            // one must not hold this request up beyond its own timeout
+            Entry shared = await(leader, waitMs);
+            if (shared == null) return net.fetch(method, url, headers, body); // not stored, or not in time
+            collapsed.incrementAndGet();
+            return shared.toResponse("COLLAPSED");
+        }
+        // the flight ends once the entry is stored or given up, which for a miss is when its body ends
+        mine.whenComplete((e, ex) -> inflight.remove(flight, mine));
+        try {
+            return fetch(key, url, headers, cached, net, mine);
+        } catch (Exception ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    // drop a URL from both tiers
+    public void invalidate(String url) {
+        remove(ParsedUrl.parse(url).toString());
+    }
+
+    // go to the network, conditionally if we hold a validator; `done` gets the stored
+    // entry, or null when the response is not stored
+    private HttpResponse fetch(String key, String url, Map<String, String> headers, Entry cached, Fetcher net,
+                               CompletableFuture<Entry> done) throws Exception {
+        Map<String, String> h = new LinkedHashMap<>();
+        if (headers != null) h.putAll(headers);
+        if (cached != null) {
+            String etag = cached.headers.get("ETag"), lm = cached.headers.get("Last-Modified");
+            if (etag != null) h.put("If-None-Match", etag);
+            if (lm != null) h.put("If-Modified-Since", lm);
+        }
+
+        long requestTime = System.currentTimeMillis();
+        HttpResponse resp = net.fetch("GET", url, h, null);
+        long responseTime = System.currentTimeMillis();
+
+        if (resp.getStatusCode() == 304 && cached != null) {
+            resp.close();
+            revalidated.incrementAndGet();
+            // RFC 9111 §4.3.4: freshen the stored headers with those of the 304
+            Map<String, String> merged = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            merged.putAll(cached.headers);
+            resp.getHeaders().forEach((k, v) -> { if (!NOT_STORED.contains(k.toLowerCase())) merged.put(k, v); });
+            Entry fresh = new Entry(key, requestTime, responseTime, cached.status, cached.message,
+                    merged, cached.vary, cached.body);
+            put(fresh);
+            done.complete(fresh);
+            return fresh.toResponse("REVALIDATED");
+        }
+
+        // storability is decided from the head, before any of the body is read
+        misses.incrementAndGet();
+        Map<String, String> stored = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        resp.getHeaders().forEach((k, v) -> { if (!NOT_STORED.contains(k.toLowerCase())) stored.put(k, v); });
+        Map<String, String> vary = varyValues(resp.getHeaders().get("Vary"), headers);
+        Entry head = new Entry(key, requestTime, responseTime, resp.getStatusCode(), resp.getStatusMessage(),
+                stored, vary, ByteBuffer.allocate(0));
+        resp.getHeaders().put("X-Cache", "MISS");
+        long length = declaredLength(resp);
+        if (vary == null || !isStorable(head) || length > maxEntryBytes) {
+            if (cached != null) remove(key);
+            done.complete(null);
+            return resp;
+        }
+        if (resp.getBodyStream() == null) {
+            put(head);
+            done.complete(head);
+            return resp;
+        }
+        resp.wrapBody(in -> {
+            StoringInputStream copy = new StoringInputStream(in, head, cached != null, done, length);
+            resp.onClose(copy::abandon); // closed before the end: nothing is stored
+            return copy;
+        });
+        return resp;
+    }
+
+    // Content-Length of a response whose body is not re-encoded on the way (-1 = unknown)
+    private static long declaredLength(HttpResponse resp) {
+        if (resp.getHeaders().containsKey("Content-Encoding")) return -1; // length of the encoded body
+        try {
+            return Long.parseLong(resp.getHeaders().getOrDefault("Content-Length", "-1").trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // null when f did not complete within waitMs
+    private static Entry await(CompletableFuture<Entry> f, long waitMs) throws Exception {
+        try {
+            return waitMs > 0 ? f.get(waitMs, TimeUnit.MILLISECONDS) : f.get();
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ex ? ex : e;
+        }
+    }
+
+    // RFC 9111 §3: may this response be stored at all?
+    private static boolean isStorable(Entry e) {
+        Map<String, String> cc = directives(e.headers.get("Cache-Control"));
+        if (cc.containsKey("no-store")) return false;
+        boolean explicit = cc.containsKey("max-age") || e.headers.containsKey("Expires") || cc.containsKey("public");
+        if (!explicit && !HEURISTIC_STATUS.contains(e.status)) return false;
+        return explicit || cc.containsKey("no-cache")
+                || e.headers.containsKey("ETag") || e.headers.containsKey("Last-Modified");
+    }
+
+    private void invalidate(String url, Map<String, String> respHeaders) {
+        ParsedUrl base = ParsedUrl.parse(url);
+        remove(base.toString());
+        for (String h : List.of("Location", "Content-Location")) {
+            String loc = respHeaders.get(h);
+            if (loc == null) continue;
+            try {
+                remove(ParsedUrl.parse(URI.create(url).resolve(loc).toString()).toString());
+            } catch (IllegalArgumentException ignored) { /* unparsable Location */ }
+        }
+    }
+
+    private static boolean hasConditional(Map<String, String> h) {
+        return header(h, "If-None-Match") != null || header(h, "If-Modified-Since") != null
+                || header(h, "Range") != null;
+    }
+
+    // ----- tiers -----
+
+    private Entry lookup(String key, Map<String, String> reqHeaders) {
+        Entry e;
+        synchronized (memory) { e = memory.get(key); }
+        if (e == null && dir != null) {
+            e = readDisk(key);
+            if (e != null) remember(e); // promote; body stays a mapped buffer
+        }
+        return e != null && e.matchesVary(reqHeaders) ? e : null;
+    }
+
+    private void put(Entry e) {
+        remember(e);
+        if (dir != null) writeDisk(e);
+    }
+
+    private void remember(Entry e) {
+        synchronized (memory) {
+            Entry old = memory.put(e.key, e);
+            if (old != null) memoryBytes -= old.size();
+            memoryBytes += e.size();
+            Iterator<Entry> it = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+                Entry victim = it.next();
+                memoryBytes -= victim.size();
+                it.remove();
+            }
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (memory) {
+            Entry old = memory.remove(key);
+            if (old != null) memoryBytes -= old.size();
+        }
+        if (dir == null) return;
+        String name = fileName(key);
+        synchronized (disk) {
+            Long size = disk.remove(name);
+            if (size != null) diskBytes -= size;
+        }
+        try { Files.deleteIfExists(dir.resolve(name)); } catch (IOException ignored) { }
+    }
+
+    // ----- disk tier -----
+
+    // rebuild the LRU order from file modification times
+    private void loadDiskIndex() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(p -> p.getFileName().toString().endsWith(".entry")).toList();
+        }
+        List<Path> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.comparingLong(p -> p.toFile().lastModified()));
+        synchronized (disk) {
+            for (Path p : sorted) {
+                long size = p.toFile().length();
+                disk.put(p.getFileName().toString(), size);
+                diskBytes += size;
+            }
+        }
+    }
+
+    private Entry readDisk(String key) {
+        String name = fileName(key);
+        synchronized (disk) {
+            if (disk.get(name) == null) return null; // touches LRU order
+        }
+        try (FileChannel ch = FileChannel.open(dir.resolve(name))) {
+            ByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()); // valid after close
+            DataInputStream in = new DataInputStream(new BufferInputStream(map));
+            if (in.readInt() != MAGIC || !in.readUTF().equals(key)) return null;
+            long requestTime = in.readLong(), responseTime = in.readLong();
+            int status = in.readInt();
+            String message = in.readUTF();
+            Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = in.readInt(); i > 0; i--) headers.put(in.readUTF(), in.readUTF());
+            Map<String, String> vary = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = in.readInt(); i > 0; i--) vary.put(in.readUTF(), in.readUTF());
+            int len = in.readInt();
+            ByteBuffer body = map.slice(map.position(), len).asReadOnlyBuffer();
+            return new Entry(key, requestTime, responseTime, status, message, headers, vary, body);
+        } catch (IOException | RuntimeException e) {
+            remove(key); // truncated / foreign file
+            return null;
+        }
+    }
+
+    private void writeDisk(Entry e) {
+        try {
+            ByteArrayOutputStream head = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(head);
+            out.writeInt(MAGIC);
+            out.writeUTF(e.key);
+            out.writeLong(e.requestTime);
+            out.writeLong(e.responseTime);
+            out.writeInt(e.status);
+            out.writeUTF(e.message == null ? "" : e.message);
+            out.writeInt(e.headers.size());
+            for (var h : e.headers.entrySet()) { out.writeUTF(h.getKey()); out.writeUTF(h.getValue()); }
+            out.writeInt(e.vary.size());
+            for (var h : e.vary.entrySet()) { out.writeUTF(h.getKey()); out.writeUTF(h.getValue()); }
+            out.writeInt(e.body.remaining());
+
+            // write to a temp file and rename, so readers never map a half-written entry
+            String name = fileName(e.key);
+            Path tmp = Files.createTempFile(dir, name, ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer h = ByteBuffer.wrap(head.toByteArray()), b = e.body.duplicate();
+                while (h.hasRemaining()) ch.write(h);
+                while (b.hasRemaining()) ch.write(b);
+            }
+            long size = Files.size(tmp);
+            Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            List<String> evict = new ArrayList<>();
+            synchronized (disk) {
+                Long old = disk.put(name, size);
+                diskBytes += size - (old == null ? 0 : old);
+                Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator();
+                while (diskBytes > maxDiskBytes && it.hasNext()) {
+                    Map.Entry<String, Long> victim = it.next();
+                    if (victim.getKey().equals(name)) continue;
+                    diskBytes -= victim.getValue();
+                    evict.add(victim.getKey());
+                    it.remove();
+                }
+            }
+            for (String f : evict) Files.deleteIfExists(dir.resolve(f));
+        } catch (IOException | RuntimeException ignored) {
+            // disk tier is best effort (full disk, header > 64 KiB for writeUTF, …)
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(d, 0, 16) + ".entry";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ----- header helpers -----
+
+    // "max-age=60, no-cache" → {max-age=60, no-cache=""}
+    private static Map<String, String> directives(String cc) {
+        Map<String, String> d = new HashMap<>();
+        if (cc == null) return d;
+        for (String part : cc.split(",")) {
+            String p = part.trim();
+            if (p.isEmpty()) continue;
+            int eq = p.indexOf('=');
+            if (eq < 0) d.put(p.toLowerCase(), "");
+            else d.put(p.substring(0, eq).trim().toLowerCase(), p.substring(eq + 1).trim().replace("\"", ""));
+        }
+        return d;
+    }
+
+    // request header values named by Vary; null = Vary: * (never reusable)
+    private static Map<String, String> varyValues(String vary, Map<String, String> reqHeaders) {
+        Map<String, String> v = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (vary == null) return v;
+        for (String n : vary.split(",")) {
+            String name = n.trim();
+            if (name.equals("*")) return null;
+            if (!name.isEmpty()) v.put(name, Objects.requireNonNullElse(header(reqHeaders, name), ""));
+        }
+        return v;
+    }
+
+    private static String header(Map<String, String> h, String name) {
+        if (h == null) return null;
+        for (var e : h.entrySet()) if (e.getKey().equalsIgnoreCase(name)) return e.getValue();
+        return null;
+    }
+
+    private static long parseDate(String v) {
+        if (v == null) return -1;
+        try {
+            return ZonedDateTime.parse(v.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (Exception e) {
+            return -1; // invalid dates (e.g. Expires: 0) count as already expired
+        }
+    }
+
+    // ----- stored response -----
+
+    private static final class Entry {
+        final String key;
+        final long requestTime, responseTime;            // epoch ms around the exchange that produced it
+        final int status;
+        final String message;
+        final Map<String, String> headers;               // case-insensitive, end-to-end only
+        final Map<String, String> vary;                  // request header values this entry was selected by
+        final ByteBuffer body;                           // heap or mapped, never mutated
+
+        Entry(String key, long requestTime, long responseTime, int status, String message,
+              Map<String, String> headers, Map<String, String> vary, ByteBuffer body) {
+            this.key = key;
+            this.requestTime = requestTime;
+            this.responseTime = responseTime;
+            this.status = status;
+            this.message = message;
+            this.headers = headers;
+            this.vary = vary == null ? Map.of() : vary;
+            this.body = body;
+        }
+
+        long size() { return body.remaining() + 64L * (headers.size() + 1); }
+
+        boolean matchesVary(Map<String, String> reqHeaders) {
+            for (var v : vary.entrySet()) {
+                if (!v.getValue().equals(Objects.requireNonNullElse(header(reqHeaders, v.getKey()), ""))) return false;
+            }
+            return true;
+        }
+
+        // RFC 9111 §4.2.1
+        long freshnessLifetime() {
+            Map<String, String> cc = directives(headers.get("Cache-Control"));
+            if (cc.containsKey("no-cache")) return 0;
+            if (cc.containsKey("max-age")) {
+                try { return Long.parseLong(cc.get("max-age")) * 1000; } catch (NumberFormatException e) { return 0; }
+            }
+            long date = dateValue();
+            if (headers.containsKey("Expires")) return Math.max(0, parseDate(headers.get("Expires")) - date);
+            long lm = parseDate(headers.get("Last-Modified"));
+            if (lm > 0 && HEURISTIC_STATUS.contains(status)) return Math.max(0, (date - lm) / 10); // §4.2.2
+            return 0;
+        }
+
+        // RFC 9111 §4.2.3
+        long currentAge(long now) {
+            long apparent = Math.max(0, responseTime - dateValue());
+            long ageValue = 0;
+            try { ageValue = Long.parseLong(headers.getOrDefault("Age", "0").trim()) * 1000; } catch (NumberFormatException ignored) { }
+            long corrected = ageValue + (responseTime - requestTime);
+            return Math.max(apparent, corrected) + (now - responseTime);
+        }
+
+        boolean isFresh(long now) { return freshnessLifetime() > currentAge(now); }
+
+        private long dateValue() {
+            long d = parseDate(headers.get("Date"));
+            return d > 0 ? d : responseTime;
+        }
+
+        HttpResponse toResponse(String how) {
+            HttpResponse r = new HttpResponse();
+            r.setStatusCode(status);
+            r.setStatusMessage(message);
+            r.getHeaders().putAll(headers);
+            r.getHeaders().put("Content-Length", String.valueOf(body.remaining()));
+            r.getHeaders().put("Age", String.valueOf(currentAge(System.currentTimeMillis()) / 1000));
+            r.getHeaders().put("X-Cache", how);
+            r.setBodyStream(body.hasRemaining() ? new BufferInputStream(body.duplicate()) : null, null);
+            return r;
+        }
+    }
+
+    // the caller's view of a storable miss: every byte read is also copied into the entry,
+    // which is stored at EOF. Past maxEntryBytes, on a read error or an early close the copy
+    // is dropped and the body just passes through.
+    private final class StoringInputStream extends FilterInputStream {
+        private final Entry head;
+        private final boolean replaces;                  // a stale entry for this key exists
+        private final CompletableFuture<Entry> done;
+        private ByteArrayOutputStream copy;              // null once stored or given up
+
+        StoringInputStream(InputStream in, Entry head, boolean replaces, CompletableFuture<Entry> done, long length) {
+            super(in);
+            this.head = head;
+            this.replaces = replaces;
+            this.done = done;
+            this.copy = new ByteArrayOutputStream(length > 0 ? (int) Math.min(length, 1 << 20) : 8192);
+        }
+
+        @Override public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            int n;
+            try {
+                n = in.read(b, off, len);
+            } catch (IOException e) {
+                abandon();
+                throw e;
+            }
+            if (n < 0) store();
+            else copy(b, off, n);
+            return n;
+        }
+
+        @Override public long skip(long n) throws IOException {
+            abandon(); // skipped bytes never reach the copy
+            return in.skip(n);
+        }
+
+        @Override public boolean markSupported() { return false; }
+
+        private synchronized void copy(byte[] b, int off, int n) {
+            if (copy == null) return;
+            if (copy.size() + (long) n > maxEntryBytes) {
+                abandon();
+                return;
+            }
+            copy.write(b, off, n);
+        }
+
+        private synchronized void store() {
+            if (copy == null) return;
+            Entry e = new Entry(head.key, head.requestTime, head.responseTime, head.status, head.message,
+                    head.headers, head.vary, ByteBuffer.wrap(copy.toByteArray()));
+            copy = null;
+            put(e);
+            done.complete(e);
+        }
+
+        synchronized void abandon() {
+            if (copy == null) return;
+            copy = null;
+            if (replaces) remove(head.key);
+            done.complete(null);
+        }
+    }
+
+    // InputStream over a (possibly mapped) ByteBuffer
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        BufferInputStream(ByteBuffer buf) { this.buf = buf; }
+
+        @Override public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buf.hasRemaining()) return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override public int available() { return buf.remaining(); }
+    }
+}
@@ -52,8 +52,7 @@ public class HttpClientCLI {
             String body = bodyBuilder.isEmpty() ? null : bodyBuilder.toString();
 
             // perform the HTTP request
-            try {
-                HttpResponse response = client.request(method, url, headers, body);
+            try (HttpResponse response = client.requestStreaming(method, url, headers, body)) {
 
                 // display status line
                 System.out.println("Response status: " + response.getStatusCode() + " "
@@ -63,9 +62,15 @@ public class HttpClientCLI {
                 System.out.println("Response headers:");
                 response.getHeaders().forEach((k, v) -> System.out.println(k + ": " + v));
 
-                // show response body
+                // show response body, streamed so large downloads use constant memory
                 System.out.println("\nResponse body:");
-                System.out.println(response.getBody());
+                if (response.getBodyStream() != null) response.getBodyStream().transferTo(System.out);
+                System.out.println();
+
+                // resilience counters for the session so far
+                if (client.getRetries() + client.getHedges() + client.getTimeouts() > 0)
+                    System.out.println("(retries: " + client.getRetries() + ", hedges: " + client.getHedges()
+                            + ", timeouts: " + client.getTimeouts() + ")");
 
             } catch (Exception e) {
                 System.err.println("Request failed: " + e.getMessage());
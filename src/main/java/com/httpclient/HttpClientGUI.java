@@ -4,33 +4,64 @@ import main.java.com.common.ApiKeyConfig;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
-// Swing GUI for interactive HTTP client – supports multiple verbs, headers, and bodies
+// Swing GUI for interactive HTTP client – supports multiple verbs, headers, and bodies.
+// Requests run on a SwingWorker, never on the event dispatch thread: the body is read
+// as a stream and appended to a virtualized JList (only visible rows are painted)
+// while it downloads, with progress, cancel, and connect / first byte / total timings.
+// JSON pretty-printing also runs in the background, on demand.
 public class HttpClientGUI extends JFrame {
+
+    private static final int MAX_ROW = 1000;      // longer lines are wrapped into rows of this many chars
+
     private final JComboBox<String> methodBox;
     private final JTextField urlField;
     private final JTextArea headersArea;
     private final JTextArea bodyArea;
-    private final JTextArea responseArea;
+    private final JTextArea responseHeadersArea;
+    private final JList<String> responseList;
+    private final JLabel statusLabel = new JLabel(" ");
+    private final JProgressBar progress = new JProgressBar();
+    private final JButton sendButton = new JButton("Send Request");
+    private final JButton cancelButton = new JButton("Cancel");
+    private final JCheckBox prettyBox = new JCheckBox("Pretty JSON");
     private final SimpleHttpClient client;
 
+    private RequestWorker current;                // running request (EDT only)
+    private SwingWorker<List<String>, Void> prettyWorker;
+    private List<String> rawRows = List.of();     // body as received, for switching pretty-printing off
+    private boolean json;                         // response Content-Type is JSON
+
     public HttpClientGUI(String apiKey) {
         client = new SimpleHttpClient(apiKey);
 
         setTitle("HTTP Client GUI");
-        setSize(800, 600);
+        setSize(900, 700);
         setDefaultCloseOperation(EXIT_ON_CLOSE);
         setLayout(new BorderLayout());
 
-        // Top: HTTP method selector and URL input
+        // Top: HTTP method selector, URL input, send / cancel
         JPanel topPanel = new JPanel(new BorderLayout());
         methodBox = new JComboBox<>(new String[]{"GET", "HEAD", "POST", "PUT", "DELETE"});
         urlField = new JTextField("http://localhost:8080/resources");
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 4, 0));
+        buttons.add(sendButton);
+        buttons.add(cancelButton);
+        cancelButton.setEnabled(false);
         topPanel.add(methodBox, BorderLayout.WEST);
         topPanel.add(urlField, BorderLayout.CENTER);
+        topPanel.add(buttons, BorderLayout.EAST);
         add(topPanel, BorderLayout.NORTH);
 
         // Center: split for request inputs and response view
@@ -57,22 +88,43 @@ public class HttpClientGUI extends JFrame {
         inputPanel.add(new JScrollPane(headersArea));
         inputPanel.add(new JScrollPane(bodyArea));
 
-        // Response area (read-only)
-        responseArea = new JTextArea();
-        responseArea.setEditable(false);
-        responseArea.setBorder(BorderFactory.createTitledBorder("Response"));
+        // Response: status + timings, headers, and the body as a virtualized list of rows
+        JPanel responsePanel = new JPanel(new BorderLayout());
+        JPanel statusPanel = new JPanel(new BorderLayout(8, 0));
+        progress.setStringPainted(true);
+        progress.setVisible(false);
+        statusPanel.add(statusLabel, BorderLayout.CENTER);
+        statusPanel.add(progress, BorderLayout.EAST);
+        statusPanel.add(prettyBox, BorderLayout.WEST);
+        responsePanel.add(statusPanel, BorderLayout.NORTH);
+
+        responseHeadersArea = new JTextArea(5, 40);
+        responseHeadersArea.setEditable(false);
+        JScrollPane headersScroll = new JScrollPane(responseHeadersArea);
+        headersScroll.setBorder(BorderFactory.createTitledBorder("Response headers"));
+
+        responseList = new JList<>(new RowModel());
+        responseList.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        FontMetrics fm = responseList.getFontMetrics(responseList.getFont());
+        responseList.setFixedCellHeight(fm.getHeight());  // fixed sizes: no per-row measuring
+        responseList.setFixedCellWidth(fm.charWidth('m') * 80);
+        JScrollPane bodyScroll = new JScrollPane(responseList);
+        bodyScroll.setBorder(BorderFactory.createTitledBorder("Response body"));
+
+        JSplitPane responseSplit = new JSplitPane(JSplitPane.VERTICAL_SPLIT, headersScroll, bodyScroll);
+        responseSplit.setResizeWeight(0.2);
+        responsePanel.add(responseSplit, BorderLayout.CENTER);
 
         centerSplit.setTopComponent(inputPanel);
-        centerSplit.setBottomComponent(new JScrollPane(responseArea));
+        centerSplit.setBottomComponent(responsePanel);
         add(centerSplit, BorderLayout.CENTER);
 
-        // Send button
-        JButton sendButton = new JButton("Send Request");
         sendButton.addActionListener(this::sendRequest);
-        add(sendButton, BorderLayout.SOUTH);
+        cancelButton.addActionListener(e -> cancelRequest());
+        prettyBox.addActionListener(e -> applyPretty());
     }
 
-    // Builds and sends request, then displays status, headers, and body
+    // Builds the request from the form (on the EDT) and runs it on a worker
     private void sendRequest(ActionEvent event) {
         String method = ((String) methodBox.getSelectedItem()).trim();
         String url    = urlField.getText().trim();
@@ -80,21 +132,339 @@ public class HttpClientGUI extends JFrame {
         String rawBody = bodyArea.getText();
         String body   = (rawBody == null || rawBody.isBlank()) ? null : rawBody;
 
-        try {
-            HttpResponse response = client.request(method, url, headers, body);
+        cancelPretty();
+        showRows(List.of());
+        rawRows = List.of();
+        responseHeadersArea.setText("");
+        statusLabel.setText("Sending " + method + " " + url + " ...");
+        progress.setIndeterminate(true);
+        progress.setString("");
+        progress.setVisible(true);
+        sendButton.setEnabled(false);
+        cancelButton.setEnabled(true);
+
+        current = new RequestWorker(method, url, headers, body);
+        current.execute();
+    }
+
+    // Stops waiting at once; an in-flight read ends when its response is closed
+    private void cancelRequest() {
+        RequestWorker w = current;
+        if (w == null) return;
+        w.cancel(true);
+        w.closeResponse();
+        finish(w, "Cancelled");
+    }
+
+    private void finish(RequestWorker w, String status) {
+        if (current != w) return; // a newer request owns the UI
+        current = null;
+        statusLabel.setText(status);
+        progress.setVisible(false);
+        sendButton.setEnabled(true);
+        cancelButton.setEnabled(false);
+    }
+
+    // ----- request worker -----
+
+    // Sends the request, then streams the body: rows go to the EDT in batches while they arrive.
+    // Batches use invokeLater rather than publish(), whose delivery may trail done().
+    private final class RequestWorker extends SwingWorker<Void, Void> {
+        private final String method, url, body;
+        private final Map<String, String> headers;
+        private volatile HttpResponse response;
+        private volatile long bytesRead;
+        private long start, total;                // nanoTime at send, duration incl. body
+        private final Timer ticker = new Timer(100, e -> updateProgress());
+
+        RequestWorker(String method, String url, Map<String, String> headers, String body) {
+            this.method = method;
+            this.url = url;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        @Override protected Void doInBackground() throws Exception {
+            start = System.nanoTime();
+            HttpResponse resp = client.requestStreaming(method, url, headers, body);
+            response = resp;
+            if (isCancelled()) { resp.close(); return null; }
+            SwingUtilities.invokeLater(() -> showHead(this, resp));
+
+            InputStream in = resp.getBodyStream();
+            if (in == null) {
+                total = System.nanoTime() - start;
+                return null;
+            }
+            try (Reader r = new InputStreamReader(new CountingInputStream(in), resp.charset())) {
+                char[] buf = new char[16 * 1024];
+                StringBuilder row = new StringBuilder();
+                List<String> batch = new ArrayList<>();
+                long lastDelivery = System.nanoTime();
+                int n;
+                while (!isCancelled() && (n = r.read(buf)) != -1) {
+                    for (int i = 0; i < n; i++) {
+                        char c = buf[i];
+                        if (c == '\n') { batch.add(row.toString()); row.setLength(0); continue; }
+                        if (c == '\r') continue;
+                        row.append(c);
+                        if (row.length() == MAX_ROW) { batch.add(row.toString()); row.setLength(0); }
+                    }
+                    if (System.nanoTime() - lastDelivery > 50_000_000) { // ~20 UI updates per second
+                        deliver(batch);
+                        batch = new ArrayList<>();
+                        lastDelivery = System.nanoTime();
+                    }
+                }
+                if (row.length() > 0) batch.add(row.toString());
+                deliver(batch);
+                total = System.nanoTime() - start;
+            } finally {
+                resp.close();
+            }
+            return null;
+        }
+
+        private void deliver(List<String> rows) {
+            if (rows.isEmpty()) return;
+            SwingUtilities.invokeLater(() -> {
+                if (current != this) return;
+                RowModel m = (RowModel) responseList.getModel();
+                m.append(rows);
+                widen(m.maxLength);
+            });
+        }
+
+        @Override protected void done() {
+            ticker.stop();
+            if (current != this) return;
+            try {
+                get();
+                HttpResponse r = response;
+                rawRows = ((RowModel) responseList.getModel()).rows;
+                finish(this, r.getStatusCode() + " " + r.getStatusMessage() + "    " + timings(r, total));
+                if (prettyBox.isSelected()) applyPretty();
+            } catch (CancellationException ignored) {
+                // cancelRequest() already reset the UI
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                finish(this, "ERROR: " + cause.getMessage());
+                cause.printStackTrace();
+            }
+        }
+
+        void closeResponse() {
+            HttpResponse r = response;
+            if (r != null) {
+                try { r.close(); } catch (IOException ignored) { }
+            }
+        }
+
+        private void updateProgress() {
+            HttpResponse r = response;
+            long len = -1;
+            if (r != null && !r.getHeaders().containsKey("Content-Encoding")) {
+                try { len = Long.parseLong(r.getHeaders().getOrDefault("Content-Length", "-1")); }
+                catch (NumberFormatException ignored) { }
+            }
+            progress.setIndeterminate(len <= 0);
+            if (len > 0) progress.setValue((int) (bytesRead * 100 / len));
+            progress.setString(size(bytesRead) + (len > 0 ? " / " + size(len) : ""));
+        }
 
-            String respBody = response.getBody() != null ? response.getBody() : "";
-            String respHeaders = formatHeaders(response.getHeaders());
+        // counts body bytes for the progress bar
+        private final class CountingInputStream extends FilterInputStream {
+            CountingInputStream(InputStream in) { super(in); }
 
-            responseArea.setText(
-                    "Status: " + response.getStatusCode() + " " + response.getStatusMessage() + "\n\n" +
-                            "Headers:\n" + respHeaders + "\n\n" +
-                            "Body:\n" + respBody
-            );
-        } catch (Exception e) {
-            responseArea.setText("ERROR: " + e.getMessage());
-            e.printStackTrace();
+            @Override public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) bytesRead++;
+                return b;
+            }
+
+            @Override public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) bytesRead += n;
+                return n;
+            }
+        }
+    }
+
+    // status line and headers as soon as the head is in; the body keeps streaming
+    private void showHead(RequestWorker w, HttpResponse r) {
+        if (current != w) return;
+        statusLabel.setText(r.getStatusCode() + " " + r.getStatusMessage() + "    "
+                + timings(r, -1) + " | receiving body ...");
+        responseHeadersArea.setText(formatHeaders(r.getHeaders()));
+        responseHeadersArea.setCaretPosition(0);
+        String ct = r.getHeaders().getOrDefault("Content-Type", "").toLowerCase();
+        json = ct.contains("json");
+        w.ticker.start();
+    }
+
+    // ----- pretty-printing -----
+
+    // re-render the current body pretty-printed (background) or as received
+    private void applyPretty() {
+        cancelPretty();
+        if (current != null) return; // done() applies it once the body is complete
+        if (!prettyBox.isSelected()) {
+            showRows(rawRows);
+            return;
+        }
+        List<String> source = rawRows;
+        if (!json && !looksLikeJson(source)) {
+            statusLabel.setText(statusLabel.getText().replaceAll(" \\| not JSON$", "") + " | not JSON");
+            return;
         }
+        prettyWorker = new SwingWorker<>() {
+            @Override protected List<String> doInBackground() {
+                return JsonPrettyPrinter.format(source, this::isCancelled);
+            }
+
+            @Override protected void done() {
+                if (isCancelled() || prettyWorker != this) return;
+                try {
+                    showRows(get());
+                } catch (Exception e) {
+                    statusLabel.setText("Pretty-print failed: " + e.getMessage());
+                }
+            }
+        };
+        prettyWorker.execute();
+    }
+
+    private void cancelPretty() {
+        if (prettyWorker != null) prettyWorker.cancel(true);
+        prettyWorker = null;
+    }
+
+    private static boolean looksLikeJson(List<String> rows) {
+        for (String r : rows) {
+            String t = r.strip();
+            if (!t.isEmpty()) return t.startsWith("{") || t.startsWith("[");
+        }
+        return false;
+    }
+
+    // Re-indents JSON text without building a tree, so large and NDJSON bodies are cheap;
+    // a top-level value that ends starts a new row (NDJSON stays one value per block)
+    static final class JsonPrettyPrinter {
+        private final List<String> out = new ArrayList<>();
+        private final StringBuilder row = new StringBuilder();
+        private int depth;
+        private boolean inString, escaped, pendingOpen;
+
+        static List<String> format(List<String> rows, java.util.function.BooleanSupplier cancelled) {
+            JsonPrettyPrinter p = new JsonPrettyPrinter();
+            for (String r : rows) {
+                if (cancelled.getAsBoolean()) return p.out;
+                for (int i = 0; i < r.length(); i++) p.accept(r.charAt(i));
+                if (p.inString) p.row.append('\n'); // raw newline inside a string: keep text intact
+            }
+            p.newline(0);
+            return p.out;
+        }
+
+        private void accept(char c) {
+            if (inString) {
+                row.append(c);
+                if (escaped) escaped = false;
+                else if (c == '\\') escaped = true;
+                else if (c == '"') inString = false;
+                return;
+            }
+            if (Character.isWhitespace(c)) return;
+            if (pendingOpen) {
+                pendingOpen = false;
+                if (c == '}' || c == ']') { row.append(c); depth--; if (depth == 0) newline(0); return; } // {} / []
+                newline(depth);
+            }
+            switch (c) {
+                case '{', '[' -> { row.append(c); depth++; pendingOpen = true; }
+                case '}', ']' -> {
+                    depth = Math.max(0, depth - 1);
+                    newline(depth);
+                    row.append(c);
+                    if (depth == 0) newline(0);
+                }
+                case ',' -> { row.append(c); newline(depth); }
+                case ':' -> row.append(": ");
+                case '"' -> { row.append(c); inString = true; }
+                default -> row.append(c);
+            }
+        }
+
+        // end the current row (if any) and indent the next one
+        private void newline(int indent) {
+            if (row.length() > 0 && !row.toString().isBlank()) {
+                for (int i = 0; i < row.length(); i += MAX_ROW)
+                    out.add(row.substring(i, Math.min(row.length(), i + MAX_ROW)));
+            }
+            row.setLength(0);
+            row.append("  ".repeat(indent));
+        }
+    }
+
+    // ----- virtualized body view -----
+
+    // rows of the body; JList asks only for the visible ones
+    private static final class RowModel extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+        private final List<String> rows;
+        private int maxLength;
+
+        RowModel() { this(new ArrayList<>()); }
+
+        RowModel(List<String> rows) {
+            this.rows = rows;
+            for (String r : rows) maxLength = Math.max(maxLength, r.length());
+        }
+
+        void append(List<String> more) {
+            int from = rows.size();
+            rows.addAll(more);
+            for (String r : more) maxLength = Math.max(maxLength, r.length());
+            fireIntervalAdded(this, from, rows.size() - 1);
+        }
+
+        @Override public int getSize() { return rows.size(); }
+        @Override public String getElementAt(int i) { return rows.get(i); }
+    }
+
+    private void showRows(List<String> rows) {
+        RowModel m = new RowModel(rows instanceof ArrayList ? rows : new ArrayList<>(rows));
+        responseList.setModel(m);
+        widen(m.maxLength);
+    }
+
+    // fixed cell width tracks the longest row so horizontal scrolling works without measuring rows
+    private void widen(int chars) {
+        FontMetrics fm = responseList.getFontMetrics(responseList.getFont());
+        int w = fm.charWidth('m') * Math.max(80, chars + 1);
+        if (w > responseList.getFixedCellWidth()) responseList.setFixedCellWidth(w);
+        else if (chars < 80) responseList.setFixedCellWidth(fm.charWidth('m') * 80);
+    }
+
+    // ----- formatting -----
+
+    // connect / first byte come from the client; total includes reading the body
+    private static String timings(HttpResponse r, long totalNanos) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("connect ").append(r.getConnectNanos() < 0 ? "n/a" : ms(r.getConnectNanos()));
+        sb.append(" | first byte ").append(r.getFirstByteNanos() < 0 ? "n/a" : ms(r.getFirstByteNanos()));
+        if (totalNanos >= 0) sb.append(" | total ").append(ms(totalNanos));
+        return sb.toString();
+    }
+
+    private static String ms(long nanos) {
+        return String.format("%.1f ms", nanos / 1e6);
+    }
+
+    private static String size(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
     }
 
     // Parses multiline Key:Value headers into a map
@@ -127,4 +497,4 @@ public class HttpClientGUI extends JFrame {
             gui.setVisible(true);
         });
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,32 @@
 package main.java.com.httpclient;
 
-import java.util.HashMap;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
 
 /*
  * Mutable object representing an HTTP response – status line, headers, and body.
+ * The body is either streamed (getBodyStream, already de-chunked / decompressed)
+ * or buffered on demand (getBody). Closing the response releases its connection.
  */
-public class HttpResponse {
+public class HttpResponse implements Closeable {
     private int statusCode;                 // numeric status (e.g. 200)
     private String statusMessage;           // reason phrase (e.g. "OK")
-    private final Map<String,String> headers = new HashMap<>(); // response headers
-    private String body;                    // response body as raw string
+    private final Map<String,String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER); // response headers
+    private final Map<String,List<String>> received = new TreeMap<>(String.CASE_INSENSITIVE_ORDER); // every line per name
+    private String body;                    // response body as decoded string (buffered mode)
+    private InputStream bodyStream;         // unread body (streaming mode)
+    private Closeable release;              // connection / stream owning bodyStream
+    private long connectNanos = -1;         // connect + TLS of the attempt (0 = reused connection, -1 = unknown)
+    private long firstByteNanos = -1;       // request start → first response byte (-1 = unknown, e.g. cache hit)
 
     // getters / setters
     public int getStatusCode() { return statusCode; }
@@ -21,6 +37,85 @@ public class HttpResponse {
 
     public Map<String,String> getHeaders() { return headers; }
 
-    public String getBody() { return body; }
+    // every value received for `name`, in order (Set-Cookie, WWW-Authenticate, …); the
+    // header map keeps only the last, and a value put there later replaces them all
+    public List<String> getHeaderValues(String name) {
+        String last = headers.get(name);
+        if (last == null) return List.of();
+        List<String> all = received.get(name);
+        return all != null && last.equals(all.get(all.size() - 1)) ? all : List.of(last);
+    }
+
+    // one header line as parsed off the wire
+    void addHeader(String name, String value) {
+        headers.put(name, value);
+        received.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+    }
+
+    public long getConnectNanos()   { return connectNanos; }
+    public long getFirstByteNanos() { return firstByteNanos; }
+    public void setTiming(long connectNanos, long firstByteNanos) {
+        this.connectNanos = connectNanos;
+        this.firstByteNanos = firstByteNanos;
+    }
+
+    // Buffered convenience for small responses: reads the rest of the stream once
+    public String getBody() {
+        if (body == null && bodyStream != null) {
+            try {
+                body = new String(bodyStream.readAllBytes(), charset());
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return body;
+    }
     public void setBody(String b) { body = b; }
+
+    // Raw body bytes; reading at the caller's pace is the backpressure (null = no body)
+    public InputStream getBodyStream() { return bodyStream; }
+
+    public void setBodyStream(InputStream in, Closeable release) {
+        this.bodyStream = in;
+        this.release = release;
+    }
+
+    // same body seen through a wrapper that records the read (see ClientEvents)
+    void observeBody(ClientEvents.BodyRead event) {
+        if (bodyStream != null) bodyStream = new ClientEvents.BodyStream(bodyStream, event);
+    }
+
+    // same body through another wrapper (e.g. the cache's copy); the release is unchanged
+    void wrapBody(UnaryOperator<InputStream> wrap) {
+        if (bodyStream != null) bodyStream = wrap.apply(bodyStream);
+    }
+
+    // also run `then` when the response is closed, after its own release
+    void onClose(Closeable then) {
+        Closeable r = release;
+        release = r == null ? then : () -> {
+            try { r.close(); } finally { then.close(); }
+        };
+    }
+
+    // release the underlying connection (unread body is discarded)
+    @Override public void close() throws IOException {
+        if (bodyStream instanceof ClientEvents.BodyStream b) b.abandon();
+        Closeable r = release;
+        release = null;
+        bodyStream = null;
+        if (r != null) r.close();
+    }
+
+    // charset parameter of Content-Type, UTF-8 when absent or unknown
+    Charset charset() {
+        String ct = headers.getOrDefault("Content-Type", "");
+        int i = ct.toLowerCase().indexOf("charset=");
+        if (i >= 0) {
+            String cs = ct.substring(i + 8).split(";")[0].trim().replace("\"", "");
+            try { return Charset.forName(cs); } catch (Exception ignored) { }
+        }
+        return StandardCharsets.UTF_8;
+    }
 }
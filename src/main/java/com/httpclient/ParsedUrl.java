@@ -4,10 +4,10 @@ import java.net.URI;
 import java.net.URISyntaxException;
 
 /*
- * Helper that parses a URL into scheme, host, port, and path.
+ * Helper that parses a URL into scheme, host, port, path and query.
  */
 public class ParsedUrl {
-    private String scheme, host, path;
+    private String scheme, host, path, query;
     private int port;
 
     // Factory method returns populated ParsedUrl or throws IllegalArgumentException
@@ -17,8 +17,9 @@ public class ParsedUrl {
             ParsedUrl p = new ParsedUrl();
             p.scheme = (u.getScheme() == null) ? "http" : u.getScheme();
             p.host   = u.getHost();
-            p.port   = (u.getPort() == -1) ? 80 : u.getPort();
-            p.path   = (u.getPath() == null || u.getPath().isEmpty()) ? "/" : u.getPath();
+            p.port   = (u.getPort() != -1) ? u.getPort() : p.scheme.equalsIgnoreCase("https") ? 443 : 80;
+            p.path   = (u.getRawPath() == null || u.getRawPath().isEmpty()) ? "/" : u.getRawPath();
+            p.query  = u.getRawQuery();
             return p;
         } catch (URISyntaxException e) {
             throw new IllegalArgumentException(e); // wrap checked exception
@@ -26,7 +27,17 @@ public class ParsedUrl {
     }
 
     // simple accessors (package‑private style)
+    public String scheme() { return scheme; }
     public String host() { return host; }
     public String path() { return path; }
+    public String query() { return query; }
     public int port()    { return port; }
+
+    // request-target for the request line / :path (path plus query)
+    public String target() { return query == null ? path : path + "?" + query; }
+
+    // scheme://host:port/path?query with the default port made explicit
+    @Override public String toString() {
+        return scheme.toLowerCase() + "://" + host.toLowerCase() + ":" + port + target();
+    }
 }
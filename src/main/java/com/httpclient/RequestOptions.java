@@ -0,0 +1,67 @@
+package main.java.com.httpclient;
+
+/*
+ * Per-request resilience settings for SimpleHttpClient:
+ *   • connect / read timeouts (per attempt) and an overall deadline (all attempts, body included)
+ *   • retries with full-jitter exponential backoff; idempotent methods only, except
+ *     connect failures, which are safe to retry for any method
+ *   • hedging: GETs slower than the host's observed p95 get a duplicate request,
+ *     whichever answers first wins
+ *   • decompression: gzip requested and decoded by default, or bodies passed through as-is
+ * Setters return this so options can be built inline.
+ */
+public class RequestOptions {
+    private int connectTimeoutMs = 10_000;   // 0 = OS default
+    private int readTimeoutMs = 30_000;      // max silence on the connection, 0 = forever
+    private long deadlineMs;                 // whole request incl. retries and body, 0 = none
+    private int maxRetries = 2;              // extra attempts after the first
+    private long backoffBaseMs = 100;        // first retry waits up to this long
+    private long backoffMaxMs = 2_000;       // cap of the exponential backoff
+    private boolean hedge;                   // duplicate slow GETs
+    private long hedgeMinDelayMs = 10;       // never hedge sooner than this
+    private boolean decompress = true;       // ask for gzip and undo it; off = body bytes as sent (proxies)
+
+    public RequestOptions() { }
+
+    // copy, so per-request tweaks don't leak into the client's defaults
+    public RequestOptions(RequestOptions o) {
+        connectTimeoutMs = o.connectTimeoutMs;
+        readTimeoutMs = o.readTimeoutMs;
+        deadlineMs = o.deadlineMs;
+        maxRetries = o.maxRetries;
+        backoffBaseMs = o.backoffBaseMs;
+        backoffMaxMs = o.backoffMaxMs;
+        hedge = o.hedge;
+        hedgeMinDelayMs = o.hedgeMinDelayMs;
+        decompress = o.decompress;
+    }
+
+    public int getConnectTimeout() { return connectTimeoutMs; }
+    public RequestOptions setConnectTimeout(int ms) { connectTimeoutMs = ms; return this; }
+
+    public int getReadTimeout() { return readTimeoutMs; }
+    public RequestOptions setReadTimeout(int ms) { readTimeoutMs = ms; return this; }
+
+    public long getDeadline() { return deadlineMs; }
+    public RequestOptions setDeadline(long ms) { deadlineMs = ms; return this; }
+
+    public int getMaxRetries() { return maxRetries; }
+    public RequestOptions setMaxRetries(int n) { maxRetries = n; return this; }
+
+    public long getBackoffBase() { return backoffBaseMs; }
+    public long getBackoffMax() { return backoffMaxMs; }
+    public RequestOptions setBackoff(long baseMs, long maxMs) {
+        backoffBaseMs = baseMs;
+        backoffMaxMs = maxMs;
+        return this;
+    }
+
+    public boolean isHedge() { return hedge; }
+    public RequestOptions setHedge(boolean hedge) { this.hedge = hedge; return this; }
+
+    public long getHedgeMinDelay() { return hedgeMinDelayMs; }
+    public RequestOptions setHedgeMinDelay(long ms) { hedgeMinDelayMs = ms; return this; }
+
+    public boolean isDecompress() { return decompress; }
+    public RequestOptions setDecompress(boolean decompress) { this.decompress = decompress; return this; }
+}
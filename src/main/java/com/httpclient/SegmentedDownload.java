@@ -0,0 +1,223 @@
+package main.java.com.httpclient;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Parallel segmented download into a preallocated file (SimpleHttpClient.download).
+ * A HEAD gives the length and validator; the file is sized up front and split into
+ * segments, each fetched by its own Range request (its own connection over HTTP/1.1,
+ * a stream of the shared connection over HTTP/2) and written with positional writes.
+ * If-Range pins all segments to one version: a resource that changed answers 200 and
+ * the download fails instead of mixing versions. A segment that breaks resumes from
+ * its last written byte; progress is kept in <file>.part, so calling download() again
+ * after a failure only fetches what is missing. Without byte-range support (or a
+ * known length) it falls back to a single plain GET.
+ */
+final class SegmentedDownload {
+
+    private static final int BUF = 64 * 1024;
+    private static final long MIN_SEGMENT = 256 * 1024;   // smaller files use fewer segments
+    private static final long SAVE_EVERY = 1 << 20;       // progress file update, bytes per segment
+
+    private final SimpleHttpClient client;
+    private final String url;
+    private final Path target, progress;
+    private final RequestOptions options;
+    private String validator;                             // strong ETag or Last-Modified
+    private long length;
+    private long[] first, last;                           // inclusive byte range per segment
+    private AtomicLongArray next;                         // next byte to fetch per segment
+
+    // the resource changed between segments → start over, retrying won't help
+    private static final class ChangedException extends IOException {
+        private static final long serialVersionUID = 1L;
+        ChangedException(String m) { super(m); }
+    }
+
+    private SegmentedDownload(SimpleHttpClient client, String url, Path target, RequestOptions options) {
+        this.client = client;
+        this.url = url;
+        this.target = target;
+        this.progress = target.resolveSibling(target.getFileName() + ".part");
+        this.options = options;
+    }
+
+    static long run(SimpleHttpClient client, String url, Path target, int segments, RequestOptions o) throws Exception {
+        return new SegmentedDownload(client, url, target, o).download(segments);
+    }
+
+    private long download(int segments) throws Exception {
+        HttpResponse head = client.request("HEAD", url, Map.of("Accept-Encoding", "identity"), null, options);
+        if (head.getStatusCode() / 100 != 2)
+            throw new IOException("HEAD " + url + " returned " + head.getStatusCode() + " " + head.getStatusMessage());
+        Map<String, String> h = head.getHeaders();
+        length = parseLong(h.get("Content-Length"));
+        String etag = h.get("ETag");
+        validator = etag != null && !etag.startsWith("W/") ? etag : h.get("Last-Modified");
+        if (length < 0 || validator == null || !"bytes".equalsIgnoreCase(h.getOrDefault("Accept-Ranges", "").trim()))
+            return single();
+
+        if (!resume()) {
+            int n = (int) Math.max(1, Math.min(segments, (length + MIN_SEGMENT - 1) / MIN_SEGMENT));
+            first = new long[n];
+            last = new long[n];
+            next = new AtomicLongArray(n);
+            for (int i = 0; i < n; i++) {
+                first[i] = length * i / n;
+                last[i] = length * (i + 1) / n - 1;
+                next.set(i, first[i]);
+            }
+        }
+
+        try (FileChannel ch = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (ch.size() > length) ch.truncate(length);
+            if (length > 0 && ch.size() < length) ch.write(ByteBuffer.allocate(1), length - 1); // preallocate (sparse)
+            save();
+
+            int n = first.length;
+            ExecutorService pool = Executors.newFixedThreadPool(n, r -> {
+                Thread t = new Thread(r, "http-download");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<Future<?>> parts = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    int seg = i;
+                    parts.add(pool.submit(() -> { fetch(seg, ch); return null; }));
+                }
+                for (Future<?> f : parts) {
+                    try {
+                        f.get();
+                    } catch (ExecutionException e) {
+                        parts.forEach(p -> p.cancel(true));
+                        if (e.getCause() instanceof ChangedException) Files.deleteIfExists(progress);
+                        else save();
+                        throw e.getCause() instanceof Exception ex ? ex : e;
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            ch.force(false);
+        }
+        Files.deleteIfExists(progress);
+        return length;
+    }
+
+    // one segment: Range from its next byte, resumed after failures that made progress
+    private void fetch(int seg, FileChannel ch) throws Exception {
+        byte[] buf = new byte[BUF];
+        int failures = 0;
+        long unsaved = 0;
+        while (next.get(seg) <= last[seg]) {
+            long from = next.get(seg);
+            try {
+                HttpResponse r = client.requestStreaming("GET", url, Map.of(
+                        "Range", "bytes=" + from + "-" + last[seg],
+                        "If-Range", validator,
+                        "Accept-Encoding", "identity"), null, options);
+                try (r) {
+                    if (r.getStatusCode() == 200) throw new ChangedException(url + " changed during the download");
+                    if (r.getStatusCode() != 206)
+                        throw new IOException("Range request returned " + r.getStatusCode() + " " + r.getStatusMessage());
+                    String cr = r.getHeaders().getOrDefault("Content-Range", "");
+                    if (!cr.startsWith("bytes " + from + "-")) throw new IOException("Unexpected Content-Range: " + cr);
+
+                    InputStream in = r.getBodyStream();
+                    int n;
+                    while (in != null && next.get(seg) <= last[seg] && (n = in.read(buf)) > 0) {
+                        long pos = next.get(seg);
+                        ByteBuffer b = ByteBuffer.wrap(buf, 0, (int) Math.min(n, last[seg] - pos + 1));
+                        while (b.hasRemaining()) pos += ch.write(b, pos);
+                        next.set(seg, pos);
+                        unsaved += b.limit();
+                        if (unsaved >= SAVE_EVERY) {
+                            save();
+                            unsaved = 0;
+                        }
+                    }
+                    if (next.get(seg) <= last[seg]) throw new EOFException("Segment ended at byte " + next.get(seg));
+                }
+            } catch (ChangedException e) {
+                throw e;
+            } catch (IOException e) {
+                failures = next.get(seg) > from ? 0 : failures + 1;   // progress resets the budget
+                if (failures > options.getMaxRetries()) throw e;
+                SimpleHttpClient.pause(SimpleHttpClient.backoff(failures, options, -1));
+            }
+        }
+    }
+
+    // no ranges: one GET straight into the file
+    private long single() throws Exception {
+        HttpResponse r = client.requestStreaming("GET", url, Map.of("Accept-Encoding", "identity"), null, options);
+        try (r) {
+            if (r.getStatusCode() / 100 != 2) throw new IOException("GET " + url + " returned " + r.getStatusCode() + " " + r.getStatusMessage());
+            InputStream in = r.getBodyStream();
+            if (in == null) {
+                Files.write(target, new byte[0]);
+                return 0;
+            }
+            return Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // ----- progress file: validator, length, then "first last next" per segment -----
+
+    private synchronized void save() throws IOException {
+        StringBuilder sb = new StringBuilder(validator).append('\n').append(length).append('\n');
+        for (int i = 0; i < first.length; i++)
+            sb.append(first[i]).append(' ').append(last[i]).append(' ').append(next.get(i)).append('\n');
+        Path tmp = progress.resolveSibling(progress.getFileName() + ".tmp");
+        Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+        Files.move(tmp, progress, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // segments of an earlier attempt at the same version of the resource
+    private boolean resume() {
+        try {
+            if (!Files.exists(progress) || !Files.exists(target)) return false;
+            List<String> lines = Files.readAllLines(progress, StandardCharsets.UTF_8);
+            if (lines.size() < 3 || !lines.get(0).equals(validator) || parseLong(lines.get(1)) != length) return false;
+            int n = lines.size() - 2;
+            first = new long[n];
+            last = new long[n];
+            next = new AtomicLongArray(n);
+            for (int i = 0; i < n; i++) {
+                String[] f = lines.get(i + 2).trim().split(" ");
+                first[i] = Long.parseLong(f[0]);
+                last[i] = Long.parseLong(f[1]);
+                next.set(i, Long.parseLong(f[2]));
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;                                 // unreadable → start over
+        }
+    }
+
+    private static long parseLong(String s) {
+        try {
+            return s == null ? -1 : Long.parseLong(s.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package main.java.com.httpclient;
+
+// One dispatched Server-Sent Event: id is the last id seen on the stream (may be null),
+// event defaults to "message", data lines are joined with '\n'.
+public record ServerSentEvent(String id, String event, String data) { }
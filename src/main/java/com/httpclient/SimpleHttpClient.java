@@ -1,30 +1,134 @@
 package main.java.com.httpclient;
 
-import java.io.BufferedReader;
+import main.java.com.common.ChunkedInputStream;
+import main.java.com.common.FixedLengthInputStream;
+import main.java.com.common.Hpack;
+import main.java.com.common.HttpIo;
+import main.java.com.common.TcpTransport;
+import main.java.com.common.TlsConfig;
+import main.java.com.common.TlsConnection;
+import main.java.com.common.Transport;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 /*
  * HTTP/1.1 client that supports:
  *   • arbitrary method, URL, headers, and optional body
- *   • persistent cookie jar (via CookieStore)
+ *   • persistent cookie jar (via CookieStore), can be turned off
  *   • optional X-API-Key header for auth
- *   • default headers: Host, Accept, User-Agent, Connection: close
+ *   • default headers: Host, Accept, Accept-Encoding: gzip, User-Agent, Connection: close
+ *   • optional keep-alive: idle HTTP/1.1 connections pooled per scheme://host:port
+ *   • streamed response bodies: chunked / Content-Length / until-close, gzip decoded
+ *   • streamed request bodies (exchange), e.g. for forwarding proxies
+ *   • connect / read timeouts, overall deadlines, jittered retries and p95 hedging (RequestOptions)
+ *   • optional RFC 9111 response cache (memory + disk tiers, see HttpCache)
+ *   • https via TLS (session resumption through a shared SSLContext)
+ *   • Server-Sent Events subscriptions with Last-Event-ID resume (subscribe)
+ *   • parallel segmented, resumable downloads via byte ranges (download)
+ *   • optional HTTP/2 mode: h2c with prior knowledge, or h2 via ALPN for https;
+ *     one multiplexed connection per host:port
+ *   • pluggable transport: TCP sockets, or in-process pipes to a server in the same JVM
  */
 public class SimpleHttpClient {
 
+    private static final int MAX_LINE = 64 * 1024;       // status / header line limit
+    private static final Set<String> IDEMPOTENT = Set.of("GET", "HEAD", "PUT", "DELETE", "OPTIONS", "TRACE");
+    private static final Set<Integer> RETRY_STATUS = Set.of(429, 502, 503, 504);
+    private static final long POOL_IDLE_NANOS = 4_000_000_000L; // below the server's keep-alive (5 s)
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    // overall deadlines are enforced by closing the connection from one shared timer
+    private static final ScheduledThreadPoolExecutor DEADLINES = new ScheduledThreadPoolExecutor(1, r -> daemon(r, "http-deadline"));
+    private static final ExecutorService HEDGES = Executors.newCachedThreadPool(r -> daemon(r, "http-hedge"));
+    static { DEADLINES.setRemoveOnCancelPolicy(true); }
+
     private final String apiKey;                         // static API key (may be null)
     private final CookieStore cookies = new CookieStore(); // persists cookies across requests
+    private volatile boolean useCookies = true;          // false: no Cookie from the jar, Set-Cookie ignored
+    private volatile boolean http2;                      // h2c instead of HTTP/1.1
+    private volatile Transport transport = new TcpTransport(); // sockets, or in-process pipes
+    private volatile HttpCache cache;                    // optional response cache (null = off)
+    private volatile RequestOptions defaults = new RequestOptions(); // timeouts / retries / hedging
+    private final Map<String,LatencyWindow> latency = new ConcurrentHashMap<>(); // "host:port" → recent TTFBs
+    private final AtomicLong retries = new AtomicLong(), hedges = new AtomicLong(),
+            hedgeWins = new AtomicLong(), timeouts = new AtomicLong();
+    private final Map<String,Http2ClientSession> h2Sessions = new ConcurrentHashMap<>(); // "host:port" → session
+    private final Map<String,BlockingDeque<Pooled>> idle = new ConcurrentHashMap<>();   // "scheme://host:port" → idle connections
+    private volatile int maxIdlePerHost;                 // 0 = one connection per request
+
+    // idle keep-alive connection: the transport connection and the (TLS) streams on it
+    private record Pooled(Transport.Connection conn, InputStream in, OutputStream out, long since) {
+        boolean expired() { return System.nanoTime() - since > POOL_IDLE_NANOS; }
+    }
 
     public SimpleHttpClient(String apiKey) {
         this.apiKey = apiKey;
     }
 
+    // switch to HTTP/2 (http: h2c with prior knowledge, https: ALPN "h2")
+    public void setHttp2(boolean http2) { this.http2 = http2; }
+
+    // keep HTTP/1.1 connections open and reuse them, with up to maxIdlePerHost idle ones per
+    // scheme://host:port (0, the default, sends Connection: close and closes after each request)
+    public void setKeepAlive(int maxIdlePerHost) {
+        this.maxIdlePerHost = maxIdlePerHost;
+        if (maxIdlePerHost == 0) closeIdle();
+    }
+
+    // turn the cookie jar off (e.g. a forwarding proxy passes its callers' cookies through
+    // instead of collecting its own); set before the first HTTP/2 request
+    public void setCookies(boolean enabled) { this.useCookies = enabled; }
+
+    // connect through another transport, e.g. the MemoryTransport an in-process server listens on
+    public void setTransport(Transport transport) { this.transport = transport; }
+
+    // serve GETs through an RFC 9111 cache (null turns caching off)
+    public void setCache(HttpCache cache) { this.cache = cache; }
+    public HttpCache getCache() { return cache; }
+
+    // options used by the request() overloads without an explicit RequestOptions
+    public void setDefaultOptions(RequestOptions o) { defaults = new RequestOptions(o); }
+    public RequestOptions getDefaultOptions() { return new RequestOptions(defaults); }
+
+    // counters since construction
+    public long getRetries()   { return retries.get(); }   // extra attempts after a failure / 429 / 5xx
+    public long getHedges()    { return hedges.get(); }    // duplicate GETs fired
+    public long getHedgeWins() { return hedgeWins.get(); } // … of which the duplicate answered first
+    public long getTimeouts()  { return timeouts.get(); }  // connect / read timeouts and missed deadlines
+
+    // close shared HTTP/2 connections and idle keep-alive ones
+    public void close() {
+        h2Sessions.values().forEach(Http2ClientSession::close);
+        h2Sessions.clear();
+        closeIdle();
+    }
+
+    private void closeIdle() {
+        for (BlockingDeque<Pooled> q : idle.values()) {
+            for (Pooled p; (p = q.pollFirst()) != null; ) closeQuietly(p.conn());
+        }
+    }
+
     /*
-     * Perform a single HTTP request and return parsed response.
+     * Perform a single HTTP request and return parsed response (body buffered).
      * @param method HTTP verb (GET, POST, etc.)
      * @param url    full URL including scheme (http://host:port/path)
      * @param extraHeaders user-specified headers (may override defaults)
@@ -33,24 +137,379 @@ public class SimpleHttpClient {
     public HttpResponse request(String method, String url,
                                 Map<String, String> extraHeaders,
                                 String body) throws Exception {
+        return request(method, url, extraHeaders, body, defaults);
+    }
+
+    // same, with explicit timeouts / retry / hedging options
+    public HttpResponse request(String method, String url,
+                                Map<String, String> extraHeaders,
+                                String body, RequestOptions options) throws Exception {
+        HttpResponse resp = requestStreaming(method, url, extraHeaders, body, options);
+        try {
+            resp.getBody(); // read everything, release the connection
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return resp;
+    }
+
+    /*
+     * Same as request(), but the body is left on the connection: read it via
+     * getBodyStream() at any pace (constant memory) and close() the response when done.
+     */
+    public HttpResponse requestStreaming(String method, String url,
+                                         Map<String, String> extraHeaders,
+                                         String body) throws Exception {
+        return requestStreaming(method, url, extraHeaders, body, defaults);
+    }
+
+    public HttpResponse requestStreaming(String method, String url,
+                                         Map<String, String> extraHeaders,
+                                         String body, RequestOptions options) throws Exception {
+        RequestOptions o = new RequestOptions(options);
+        HttpCache.Fetcher net = (m, target, h, b) -> send(m, target, h, b, o);
+        HttpCache c = cache;
+        // the cache stores decoded bodies; one left gzip-encoded (setDecompress(false)) bypasses
+        // it, while unsafe methods still go through it to invalidate
+        boolean bypass = c == null || (!o.isDecompress() && method.equalsIgnoreCase("GET"));
+        return bypass ? net.fetch(method, url, extraHeaders, body)
+                      : c.exchange(method, url, extraHeaders, body, net, collapseWait(o));
+    }
+
+    // how long a request waits on someone else's fetch of the same URL: its read timeout,
+    // cut to the deadline (0 = neither set)
+    private static long collapseWait(RequestOptions o) {
+        long read = o.getReadTimeout(), deadline = o.getDeadline();
+        if (read == 0 || deadline == 0) return Math.max(read, deadline);
+        return Math.min(read, deadline);
+    }
+
+    /*
+     * One exchange with a streamed request body: `length` bytes of body, or chunked until
+     * EOF when length < 0 (null body = none). Goes straight to the network – no cache,
+     * retries or hedging, since the body can't be read twice. The response streams as
+     * with requestStreaming(); close it when done.
+     */
+    public HttpResponse exchange(String method, String url, Map<String, String> extraHeaders,
+                                 InputStream body, long length, RequestOptions options) throws Exception {
+        RequestOptions o = new RequestOptions(options);
+        long deadline = o.getDeadline() > 0 ? System.nanoTime() + o.getDeadline() * 1_000_000 : 0;
+        return fetch(method, ParsedUrl.parse(url), extraHeaders, null, body, length, o, deadline);
+    }
+
+    /*
+     * Subscribe to a Server-Sent Events stream (e.g. /resources/_changes). Events arrive on
+     * the subscription's own thread; it reconnects with Last-Event-ID until closed.
+     * lastEventId (may be null) resumes a previous subscription.
+     */
+    public EventSubscription subscribe(String url, Consumer<ServerSentEvent> listener) {
+        return subscribe(url, null, listener);
+    }
+
+    public EventSubscription subscribe(String url, String lastEventId, Consumer<ServerSentEvent> listener) {
+        return new EventSubscription(this, url, lastEventId, listener);
+    }
+
+    /*
+     * Download url into target with up to `segments` parallel range requests written into
+     * the preallocated file; resumes from target + ".part" after an earlier failure.
+     * Falls back to one GET when the server doesn't do byte ranges. Returns the file size.
+     */
+    public long download(String url, Path target, int segments) throws Exception {
+        return SegmentedDownload.run(this, url, target, segments, defaults);
+    }
+
+    // ----- resilience: retries, hedging, deadlines -----
+
+    // attempts until success, a non-retryable failure, the retry budget or the deadline runs out
+    private HttpResponse send(String method, String url, Map<String, String> headers,
+                              String body, RequestOptions o) throws Exception {
+        long deadline = o.getDeadline() > 0 ? System.nanoTime() + o.getDeadline() * 1_000_000 : 0;
+        boolean idempotent = IDEMPOTENT.contains(method.toUpperCase());
+        boolean hedge = o.isHedge() && method.equalsIgnoreCase("GET");
+
+        for (int attempt = 0; ; attempt++) {
+            HttpResponse resp;
+            try {
+                resp = hedge ? hedged(method, url, headers, body, o, deadline)
+                             : attempt(method, url, headers, body, o, deadline);
+            } catch (IOException e) {
+                if (deadline > 0 && System.nanoTime() - deadline >= 0) {
+                    timeouts.incrementAndGet();
+                    SocketTimeoutException te = new SocketTimeoutException("Deadline of " + o.getDeadline() + " ms exceeded");
+                    te.initCause(e);
+                    throw te;
+                }
+                if (e instanceof SocketTimeoutException || e.getCause() instanceof SocketTimeoutException)
+                    timeouts.incrementAndGet();
+                // nothing reached the server on a connect failure, so any method may retry
+                boolean retryable = idempotent || e instanceof ConnectException;
+                long wait = backoff(attempt, o, -1);
+                if (!retryable || attempt >= o.getMaxRetries() || !fits(wait, deadline)) throw e;
+                pause(wait);
+                retries.incrementAndGet();
+                continue;
+            }
+
+            if (!idempotent || attempt >= o.getMaxRetries() || !RETRY_STATUS.contains(resp.getStatusCode()))
+                return resp;
+            long wait = backoff(attempt, o, retryAfter(resp));
+            if (!fits(wait, deadline)) return resp; // no time left: hand back what we have
+            resp.close();
+            pause(wait);
+            retries.incrementAndGet();
+        }
+    }
+
+    // one attempt; its time to response head feeds the host's p95
+    private HttpResponse attempt(String method, String url, Map<String, String> headers,
+                                 String body, RequestOptions o, long deadline) throws Exception {
+        ParsedUrl u = ParsedUrl.parse(url);
+        long t0 = System.nanoTime();
+        byte[] payload = (body == null || body.isEmpty()) ? null : body.getBytes(StandardCharsets.UTF_8);
+        HttpResponse resp = fetch(method, u, headers, payload, null, -1, o, deadline);
+        latency.computeIfAbsent(u.host() + ":" + u.port(), k -> new LatencyWindow())
+               .record((System.nanoTime() - t0) / 1_000_000);
+        return resp;
+    }
+
+    // primary attempt; if it has not answered by the host's p95, a duplicate races it
+    private HttpResponse hedged(String method, String url, Map<String, String> headers,
+                                String body, RequestOptions o, long deadline) throws Exception {
+        ParsedUrl u = ParsedUrl.parse(url);
+        LatencyWindow w = latency.get(u.host() + ":" + u.port());
+        long p95 = w == null ? -1 : w.p95();
+        if (p95 < 0) return attempt(method, url, headers, body, o, deadline); // no history yet
+
+        CompletableFuture<HttpResponse> winner = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        race(winner, running, false, () -> attempt(method, url, headers, body, o, deadline));
+        try {
+            return winner.get(Math.max(p95, o.getHedgeMinDelay()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException slow) {
+            running.incrementAndGet();
+            hedges.incrementAndGet();
+            race(winner, running, true, () -> attempt(method, url, headers, body, o, deadline));
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ex ? ex : e;
+        }
+        try {
+            return winner.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ex ? ex : e;
+        }
+    }
+
+    // first success wins; losers are closed, the last failure is reported if nobody succeeds
+    private void race(CompletableFuture<HttpResponse> winner, AtomicInteger running, boolean isHedge,
+                      Callable<HttpResponse> call) {
+        HEDGES.execute(() -> {
+            try {
+                HttpResponse r = call.call();
+                if (!winner.complete(r)) r.close();
+                else if (isHedge) hedgeWins.incrementAndGet();
+            } catch (Exception e) {
+                if (running.decrementAndGet() == 0) winner.completeExceptionally(e);
+            }
+        });
+    }
+
+    // full jitter: uniform in [0, min(max, base·2^attempt)], but at least Retry-After
+    static long backoff(int attempt, RequestOptions o, long retryAfterMs) {
+        long cap = Math.min(o.getBackoffMax(), o.getBackoffBase() << Math.min(attempt, 20));
+        long wait = ThreadLocalRandom.current().nextLong(Math.max(cap, 0) + 1);
+        return Math.max(wait, retryAfterMs);
+    }
+
+    // Retry-After in delta-seconds (HTTP-date form is ignored), -1 if absent
+    private static long retryAfter(HttpResponse resp) {
+        String v = resp.getHeaders().get("Retry-After");
+        try {
+            return v == null ? -1 : Long.parseLong(v.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean fits(long waitMs, long deadline) {
+        return deadline == 0 || System.nanoTime() + waitMs * 1_000_000 - deadline < 0;
+    }
+
+    static void pause(long ms) throws InterruptedIOException {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    // per-attempt timeout, shortened to what is left of the deadline
+    private static int bound(int timeoutMs, long deadline) throws SocketTimeoutException {
+        if (deadline == 0) return timeoutMs;
+        long left = (deadline - System.nanoTime()) / 1_000_000;
+        if (left <= 0) throw new SocketTimeoutException("Deadline exceeded");
+        return timeoutMs == 0 ? (int) Math.min(left, Integer.MAX_VALUE) : (int) Math.min(timeoutMs, left);
+    }
+
+    // close c when the deadline passes; the returned Closeable only disarms the timer
+    // (c stays open, e.g. for the pool)
+    private static Closeable armTimer(Closeable c, long deadline) {
+        if (deadline == 0) return () -> { };
+        ScheduledFuture<?> f = DEADLINES.schedule(() -> closeQuietly(c),
+                deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        return () -> f.cancel(false);
+    }
+
+    private Transport.Connection connect(ParsedUrl u, RequestOptions o, long deadline) throws IOException {
+        try {
+            return transport.connect(u.host(), u.port(), bound(o.getConnectTimeout(), deadline));
+        } catch (SocketTimeoutException e) {
+            ConnectException ce = new ConnectException("Connect timed out"); // safe to retry, nothing was sent
+            ce.initCause(e);
+            throw ce;
+        }
+    }
+
+    private static void closeQuietly(Closeable c) {
+        try { c.close(); } catch (IOException ignored) { }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    // body reads cut off by the deadline timer report a timeout instead of "Socket closed"
+    private final class DeadlineInputStream extends FilterInputStream {
+        private final long deadline;
+
+        DeadlineInputStream(InputStream in, long deadline) {
+            super(in);
+            this.deadline = deadline;
+        }
 
-        ParsedUrl u = ParsedUrl.parse(url); // split URL into host, port, path
+        @Override public int read() throws IOException {
+            try { return super.read(); } catch (IOException e) { throw expired(e); }
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            try { return super.read(b, off, len); } catch (IOException e) { throw expired(e); }
+        }
+
+        private IOException expired(IOException e) {
+            if (System.nanoTime() - deadline < 0) return e;
+            timeouts.incrementAndGet();
+            SocketTimeoutException te = new SocketTimeoutException("Deadline exceeded while reading body");
+            te.initCause(e);
+            return te;
+        }
+    }
+
+    // last 256 response-head latencies of one host; p95 once there are enough samples
+    private static final class LatencyWindow {
+        private final long[] ring = new long[256];
+        private int count, next;
+
+        synchronized void record(long ms) {
+            ring[next] = ms;
+            next = (next + 1) % ring.length;
+            count = Math.min(count + 1, ring.length);
+        }
+
+        synchronized long p95() {
+            if (count < 20) return -1;
+            long[] s = Arrays.copyOf(ring, count);
+            Arrays.sort(s);
+            return s[(int) Math.ceil(count * 0.95) - 1];
+        }
+    }
+
+    // ----- wire -----
+
+    // one network exchange, bypassing cache and retries. With keep-alive an idle pooled
+    // connection is tried first; if the server had closed it meanwhile (nothing came back)
+    // and the request is idempotent with a body that can be sent again, the exchange is
+    // repeated once on a fresh connection.
+    private HttpResponse fetch(String method, ParsedUrl u, Map<String, String> extraHeaders,
+                               byte[] payload, InputStream stream, long length,
+                               RequestOptions o, long deadline) throws Exception {
 
-        try (Socket sock = new Socket(u.host(), u.port());
-             PrintWriter out = new PrintWriter(sock.getOutputStream(), false);
-             BufferedReader in = new BufferedReader(new InputStreamReader(sock.getInputStream()))) {
+        if (http2) return requestHttp2(method, u, extraHeaders, payload, stream, length, o, deadline);
+
+        boolean keepAlive = maxIdlePerHost > 0 && !"close".equalsIgnoreCase(header(extraHeaders, "Connection"));
+        Pooled idle = keepAlive ? takeIdle(poolKey(u)) : null;
+        if (idle != null) {
+            try {
+                return exchangeOn(idle, true, method, u, extraHeaders, payload, stream, length, o, deadline);
+            } catch (StaleConnectionException e) {
+                // closed by the server while pooled; go on with a new connection
+            }
+        }
+        return exchangeOn(null, keepAlive, method, u, extraHeaders, payload, stream, length, o, deadline);
+    }
+
+    // HTTP/1.1 exchange on a pooled connection (idle) or a new one
+    private HttpResponse exchangeOn(Pooled idle, boolean keepAlive, String method, ParsedUrl u,
+                                    Map<String, String> extraHeaders, byte[] payload, InputStream stream,
+                                    long length, RequestOptions o, long deadline) throws Exception {
+        long t0 = System.nanoTime();
+        Transport.Connection sock;
+        InputStream in;
+        OutputStream out;
+        long connected = 0;                               // reused connection: no connect time
+        if (idle != null) {
+            sock = idle.conn();
+            in = idle.in();
+            out = idle.out();
+        } else {
+            ClientEvents.Connect connecting = new ClientEvents.Connect();
+            connecting.begin();
+            sock = connect(u, o, deadline);
+            try {
+                sock.setReadTimeout(bound(o.getReadTimeout(), deadline));
+                InputStream rawIn = sock.getInputStream();
+                OutputStream rawOut = sock.getOutputStream();
+                if (isHttps(u)) {
+                    TlsConnection tls = openTls(u, rawIn, rawOut, "http/1.1");
+                    rawIn = tls.getInputStream();
+                    rawOut = tls.getOutputStream();
+                }
+                in = new HttpIo.LineBufferedInputStream(rawIn);
+                out = new BufferedOutputStream(rawOut);
+            } catch (Exception e) {
+                closeQuietly(sock);
+                throw e;
+            }
+            connected = System.nanoTime() - t0;
+            connecting.end();
+            if (connecting.shouldCommit()) {
+                connecting.target(method, u);
+                connecting.protocol = "http/1.1";
+                connecting.commit();
+            }
+        }
+        Release release = new Release(poolKey(u), sock, in, out, deadline);
+        // nothing was consumed that can't be sent again, and sending it twice is harmless
+        // (RFC 9112 §9.3.1: non-idempotent requests are not retried automatically)
+        boolean replayable = idle != null && stream == null && IDEMPOTENT.contains(method.toUpperCase());
+        try {
+            if (idle != null) sock.setReadTimeout(bound(o.getReadTimeout(), deadline));
 
             // Build request line + headers
             StringBuilder sb = new StringBuilder();
-            sb.append(method).append(" ").append(u.path()).append(" HTTP/1.1\r\n");
+            sb.append(method).append(" ").append(u.target()).append(" HTTP/1.1\r\n");
             sb.append("Host: ").append(u.host()).append("\r\n");
 
             // Default headers (unless overridden)
             if (extraHeaders == null || !extraHeaders.containsKey("Accept"))
                 sb.append("Accept: */*\r\n");
+            if (o.isDecompress() && (extraHeaders == null || !extraHeaders.containsKey("Accept-Encoding")))
+                sb.append("Accept-Encoding: gzip\r\n");
             if (extraHeaders == null || !extraHeaders.containsKey("User-Agent"))
                 sb.append("User-Agent: SimpleHttpClient/1.0\r\n");
-            if (extraHeaders == null || !extraHeaders.containsKey("Connection"))
+            if (!keepAlive && (extraHeaders == null || !extraHeaders.containsKey("Connection")))
                 sb.append("Connection: close\r\n");
 
             // API key header
@@ -59,7 +518,7 @@ public class SimpleHttpClient {
             }
 
             // Cookies
-            List<Cookie> sendable = cookies.match(u.host(), u.path());
+            List<Cookie> sendable = useCookies ? cookies.match(u.host(), u.path()) : List.of();
             if (!sendable.isEmpty()) {
                 String cookieLine = sendable.stream()
                         .map(c -> c.name() + "=" + c.value())
@@ -76,59 +535,342 @@ public class SimpleHttpClient {
             }
 
             // Body header
-            if (body != null && !body.isEmpty()) {
-                sb.append("Content-Length: ")
-                        .append(body.getBytes().length).append("\r\n");
+            if (payload != null) {
+                sb.append("Content-Length: ").append(payload.length).append("\r\n");
+            } else if (stream != null) {
+                sb.append(length >= 0 ? "Content-Length: " + length : "Transfer-Encoding: chunked").append("\r\n");
             }
 
             // End of headers
             sb.append("\r\n");
 
-            // Body payload
-            if (body != null && !body.isEmpty()) {
-                sb.append(body);
-            }
-
-            // Send request
-            out.print(sb.toString());
-            out.flush();
-
-            // Read response
-            HttpResponse resp = new HttpResponse();
-            String statusLine = in.readLine();
-            if (statusLine == null) throw new IOException("No response from server");
-            String[] statusParts = statusLine.split(" ", 3);
-            resp.setStatusCode(Integer.parseInt(statusParts[1]));
-            resp.setStatusMessage(statusParts.length > 2 ? statusParts[2] : "");
-
-            // Read headers
-            String line;
-            int contentLength = 0;
-            while ((line = in.readLine()) != null && !line.isEmpty()) {
-                int idx = line.indexOf(':');
-                if (idx > 0) {
-                    String headerName = line.substring(0, idx).trim();
-                    String headerValue = line.substring(idx + 1).trim();
-                    resp.getHeaders().put(headerName, headerValue);
-                    if (headerName.equalsIgnoreCase("Content-Length")) {
-                        contentLength = Integer.parseInt(headerValue);
-                    }
-                    if (headerName.equalsIgnoreCase("Set-Cookie")) {
-                        cookies.addFromHeader(headerValue, u.host());
-                    }
+            // Send request, then wait for the first response byte
+            ClientEvents.Write writing = new ClientEvents.Write();
+            ClientEvents.FirstByte waiting = new ClientEvents.FirstByte();
+            byte[] head = sb.toString().getBytes(StandardCharsets.UTF_8);
+            long firstByte;
+            boolean answered;
+            try {
+                writing.begin();
+                out.write(head);
+                if (payload != null) out.write(payload);
+                long sent = stream == null ? 0 : copyBody(stream, length, out);
+                out.flush();
+                writing.end();
+                if (writing.shouldCommit()) {
+                    writing.target(method, u);
+                    writing.bytes = head.length + (payload == null ? sent : payload.length);
+                    writing.commit();
                 }
+
+                waiting.begin();
+                in.mark(1);
+                answered = in.read() != -1; // wait for the first byte (timing only)
+                in.reset();
+            } catch (IOException e) {
+                if (replayable) throw new StaleConnectionException(e);
+                throw e;
+            }
+            if (!answered) {
+                if (replayable) throw new StaleConnectionException(null);
+                throw new IOException("No response from server");
             }
+            firstByte = System.nanoTime() - t0;
+            waiting.end();
 
-            // Read body if present
-            if (contentLength > 0) {
-                char[] buf = new char[contentLength];
-                int read = in.read(buf);
-                resp.setBody(new String(buf, 0, read));
+            // Read response head (skipping interim 1xx responses)
+            HttpResponse resp;
+            do {
+                resp = readHead(in, u);
+            } while (resp.getStatusCode() >= 100 && resp.getStatusCode() < 200);
+            if (waiting.shouldCommit()) {
+                waiting.target(method, u);
+                waiting.status = resp.getStatusCode();
+                waiting.commit();
             }
 
+            resp.setTiming(connected, firstByte);
+            InputStream framed = frameBody(in, method, resp);
+            // reusable once the body is read, unless it runs until the server closes
+            release.reusable = keepAlive && framed != in && !"close".equalsIgnoreCase(resp.getHeaders().get("Connection"));
+            release.framed = framed;
+            InputStream body = framed;
+            if (body != null && deadline > 0) body = new DeadlineInputStream(body, deadline);
+            resp.setBodyStream(o.isDecompress() ? decode(resp, body) : body, release);
+            if (resp.getBodyStream() == null) release.close();
+            observeBody(method, u, resp);
+
             // Persist cookies
-            cookies.save();
+            if (useCookies) cookies.save();
             return resp;
+        } catch (Exception e) {
+            release.reusable = false;
+            release.close();
+            throw e;
+        }
+    }
+
+    // streamed request body: exactly length bytes, or chunked until EOF when length < 0;
+    // returns the bytes sent
+    private static long copyBody(InputStream body, long length, OutputStream out) throws IOException {
+        byte[] buf = new byte[16 * 1024];
+        long sent = 0;
+        if (length >= 0) {
+            for (int n; sent < length && (n = body.read(buf, 0, (int) Math.min(buf.length, length - sent))) != -1; sent += n)
+                out.write(buf, 0, n);
+            if (sent < length) throw new EOFException("Request body ended after " + sent + " of " + length + " bytes");
+            return sent;
+        }
+        for (int n; (n = body.read(buf)) != -1; sent += n) {
+            if (n == 0) continue;
+            out.write((Integer.toHexString(n) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.write(buf, 0, n);
+            out.write(CRLF);
+        }
+        out.write(LAST_CHUNK);
+        return sent;
+    }
+
+    private static String header(Map<String, String> headers, String name) {
+        if (headers == null) return null;
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            if (e.getKey().equalsIgnoreCase(name)) return e.getValue();
+        }
+        return null;
+    }
+
+    // ----- keep-alive pool -----
+
+    private static String poolKey(ParsedUrl u) {
+        return u.scheme().toLowerCase() + "://" + u.host() + ":" + u.port();
+    }
+
+    // most recently used first; expired ones are closed on the way
+    private Pooled takeIdle(String key) {
+        BlockingDeque<Pooled> q = idle.get(key);
+        if (q == null) return null;
+        for (Pooled p; (p = q.peekLast()) != null && p.expired(); ) {
+            if (q.removeLastOccurrence(p)) closeQuietly(p.conn());
+        }
+        for (Pooled p; (p = q.pollFirst()) != null; ) {
+            if (!p.expired()) return p;
+            closeQuietly(p.conn());
+        }
+        return null;
+    }
+
+    private void offerIdle(String key, Pooled p) {
+        int max = maxIdlePerHost;
+        BlockingDeque<Pooled> q = max == 0 ? null : idle.computeIfAbsent(key, k -> new LinkedBlockingDeque<>(max));
+        if (q == null || !q.offerFirst(p)) closeQuietly(p.conn());
+    }
+
+    // the end of one HTTP/1.1 exchange: the deadline is disarmed, and the connection goes
+    // back to the pool if the server keeps it and the body was read to its end, otherwise
+    // it is closed. An unread rest is not drained: close() may come from another thread
+    // while a read blocks on the connection (e.g. an event stream), so it must not wait.
+    private final class Release implements Closeable {
+        private final String key;
+        private final Transport.Connection conn;
+        private final InputStream in;
+        private final OutputStream out;
+        private final Closeable disarm;
+        volatile boolean reusable;
+        volatile InputStream framed;                      // body framing on `in` (null = no body)
+        private boolean done;
+
+        Release(String key, Transport.Connection conn, InputStream in, OutputStream out, long deadline) {
+            this.key = key;
+            this.conn = conn;
+            this.in = in;
+            this.out = out;
+            this.disarm = armTimer(conn, deadline);
+        }
+
+        @Override public synchronized void close() {
+            if (done) return;
+            done = true;
+            try { disarm.close(); } catch (IOException ignored) { }
+            if (reusable && finished(framed)) offerIdle(key, new Pooled(conn, in, out, System.nanoTime()));
+            else closeQuietly(conn);
+        }
+
+        private static boolean finished(InputStream body) {
+            return body == null
+                    || body instanceof FixedLengthInputStream f && f.isFinished()
+                    || body instanceof ChunkedInputStream c && c.isFinished();
+        }
+    }
+
+    // a pooled connection the server had already closed; the request can be repeated
+    private static final class StaleConnectionException extends IOException {
+        private static final long serialVersionUID = 1L;
+        StaleConnectionException(IOException cause) { super("Pooled connection was closed", cause); }
+    }
+
+    // body read as an http.client.BodyRead event, only wrapped while that event is enabled
+    private static void observeBody(String method, ParsedUrl u, HttpResponse resp) {
+        ClientEvents.BodyRead read = new ClientEvents.BodyRead();
+        if (!read.isEnabled()) return;
+        read.target(method, u);
+        read.status = resp.getStatusCode();
+        resp.observeBody(read);
+    }
+
+    // status line + headers; Set-Cookie goes to the jar
+    private HttpResponse readHead(InputStream in, ParsedUrl u) throws IOException {
+        HttpResponse resp = new HttpResponse();
+        String statusLine = HttpIo.readLine(in, MAX_LINE);
+        if (statusLine == null) throw new IOException("No response from server");
+        String[] statusParts = statusLine.split(" ", 3);
+        if (statusParts.length < 2) throw new IOException("Malformed status line: " + statusLine);
+        resp.setStatusCode(Integer.parseInt(statusParts[1]));
+        resp.setStatusMessage(statusParts.length > 2 ? statusParts[2] : "");
+
+        // Read headers
+        String line;
+        while ((line = HttpIo.readLine(in, MAX_LINE)) != null && !line.isEmpty()) {
+            int idx = line.indexOf(':');
+            if (idx > 0) {
+                String headerName = line.substring(0, idx).trim();
+                String headerValue = line.substring(idx + 1).trim();
+                resp.addHeader(headerName, headerValue);
+                if (useCookies && headerName.equalsIgnoreCase("Set-Cookie")) {
+                    cookies.addFromHeader(headerValue, u.host());
+                }
+            }
+        }
+        return resp;
+    }
+
+    // body framing per RFC 9112 §6.3: none, chunked, Content-Length, or until close
+    private static InputStream frameBody(InputStream in, String method, HttpResponse resp) throws IOException {
+        int sc = resp.getStatusCode();
+        if (method.equalsIgnoreCase("HEAD") || sc == 204 || sc == 304) return null;
+
+        Map<String, String> h = resp.getHeaders();
+        if (h.getOrDefault("Transfer-Encoding", "").toLowerCase().contains("chunked")) {
+            return new ChunkedInputStream(in);
+        }
+        String cl = h.get("Content-Length");
+        if (cl != null) {
+            long len = Long.parseLong(cl.trim());
+            return len == 0 ? null : new FixedLengthInputStream(in, len);
+        }
+        return in; // read until the server closes
+    }
+
+    // transparently undo Content-Encoding: gzip
+    static InputStream decode(HttpResponse resp, InputStream body) throws IOException {
+        if (body == null) return null;
+        String ce = resp.getHeaders().getOrDefault("Content-Encoding", "");
+        return ce.equalsIgnoreCase("gzip") || ce.equalsIgnoreCase("x-gzip")
+                ? new GZIPInputStream(body, 8192)
+                : body;
+    }
+
+    // same request as above, sent as one stream on the shared h2c connection
+    private HttpResponse requestHttp2(String method, ParsedUrl u, Map<String, String> extraHeaders,
+                                      byte[] payload, InputStream stream, long length,
+                                      RequestOptions o, long deadline) throws IOException {
+        List<Hpack.Header> fields = new ArrayList<>();
+        fields.add(new Hpack.Header(":method", method));
+        fields.add(new Hpack.Header(":scheme", isHttps(u) ? "https" : "http"));
+        fields.add(new Hpack.Header(":authority", u.host() + ":" + u.port()));
+        fields.add(new Hpack.Header(":path", u.target()));
+
+        Map<String, String> h = new LinkedHashMap<>();
+        h.put("accept", "*/*");
+        if (o.isDecompress()) h.put("accept-encoding", "gzip");
+        h.put("user-agent", "SimpleHttpClient/1.0");
+        if (apiKey != null) h.put("x-api-key", apiKey);
+        List<Cookie> sendable = useCookies ? cookies.match(u.host(), u.path()) : List.of();
+        for (Cookie c : sendable) fields.add(new Hpack.Header("cookie", c.name() + "=" + c.value()));
+        if (extraHeaders != null) {
+            // connection-specific headers have no meaning in HTTP/2
+            extraHeaders.forEach((k, v) -> h.put(k.toLowerCase(), v));
+            h.keySet().removeAll(Set.of("host", "connection", "keep-alive", "transfer-encoding", "upgrade"));
+        }
+        if (payload != null) h.put("content-length", String.valueOf(payload.length));
+        else if (stream != null && length >= 0) h.put("content-length", String.valueOf(length));
+        h.forEach((k, v) -> fields.add(new Hpack.Header(k, v)));
+
+        long t0 = System.nanoTime();
+        Http2ClientSession session = h2Session(u, o, deadline);
+        long connected = System.nanoTime() - t0;   // ~0 when the session is reused
+        ClientEvents.FirstByte waiting = new ClientEvents.FirstByte();
+        waiting.begin();
+        HttpResponse resp;
+        try {
+            resp = session.exchange(fields, payload, stream, o.isDecompress(), bound(o.getReadTimeout(), deadline));
+        } catch (Http2ClientSession.RefusedStreamException e) {
+            if (stream != null) throw e;      // the body is consumed, it can't be sent again
+            // refused or beyond a GOAWAY: once more, on a new session if this one is going away
+            resp = h2Session(u, o, deadline).exchange(fields, payload, null, o.isDecompress(),
+                    bound(o.getReadTimeout(), deadline));
+        }
+        resp.setTiming(connected, System.nanoTime() - t0); // exchange returns once HEADERS arrived
+        waiting.end();
+        if (waiting.shouldCommit()) {
+            waiting.target(method, u);
+            waiting.status = resp.getStatusCode();
+            waiting.commit();
+        }
+        if (deadline > 0) resp.onClose(armTimer(resp, deadline)); // cancels just this stream; closing disarms it
+        observeBody(method, u, resp);
+        if (useCookies) cookies.save();
+        return resp;
+    }
+
+    // shared connection for host:port, reopened once the previous one went away
+    private synchronized Http2ClientSession h2Session(ParsedUrl u, RequestOptions o, long deadline) throws IOException {
+        String key = u.host() + ":" + u.port();
+        Http2ClientSession s = h2Sessions.get(key);
+        if (s == null || !s.isOpen()) {
+            ClientEvents.Connect connecting = new ClientEvents.Connect();
+            connecting.begin();
+            Transport.Connection sock = connect(u, o, deadline);
+            sock.setReadTimeout(bound(o.getReadTimeout(), deadline)); // TLS handshake only
+            InputStream in = sock.getInputStream();
+            OutputStream out = sock.getOutputStream();
+            if (isHttps(u)) {
+                TlsConnection tls = openTls(u, in, out, "h2");
+                if (!"h2".equals(tls.getApplicationProtocol())) {
+                    sock.close();
+                    throw new IOException("Server did not negotiate h2");
+                }
+                in = tls.getInputStream();
+                out = tls.getOutputStream();
+            }
+            sock.setReadTimeout(0); // the session's reader idles between requests; streams time out individually
+            s = new Http2ClientSession(sock, in, out, useCookies ? cookies : null, u.host());
+            connecting.end();
+            if (connecting.shouldCommit()) {
+                connecting.host = u.host();
+                connecting.port = u.port();
+                connecting.protocol = "h2";
+                connecting.commit();
+            }
+            h2Sessions.put(key, s);
+        }
+        return s;
+    }
+
+    private static boolean isHttps(ParsedUrl u) {
+        return "https".equalsIgnoreCase(u.scheme());
+    }
+
+    // TLS handshake on a fresh socket; the shared context lets the JDK resume sessions per host:port
+    private static TlsConnection openTls(ParsedUrl u, InputStream in, OutputStream out,
+                                         String alpn) throws IOException {
+        try {
+            TlsConnection tls = TlsConnection.client(TlsConfig.clientContext(), u.host(), u.port(), in, out, alpn);
+            tls.handshake();
+            return tls;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("TLS setup failed: " + e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
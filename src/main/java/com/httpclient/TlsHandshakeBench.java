@@ -0,0 +1,66 @@
+package main.java.com.httpclient;
+
+import main.java.com.common.TlsConfig;
+import main.java.com.common.TlsConnection;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import javax.net.ssl.SSLContext;
+
+/*
+ * Measures TLS handshake cost against a running server:
+ *   full    – new client context per connection (nothing to resume)
+ *   resumed – one shared context, so the session cache / tickets are used
+ * Usage: TlsHandshakeBench [host] [port] [handshakes]   (defaults: localhost 8443 200)
+ * Trust for a self-signed server comes from tls.truststore in api.properties.
+ */
+public class TlsHandshakeBench {
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port    = args.length > 1 ? Integer.parseInt(args[1]) : 8443;
+        int n       = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        long[] full = new long[n];
+        long wall = System.nanoTime();
+        for (int i = 0; i < n; i++) full[i] = handshake(TlsConfig.newClientContext(), host, port);
+        report("full", full, System.nanoTime() - wall);
+
+        SSLContext shared = TlsConfig.newClientContext();
+        handshake(shared, host, port); // prime the session cache
+        long[] resumed = new long[n];
+        wall = System.nanoTime();
+        for (int i = 0; i < n; i++) resumed[i] = handshake(shared, host, port);
+        report("resumed", resumed, System.nanoTime() - wall);
+    }
+
+    // one connection: handshake (timed), then a tiny request so TLS 1.3 tickets get read
+    private static long handshake(SSLContext ctx, String host, int port) throws Exception {
+        try (Socket sock = new Socket(host, port)) {
+            sock.setTcpNoDelay(true);
+            TlsConnection tls = TlsConnection.client(ctx, host, port,
+                    sock.getInputStream(), sock.getOutputStream(), "http/1.1");
+            long t0 = System.nanoTime();
+            tls.handshake();
+            long took = System.nanoTime() - t0;
+
+            OutputStream out = tls.getOutputStream();
+            out.write(("HEAD /static HTTP/1.1\r\nHost: " + host + "\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            InputStream in = tls.getInputStream();
+            while (in.read(new byte[1024]) != -1) { } // drain until the server closes
+            tls.close();
+            return took;
+        }
+    }
+
+    private static void report(String label, long[] ns, long wallNs) {
+        long[] s = ns.clone();
+        Arrays.sort(s);
+        System.out.printf("%-8s %6d handshakes  %8.1f conn/s  p50 %6.2f ms  p99 %6.2f ms  max %6.2f ms%n",
+                label, s.length, s.length / (wallNs / 1e9),
+                s[s.length / 2] / 1e6, s[(int) (s.length * 0.99)] / 1e6, s[s.length - 1] / 1e6);
+    }
+}
@@ -0,0 +1,172 @@
+package main.java.com.httpclient;
+
+import main.java.com.common.Json;
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+ * Replays a traffic capture (SimpleHttpServer capture.file, JSONL) against a server
+ * and compares latencies with the captured ones.
+ *   pacing: original inter-arrival times (default), N× faster (--speed N),
+ *           or back to back (--max) with --concurrency requests in flight
+ * Usage: TrafficReplay <capture.jsonl> <baseUrl> [--speed N | --max] [--concurrency N] [--api-key KEY]
+ * Captured latency is the server's own time per exchange; replayed latency is what
+ * the client saw, so the difference includes network, connect and queueing.
+ */
+public class TrafficReplay {
+
+    // not replayed verbatim: the client sets them itself, or they were redacted at capture
+    private static final Set<String> SKIP = Set.of("host", "content-length", "transfer-encoding", "connection",
+            "expect", "x-api-key", "authorization", "cookie", "proxy-authorization", "accept-encoding");
+
+    private record Captured(long ts, String method, String path, Map<String,String> headers,
+                            String body, int status, long durationUs) { }
+
+    private record Result(Captured req, long latencyUs, long lagUs, int status, String error) { }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: TrafficReplay <capture.jsonl> <baseUrl> [--speed N | --max] [--concurrency N] [--api-key KEY]");
+            return;
+        }
+        String base = args[1].endsWith("/") ? args[1].substring(0, args[1].length() - 1) : args[1];
+        double speed = 1.0;          // 0 = as fast as possible
+        int concurrency = 64;
+        String apiKey = null;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--speed"       -> speed = Double.parseDouble(args[++i]);
+                case "--max"         -> speed = 0;
+                case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                case "--api-key"     -> apiKey = args[++i];
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        List<Captured> reqs = load(args[0]);
+        if (reqs.isEmpty()) {
+            System.out.println("Nothing to replay in " + args[0]);
+            return;
+        }
+        System.out.printf("Replaying %d requests from %s against %s (%s, concurrency %d)%n", reqs.size(), args[0],
+                base, speed == 0 ? "max speed" : speed + "x pace", concurrency);
+
+        SimpleHttpClient client = new SimpleHttpClient(apiKey);
+        RequestOptions once = new RequestOptions().setMaxRetries(0); // measure, don't mask
+
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        List<Future<Result>> futures = new ArrayList<>(reqs.size());
+        long firstTs = reqs.get(0).ts();
+        long start = System.nanoTime();
+        for (Captured c : reqs) {
+            long due = speed == 0 ? start : start + (long) ((c.ts() - firstTs) * 1_000_000 / speed);
+            long wait = due - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+            futures.add(pool.submit(() -> replay(client, once, base, c, due)));
+        }
+        List<Result> results = new ArrayList<>(futures.size());
+        for (Future<Result> f : futures) results.add(f.get());
+        long wallNs = System.nanoTime() - start;
+        pool.shutdown();
+        client.close();
+
+        report(results, wallNs, (reqs.get(reqs.size() - 1).ts() - firstTs), speed);
+    }
+
+    private static Result replay(SimpleHttpClient client, RequestOptions o, String base, Captured c, long due) {
+        long t0 = System.nanoTime();
+        long lag = (t0 - due) / 1000; // queueing behind the pool / scheduler
+        try {
+            HttpResponse r = client.request(c.method(), base + c.path(), c.headers(), c.body(), o);
+            return new Result(c, (System.nanoTime() - t0) / 1000, lag, r.getStatusCode(), null);
+        } catch (Exception e) {
+            return new Result(c, (System.nanoTime() - t0) / 1000, lag, -1, e.toString());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Captured> load(String file) throws Exception {
+        List<Captured> list = new ArrayList<>();
+        int bad = 0;
+        try (BufferedReader r = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    Map<String,Object> m = (Map<String,Object>) Json.parse(line);
+                    Map<String,String> h = new LinkedHashMap<>();
+                    ((Map<String,Object>) m.getOrDefault("headers", Map.of())).forEach((k, v) -> {
+                        if (!SKIP.contains(k.toLowerCase())) h.put(k, String.valueOf(v));
+                    });
+                    list.add(new Captured(((Number) m.get("ts")).longValue(), (String) m.get("method"),
+                            (String) m.get("path"), h, (String) m.get("body"),
+                            ((Number) m.getOrDefault("status", 0L)).intValue(),
+                            ((Number) m.getOrDefault("durationUs", 0L)).longValue()));
+                } catch (RuntimeException e) {
+                    bad++;
+                }
+            }
+        }
+        if (bad > 0) System.out.println("Skipped " + bad + " malformed lines");
+        list.sort(Comparator.comparingLong(Captured::ts));
+        return list;
+    }
+
+    // ----- report -----
+
+    private static void report(List<Result> results, long wallNs, long capturedSpanMs, double speed) {
+        int errors = 0, mismatched = 0;
+        Map<String, List<Result>> byRoute = new TreeMap<>();
+        for (Result r : results) {
+            if (r.error() != null) errors++;
+            else if (r.status() != r.req().status()) mismatched++;
+            byRoute.computeIfAbsent(r.req().method() + " " + route(r.req().path()), k -> new ArrayList<>()).add(r);
+        }
+
+        double secs = wallNs / 1e9;
+        System.out.printf("%nDone in %.2f s (captured span %.2f s), %.0f req/s, %d errors, %d status mismatches%n",
+                secs, capturedSpanMs / 1000.0, results.size() / secs, errors, mismatched);
+        if (speed > 0) {
+            long[] lag = results.stream().mapToLong(Result::lagUs).sorted().toArray();
+            System.out.printf("Schedule lag: p50 %s  p99 %s  max %s%n", ms(pct(lag, 50)), ms(pct(lag, 99)), ms(lag[lag.length - 1]));
+        }
+
+        System.out.printf("%n%-32s %6s  %-27s  %-27s  %9s%n", "route", "n",
+                "captured p50 / p95 / p99", "replayed p50 / p95 / p99", "diff p95");
+        row("ALL", results);
+        byRoute.forEach(TrafficReplay::row);
+
+        results.stream().filter(r -> r.error() != null).limit(5)
+               .forEach(r -> System.out.println("error: " + r.req().method() + " " + r.req().path() + " -> " + r.error()));
+    }
+
+    // failed requests are left out of both columns so timeouts don't skew the comparison
+    private static void row(String name, List<Result> all) {
+        List<Result> rs = all.stream().filter(r -> r.error() == null).toList();
+        long[] cap = rs.stream().mapToLong(r -> r.req().durationUs()).sorted().toArray();
+        long[] rep = rs.stream().mapToLong(Result::latencyUs).sorted().toArray();
+        long d = pct(rep, 95) - pct(cap, 95);
+        System.out.printf("%-32s %6d  %8s %8s %8s  %8s %8s %8s  %9s%n", name, rs.size(),
+                ms(pct(cap, 50)), ms(pct(cap, 95)), ms(pct(cap, 99)),
+                ms(pct(rep, 50)), ms(pct(rep, 95)), ms(pct(rep, 99)), (d >= 0 ? "+" : "-") + ms(Math.abs(d)));
+    }
+
+    // /resources/42?x=1 → /resources/{id}
+    private static String route(String path) {
+        int q = path.indexOf('?');
+        return (q < 0 ? path : path.substring(0, q)).replaceAll("/\\d+(?=/|$)", "/{id}");
+    }
+
+    private static long pct(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.max(0, (int) Math.ceil(sorted.length * p / 100.0) - 1)];
+    }
+
+    private static String ms(long us) {
+        return String.format("%.2fms", us / 1000.0);
+    }
+}
@@ -0,0 +1,143 @@
+package main.java.com.httpserver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Protocol-neutral part of a response writer: status, headers and a body buffer.
+// send() emits a complete response with Content-Length (once; repeats are ignored so a
+// filter and the server may both call it); flush() commits the head
+// early and streams what has been buffered so far – with the handler's own
+// Content-Length if it set one, else with length-less framing. Subclasses frame
+// the bytes for HTTP/1.1 or HTTP/2.
+public abstract class BufferedResponseWriter implements HttpResponseWriter {
+
+    protected int statusCode = 200;                // default status
+    protected String statusMessage = "OK";         // default reason phrase
+    protected final Map<String,String> headers = new HashMap<>(); // response headers
+    protected final List<Map.Entry<String,String>> moreHeaders = new ArrayList<>(); // further lines of repeated fields
+    private byte[] body = new byte[256];           // body buffer
+    private int bodyLength;
+    private boolean committed;                     // head already written
+    private boolean sent;                          // send() done, later calls are no-ops
+    private long bytesSent;                        // body bytes handed to writeData
+    private volatile boolean detached;             // outlives the handler, see detach()
+    private Runnable onRelease = () -> { };        // set by the server: ends a detached exchange
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    // --- HttpResponseWriter impl -----------------------------------------
+
+    @Override public void setStatus(int c, String m) {
+        statusCode = c;
+        statusMessage = m;
+    }
+
+    @Override public void setHeader(String n, String v) {
+        headers.put(n, v);
+        if (!moreHeaders.isEmpty()) moreHeaders.removeIf(e -> e.getKey().equalsIgnoreCase(n));
+    }
+
+    @Override public void addHeader(String n, String v) {
+        if (headers.putIfAbsent(n, v) != null) moreHeaders.add(Map.entry(n, v));
+    }
+
+    @Override public void writeBody(String data) {
+        byte[] b = data.getBytes(StandardCharsets.UTF_8);
+        writeBody(b, 0, b.length);
+    }
+
+    @Override public void writeBody(byte[] data, int off, int len) {
+        if (bodyLength + len > body.length) body = Arrays.copyOf(body, Math.max(body.length * 2, bodyLength + len));
+        System.arraycopy(data, off, body, bodyLength, len);
+        bodyLength += len;
+    }
+
+    @Override public void flush() {
+        try {
+            if (!committed) {
+                committed = true;
+                writeHead(true);
+            }
+            writeData(takeBody(), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override public void send() {
+        if (sent) return;
+        sent = true;
+        try {
+            byte[] b = takeBody();
+            if (!committed) {
+                committed = true;
+                // ensure Content-Length is present so clients know when body ends
+                // (204 / 304 never carry a body, so no length either)
+                if (statusCode != 204 && statusCode != 304)
+                    headers.putIfAbsent("Content-Length", String.valueOf(b.length));
+                writeHead(false);
+            }
+            writeData(b, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (detached) release();
+        }
+    }
+
+    @Override public void detach() { detached = true; }
+
+    @Override public void abort() {
+        detached = true; // the server must not touch the connection afterwards either
+        sent = true;
+        release();
+    }
+
+    // --- state shared with the server -------------------------------------
+
+    // true once the head went out; the status can no longer change
+    public boolean isCommitted() { return committed; }
+
+    public boolean isDetached() { return detached; }
+    public int getStatus() { return statusCode; }
+    public String getHeader(String name) { return headers.get(name); }
+    public long getBytesSent() { return bytesSent; }
+
+    // how a detached exchange gives its connection / stream back (runs once)
+    void setOnRelease(Runnable onRelease) { this.onRelease = onRelease; }
+
+    private void release() {
+        if (released.compareAndSet(false, true)) onRelease.run();
+    }
+
+    // drop everything buffered so far (only meaningful before commit)
+    public void reset() {
+        statusCode = 200;
+        statusMessage = "OK";
+        headers.clear();
+        moreHeaders.clear();
+        bodyLength = 0;
+    }
+
+    private byte[] takeBody() {
+        byte[] b = Arrays.copyOf(body, bodyLength);
+        bodyLength = 0;
+        bytesSent += b.length;
+        return b;
+    }
+
+    // --- framing -----------------------------------------------------------
+
+    // write status + headers; streaming = flush() before send(), so the body length
+    // is only known if the handler set Content-Length itself
+    protected abstract void writeHead(boolean streaming) throws IOException;
+
+    // write a piece of the body; last = end of the response
+    protected abstract void writeData(byte[] data, boolean last) throws IOException;
+}
@@ -0,0 +1,152 @@
+package main.java.com.httpserver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Server-Sent Events over the ChangeLog (GET /resources/_changes).
+// A subscriber is a detached response plus a cursor (last seq sent); no thread waits on
+// it. One broadcaster thread wakes on every append (and once a second for heartbeats),
+// and hands each idle subscriber that is behind to a small writer pool, which sends
+// everything after its cursor as one flush. Sockets are blocking, so a slow client
+// only ties up a writer for that one flush; meanwhile it is skipped, its backlog grows,
+// and the next flush coalesces it to the latest change per id. A client that fell
+// out of the ring gets "event: reset" and should re-read GET /resources.
+final class ChangeFeed {
+
+    private static final int MAX_BATCH = 1000;            // changes per flush
+    private static final int COALESCE_AFTER = 64;         // backlog above this → latest per id only
+    private static final long HEARTBEAT_NANOS = 15_000_000_000L;
+    private static final int RETRY_MS = 3000;             // client reconnect delay
+
+    private final ChangeLog log;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService writers;
+    private final Thread broadcaster;
+
+    private static final class Subscriber {
+        final HttpResponseWriter res;
+        volatile long cursor;
+        volatile long lastWrite = System.nanoTime();
+        final AtomicBoolean busy = new AtomicBoolean();   // a writer owns it right now
+
+        Subscriber(HttpResponseWriter res, long cursor) {
+            this.res = res;
+            this.cursor = cursor;
+        }
+    }
+
+    ChangeFeed(ChangeLog log, int writerThreads) {
+        this.log = log;
+        AtomicInteger n = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(writerThreads, r -> {
+            Thread t = new Thread(r, "change-feed-writer-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        broadcaster = new Thread(this::broadcast, "change-feed");
+        broadcaster.setDaemon(true);
+        broadcaster.start();
+        log.addOnAppend(() -> LockSupport.unpark(broadcaster));
+    }
+
+    int subscriberCount() { return subscribers.size(); }
+
+    // GET /resources/_changes – resumes after Last-Event-ID (header, or ?lastEventId= for
+    // clients that can't set headers), else starts with the next change
+    void subscribe(HttpRequest req, HttpResponseWriter res) {
+        long cursor = log.lastSeq();
+        String last = req.getHeaders().get("Last-Event-ID");
+        if (last == null) last = lastEventIdParam(req.getPath());
+        if (last != null) {
+            try { cursor = Long.parseLong(last.trim()); } catch (NumberFormatException ignored) { }
+        }
+        res.setStatus(200, "OK");
+        res.setHeader("Content-Type", "text/event-stream");
+        res.setHeader("Cache-Control", "no-store");
+        res.writeBody("retry: " + RETRY_MS + "\n\n");
+        res.flush();                                      // commit the head so the client sees 200 now
+        res.detach();
+        subscribers.add(new Subscriber(res, cursor));
+        LockSupport.unpark(broadcaster);
+    }
+
+    private static String lastEventIdParam(String path) {
+        int q = path.indexOf('?');
+        if (q < 0) return null;
+        for (String pair : path.substring(q + 1).split("&")) {
+            if (pair.startsWith("lastEventId=")) return pair.substring(12);
+        }
+        return null;
+    }
+
+    // ----- broadcaster -----
+
+    private void broadcast() {
+        while (true) {
+            long last = log.lastSeq(), now = System.nanoTime();
+            for (Subscriber s : subscribers) {
+                boolean behind = s.cursor != last;
+                if (!behind && now - s.lastWrite < HEARTBEAT_NANOS) continue;
+                if (!s.busy.compareAndSet(false, true)) continue;   // still writing, catches up next round
+                writers.execute(() -> deliver(s));
+            }
+            LockSupport.parkNanos(1_000_000_000L);
+        }
+    }
+
+    // writer thread; the busy flag gives it exclusive use of the response
+    private void deliver(Subscriber s) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            List<ChangeLog.Change> batch = log.since(s.cursor, MAX_BATCH);
+            if (batch == null) {
+                long last = log.lastSeq();
+                sb.append("id: ").append(last).append("\nevent: reset\ndata: {\"lastEventId\":").append(last).append("}\n\n");
+                s.cursor = last;
+            } else if (batch.isEmpty()) {
+                sb.append(": keep-alive\n\n");
+            } else {
+                long end = batch.get(batch.size() - 1).seq();
+                if (log.lastSeq() - s.cursor > COALESCE_AFTER) batch = coalesce(batch);
+                for (ChangeLog.Change c : batch) {
+                    sb.append("id: ").append(c.seq())
+                      .append("\nevent: ").append(c.type())
+                      .append("\ndata: ").append(c.json()).append("\n\n");
+                }
+                s.cursor = end;
+            }
+            s.res.writeBody(sb.toString());
+            s.res.flush();
+            s.lastWrite = System.nanoTime();
+        } catch (RuntimeException e) {                    // client gone or write timeout
+            subscribers.remove(s);
+            s.res.abort();
+            return;
+        } finally {
+            s.busy.set(false);
+        }
+        if (s.cursor != log.lastSeq()) LockSupport.unpark(broadcaster); // more arrived meanwhile
+    }
+
+    // latest change per id, in seq order; an id first created in this window stays "created"
+    private static List<ChangeLog.Change> coalesce(List<ChangeLog.Change> batch) {
+        Map<Integer, ChangeLog.Change> latest = new HashMap<>();
+        for (ChangeLog.Change c : batch) {
+            latest.merge(c.id(), c, (old, cur) ->
+                    old.type().equals("created") && cur.type().equals("updated")
+                            ? new ChangeLog.Change(cur.seq(), "created", cur.id(), cur.json()) : cur);
+        }
+        List<ChangeLog.Change> out = new ArrayList<>(latest.values());
+        out.sort((a, b) -> Long.compare(a.seq(), b.seq()));
+        return out;
+    }
+}
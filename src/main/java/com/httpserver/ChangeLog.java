@@ -0,0 +1,81 @@
+package main.java.com.httpserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Bounded, ordered log of resource changes behind GET /resources/_changes.
+// Sequence numbers start at 1 and never repeat within a run; once the ring is full the
+// oldest entries are overwritten. The record JSON is read from the store while the
+// log lock is held, so the entry with the highest seq for an id always carries the
+// state after its latest write (two racing PUTs can't leave an older body last).
+// That also makes the log the replication stream: replaying it in order over any
+// earlier state converges on the primary's (ReplicationPrimary / ReplicationReplica).
+final class ChangeLog {
+
+    // one change; json is the record after the write ({"id":N} for deletes)
+    record Change(long seq, String type, int id, String json) { }
+
+    private final ResourceStore store;
+    private final Change[] ring;
+    private long lastSeq;                                 // guarded by this
+    private long floor;                                   // nothing at or below this can be replayed
+    private final List<Runnable> onAppend = new CopyOnWriteArrayList<>();
+
+    ChangeLog(ResourceStore store, int capacity) {
+        this.store = store;
+        this.ring = new Change[capacity];
+    }
+
+    void addOnAppend(Runnable listener) { onAppend.add(listener); }
+
+    void created(int id) { append("created", id); }
+    void updated(int id) { append("updated", id); }
+    void deleted(int id) { append("deleted", id); }
+
+    private void append(String type, int id) {
+        synchronized (this) {
+            StringBuilder sb = new StringBuilder();
+            if (type.equals("deleted")) {
+                sb.append("{\"id\":").append(id).append('}');
+            } else if (!store.appendJson(id, sb)) {
+                return;                                   // deleted meanwhile, its delete follows
+            }
+            long seq = ++lastSeq;
+            ring[(int) (seq % ring.length)] = new Change(seq, type, id, sb.toString());
+        }
+        onAppend.forEach(Runnable::run);
+    }
+
+    // replica: a change the primary logged, under the primary's seq
+    void replicated(long seq, String type, int id, String json) {
+        synchronized (this) {
+            if (seq <= lastSeq) return;
+            if (seq != lastSeq + 1) floor = seq - 1;
+            lastSeq = seq;
+            ring[(int) (seq % ring.length)] = new Change(seq, type, id, json);
+        }
+        onAppend.forEach(Runnable::run);
+    }
+
+    // replica: state replaced by a snapshot taken at seq; earlier changes are gone
+    void reset(long seq) {
+        synchronized (this) {
+            lastSeq = seq;
+            floor = seq;
+        }
+        onAppend.forEach(Runnable::run);
+    }
+
+    synchronized long lastSeq() { return lastSeq; }
+
+    // up to max changes after `after`, oldest first; null if some of them were already
+    // overwritten, or `after` is from the future (a previous server run)
+    synchronized List<Change> since(long after, int max) {
+        if (after > lastSeq || after < floor || after < lastSeq - ring.length) return null;
+        long end = Math.min(lastSeq, after + max);
+        List<Change> out = new ArrayList<>((int) (end - after));
+        for (long s = after + 1; s <= end; s++) out.add(ring[(int) (s % ring.length)]);
+        return out;
+    }
+}
@@ -0,0 +1,291 @@
+package main.java.com.httpserver;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+// Compact store for tens of millions of records; per record the heap only holds
+// one long in the index, everything else lives off-heap.
+//   • schema dictionary: each field name is interned once → u16 key id, with its
+//     JSON prefix (,"name":) prebuilt
+//   • rows: binary, bump-allocated into direct ByteBuffer slabs
+//       row   = u32 length | u16 fieldCount | field*
+//       field = u16 keyId | u8 type | payload   (INT: i32, LONG: i64, DOUBLE: f64, STR: u32 len + UTF-8)
+//   • index: paged long[] by id (ids are dense, handed out by the server);
+//     entry = (slab << 32 | offset) + 1, 0 = absent
+//   • reads write JSON straight from the row bytes, no Map or boxed values
+// Updates append a new row and deletes only clear the index entry; the old bytes are
+// counted as garbage (getGarbageBytes) – slabs are not compacted in place.
+public class CompactResourceStore implements ResourceStore {
+
+    private static final byte INT = 0, LONG = 1, DOUBLE = 2, STR = 3;
+    private static final int PAGE_BITS = 16, PAGE = 1 << PAGE_BITS;  // index page: 64 Ki ids
+
+    private final int slabSize;
+    private final List<ByteBuffer> slabs = new ArrayList<>();        // guarded by lock
+    private ByteBuffer current;                                      // slab being filled, guarded by lock
+    private long[][] index = new long[16][];                         // guarded by lock
+    private int count;
+    private long liveBytes, garbageBytes;
+
+    private final Map<String, Integer> keyIds = new HashMap<>();     // guarded by lock
+    private final List<String> keyJson = new ArrayList<>();          // keyId → ,"name":
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<ByteBuffer> scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocate(4096));
+
+    public CompactResourceStore(int slabSize) {
+        this.slabSize = slabSize;
+    }
+
+    // ----- writes -----
+
+    @Override public void put(int id, Map<String, Object> data) {
+        ByteBuffer row = encode(data);
+        lock.writeLock().lock();
+        try {
+            store(id, row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override public void putAll(Map<Integer, Map<String, Object>> rows) {
+        List<ByteBuffer> encoded = new ArrayList<>(rows.size());
+        int[] ids = new int[rows.size()];
+        int i = 0;
+        for (var e : rows.entrySet()) {
+            ids[i++] = e.getKey();
+            ByteBuffer b = encode(e.getValue());
+            encoded.add(ByteBuffer.allocate(b.remaining()).put(b).flip()); // scratch is reused per row
+        }
+        lock.writeLock().lock();
+        try {
+            for (int j = 0; j < ids.length; j++) store(ids[j], encoded.get(j));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override public boolean remove(int id) {
+        lock.writeLock().lock();
+        try {
+            long ref = ref(id);
+            if (ref == 0) return false;
+            setRef(id, 0);
+            int len = rowLength(ref);
+            liveBytes -= len;
+            garbageBytes += len;
+            count--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // caller holds the write lock
+    private void store(int id, ByteBuffer row) {
+        int len = row.remaining();
+        if (len > slabSize) throw new IllegalArgumentException("Record of " + len + " bytes exceeds slab size");
+        if (current == null || current.remaining() < len) {
+            current = ByteBuffer.allocateDirect(slabSize);
+            slabs.add(current);
+        }
+        int offset = current.position();
+        current.put(row);
+
+        long old = ref(id);
+        if (old != 0) {
+            int oldLen = rowLength(old);
+            liveBytes -= oldLen;
+            garbageBytes += oldLen;
+        } else {
+            count++;
+        }
+        liveBytes += len;
+        setRef(id, ((long) (slabs.size() - 1) << 32 | offset) + 1);
+    }
+
+    // Map → row bytes in a per-thread scratch buffer (interns new keys under the lock)
+    private ByteBuffer encode(Map<String, Object> data) {
+        // the field count is an unsigned short in the row header
+        if (data.size() > 0xFFFF) throw new IllegalArgumentException("Record has " + data.size() + " fields, max 65535");
+        ByteBuffer b = scratch.get().clear();
+        b.putInt(0).putShort((short) data.size());
+        for (var e : data.entrySet()) {
+            byte[] str = null;
+            Object v = e.getValue();
+            if (!(v instanceof Integer || v instanceof Long || v instanceof Double || v instanceof Float
+                    || v instanceof Short || v instanceof Byte)) {
+                str = String.valueOf(v).getBytes(StandardCharsets.UTF_8);
+            }
+            int need = 3 + 1 + (str == null ? 8 : 4 + str.length);
+            if (b.remaining() < need) b = grow(b, need);
+
+            b.putShort((short) keyId(e.getKey()));
+            if (str != null) {
+                b.put(STR).putInt(str.length).put(str);
+            } else if (v instanceof Long l) {
+                b.put(LONG).putLong(l);
+            } else if (v instanceof Double || v instanceof Float) {
+                b.put(DOUBLE).putDouble(((Number) v).doubleValue());
+            } else {
+                b.put(INT).putInt(((Number) v).intValue());
+            }
+        }
+        b.putInt(0, b.position());
+        return b.flip();
+    }
+
+    private ByteBuffer grow(ByteBuffer b, int need) {
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(b.capacity() * 2, b.position() + need));
+        bigger.put(b.flip());
+        scratch.set(bigger);
+        return bigger;
+    }
+
+    private int keyId(String key) {
+        lock.readLock().lock();
+        try {
+            Integer k = keyIds.get(key);
+            if (k != null) return k;
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            return keyIds.computeIfAbsent(key, n -> {
+                if (keyJson.size() == 0xFFFF) throw new IllegalStateException("Too many distinct field names");
+                keyJson.add(",\"" + n + "\":");
+                return keyJson.size() - 1;
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ----- reads -----
+
+    @Override public boolean contains(int id) {
+        lock.readLock().lock();
+        try {
+            return ref(id) != 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ids are collected one index page at a time so the action runs without the lock
+    @Override public void forEachId(IntConsumer action) {
+        int[] ids = new int[PAGE];
+        for (int p = 0; ; p++) {
+            int n = 0;
+            lock.readLock().lock();
+            try {
+                if (p >= index.length) return;
+                long[] page = index[p];
+                if (page == null) continue;
+                for (int i = 0; i < PAGE; i++) if (page[i] != 0) ids[n++] = p << PAGE_BITS | i;
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (int i = 0; i < n; i++) action.accept(ids[i]);
+        }
+    }
+
+    @Override public boolean appendJson(int id, StringBuilder sb) {
+        lock.readLock().lock();
+        try {
+            long ref = ref(id);
+            if (ref == 0) return false;
+            ByteBuffer slab = slabs.get((int) ((ref - 1) >>> 32));
+            int pos = (int) (ref - 1) + 4;               // skip length
+            int fields = slab.getShort(pos) & 0xFFFF;
+            pos += 2;
+            sb.append("{\"id\":").append(id);
+            for (int f = 0; f < fields; f++) {
+                sb.append(keyJson.get(slab.getShort(pos) & 0xFFFF));
+                byte type = slab.get(pos + 2);
+                pos += 3;
+                switch (type) {
+                    case INT -> { sb.append(slab.getInt(pos)); pos += 4; }
+                    case LONG -> { sb.append(slab.getLong(pos)); pos += 8; }
+                    case DOUBLE -> { sb.append(slab.getDouble(pos)); pos += 8; }
+                    default -> {
+                        int len = slab.getInt(pos);
+                        pos += 4;
+                        sb.append('"');
+                        appendUtf8(slab, pos, len, sb);
+                        sb.append('"');
+                        pos += len;
+                    }
+                }
+            }
+            sb.append('}');
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ASCII is copied byte → char; anything else goes through the UTF-8 decoder
+    private static void appendUtf8(ByteBuffer slab, int pos, int len, StringBuilder sb) {
+        for (int i = 0; i < len; i++) {
+            byte c = slab.get(pos + i);
+            if (c < 0) {
+                byte[] rest = new byte[len - i];
+                slab.get(pos + i, rest);
+                sb.append(new String(rest, StandardCharsets.UTF_8));
+                return;
+            }
+            sb.append((char) c);
+        }
+    }
+
+    // ----- stats -----
+
+    public long getLiveBytes()    { return liveBytes; }                       // encoded rows in use
+    public long getGarbageBytes() { return garbageBytes; }                    // replaced / deleted rows
+    public long getOffHeapBytes() { return (long) slabs.size() * slabSize; }  // reserved slab memory
+
+    // ----- index -----
+
+    private long ref(int id) {
+        if (id < 0) return 0;
+        int p = id >>> PAGE_BITS;
+        if (p >= index.length || index[p] == null) return 0;
+        return index[p][id & (PAGE - 1)];
+    }
+
+    private void setRef(int id, long ref) {
+        int p = id >>> PAGE_BITS;
+        if (p >= index.length) {
+            long[][] bigger = new long[Math.max(index.length * 2, p + 1)][];
+            System.arraycopy(index, 0, bigger, 0, index.length);
+            index = bigger;
+        }
+        if (index[p] == null) {
+            if (ref == 0) return;
+            index[p] = new long[PAGE];
+        }
+        index[p][id & (PAGE - 1)] = ref;
+    }
+
+    private int rowLength(long ref) {
+        return slabs.get((int) ((ref - 1) >>> 32)).getInt((int) (ref - 1));
+    }
+}
@@ -0,0 +1,10 @@
+package main.java.com.httpserver;
+
+// Cross-cutting step in front of a RequestHandler (auth, logging, CORS, metrics, …).
+// A filter either calls next.handle(request, response) – possibly with a wrapped
+// writer (see ResponseWriterWrapper) – or short-circuits by filling in the response
+// itself and returning. Chains are built once per route when the server starts.
+@FunctionalInterface
+public interface Filter {
+    void filter(HttpRequest request, HttpResponseWriter response, RequestHandler next);
+}
@@ -0,0 +1,86 @@
+package main.java.com.httpserver;
+
+import java.util.Map;
+
+// Stock filters. apiKey and requestLog are installed by SimpleHttpServer itself.
+public final class Filters {
+
+    // 401 unless X-API-Key matches (header name is case-insensitive)
+    public static Filter apiKey(String expected) {
+        return (req, res, next) -> {
+            ServerEvents.Auth checked = new ServerEvents.Auth();
+            checked.begin();
+            String provided = req.getHeaders().entrySet().stream()
+                    .filter(e -> e.getKey().equalsIgnoreCase("X-API-Key"))
+                    .map(Map.Entry::getValue)
+                    .findFirst().orElse("");
+            boolean allowed = expected.equals(provided);
+            checked.end();
+            if (checked.shouldCommit()) {
+                checked.method = req.getMethod();
+                checked.route = req.getRoute();
+                checked.status = allowed ? 0 : 401;
+                checked.allowed = allowed;
+                checked.commit();
+            }
+            if (!allowed) {
+                res.setStatus(401, "Unauthorized");
+                res.setHeader("WWW-Authenticate", "ApiKey realm=\"SimpleServer\"");
+                return;
+            }
+            next.handle(req, res);
+        };
+    }
+
+    // one DEBUG line per request, with the final status when the writer exposes it
+    public static Filter requestLog() {
+        return (req, res, next) -> {
+            try {
+                next.handle(req, res);
+            } finally {
+                String status = res instanceof BufferedResponseWriter b ? " (" + b.getStatus() + ")" : "";
+                Logger.log(Logger.Level.DEBUG, "Handled " + req.getMethod().toUpperCase() + " " + req.getPath() + status);
+            }
+        };
+    }
+
+    // CORS for browser clients: answers preflights, tags actual responses
+    public static Filter cors(String allowOrigin) {
+        return (req, res, next) -> {
+            res.setHeader("Access-Control-Allow-Origin", allowOrigin);
+            res.setHeader("Vary", "Origin");
+            if (req.getMethod().equalsIgnoreCase("OPTIONS")
+                    && req.getHeaders().containsKey("Access-Control-Request-Method")) {
+                res.setStatus(204, "No Content");
+                res.setHeader("Access-Control-Allow-Methods", "GET, HEAD, POST, PUT, DELETE");
+                res.setHeader("Access-Control-Allow-Headers", "Content-Type, X-API-Key");
+                res.setHeader("Access-Control-Max-Age", "600");
+                return;
+            }
+            next.handle(req, res);
+        };
+    }
+
+    // read-only node (a replica): reads pass, writes are sent to primaryUrl with a 307,
+    // which keeps method and body; 503 when there is nowhere to send them
+    public static Filter readOnly(String primaryUrl) {
+        return (req, res, next) -> {
+            String m = req.getMethod().toUpperCase();
+            if (m.equals("GET") || m.equals("HEAD") || m.equals("OPTIONS")) {
+                next.handle(req, res);
+                return;
+            }
+            res.setHeader("Content-Type", "text/plain");
+            if (primaryUrl == null) {
+                res.setStatus(503, "Service Unavailable");
+                res.writeBody("Read-only replica");
+                return;
+            }
+            res.setStatus(307, "Temporary Redirect");
+            res.setHeader("Location", primaryUrl + req.getPath());
+            res.writeBody("Writes go to the primary: " + primaryUrl);
+        };
+    }
+
+    private Filters() { } // prevent instantiation
+}
@@ -0,0 +1,141 @@
+package main.java.com.httpserver;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// One timer thread and one wheel of buckets for every connection deadline.
+// A connection owns a single Deadline for its whole life and re-arms it per phase
+// (header, body, write, keep-alive idle). Arming is a volatile write; only a
+// Deadline that is not on the wheel yet goes through the pending queue. The wheel
+// keeps each entry in one bucket; when the bucket comes round, the entry fires,
+// moves to the bucket of its current due time, or drops out if it was disarmed.
+// So nothing is scheduled or cancelled per read, write or request.
+final class HashedWheelTimer {
+
+    private static final long OFF = Long.MAX_VALUE;
+
+    private final long tickMs;
+    private final ArrayDeque<Deadline>[] wheel;           // timer thread only
+    private final int mask;
+    private final ConcurrentLinkedQueue<Deadline> pending = new ConcurrentLinkedQueue<>();
+    private long tick;                                    // timer thread only
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    HashedWheelTimer(long tickMs, int buckets) {          // buckets: power of two
+        this.tickMs = tickMs;
+        this.wheel = new ArrayDeque[buckets];
+        for (int i = 0; i < buckets; i++) wheel[i] = new ArrayDeque<>();
+        this.mask = buckets - 1;
+        Thread thread = new Thread(this::run, "timeout-wheel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // onExpire gets the name of the phase that timed out and runs on the timer thread
+    Deadline newDeadline(Consumer<String> onExpire) {
+        return new Deadline(onExpire);
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    private void run() {
+        long start = now();
+        while (true) {
+            long sleep = start + (tick + 1) * tickMs - now();
+            if (sleep > 0) {
+                try { Thread.sleep(sleep); } catch (InterruptedException e) { return; }
+            }
+            long now = now();
+            Deadline d;
+            while ((d = pending.poll()) != null) place(d, now);
+
+            ArrayDeque<Deadline> bucket = wheel[(int) (tick & mask)];
+            for (int n = bucket.size(); n > 0; n--) {
+                d = bucket.poll();
+                long due = d.due();
+                if (due == OFF) {
+                    d.queued.set(false);
+                    if (d.due() != OFF && d.queued.compareAndSet(false, true)) place(d, now); // re-armed meanwhile
+                } else if (due <= now) {
+                    if (!d.expire(now)) place(d, now); // re-armed since due() was read
+                } else {
+                    place(d, now);
+                }
+            }
+            tick++;
+        }
+    }
+
+    // bucket for the due time, at least one tick ahead; beyond one turn it is re-placed when visited
+    private void place(Deadline d, long now) {
+        long ticks = Math.max(1, Math.min(mask, (d.due() - now + tickMs - 1) / tickMs));
+        wheel[(int) ((tick + ticks) & mask)].add(d);
+    }
+
+    // the slot's phase if it was still due and is now switched off by us, else null
+    private static String claim(AtomicLong slot, String phase, long now) {
+        long at = slot.get();
+        return at <= now && slot.compareAndSet(at, OFF) ? phase : null;
+    }
+
+    // Read and write slots are separate so an HTTP/2 reader and writer can arm their own.
+    final class Deadline {
+        private final AtomicLong readAt = new AtomicLong(OFF), writeAt = new AtomicLong(OFF); // ms on the nanoTime clock
+        private volatile String readPhase, writePhase;
+        private volatile boolean expired;
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private final Consumer<String> onExpire;
+
+        private Deadline(Consumer<String> onExpire) { this.onExpire = onExpire; }
+
+        void armRead(long timeoutMs, String phase) {
+            if (timeoutMs <= 0) { readAt.set(OFF); return; }
+            readPhase = phase;
+            readAt.set(now() + timeoutMs);
+            enqueue();
+        }
+
+        void armWrite(long timeoutMs, String phase) {
+            if (timeoutMs <= 0) { writeAt.set(OFF); return; }
+            writePhase = phase;
+            writeAt.set(now() + timeoutMs);
+            enqueue();
+        }
+
+        void disarmRead()  { readAt.set(OFF); }
+        void disarmWrite() { writeAt.set(OFF); }
+        void cancel()      { readAt.set(OFF); writeAt.set(OFF); }
+
+        // true once onExpire ran (the connection was closed by the timer)
+        boolean isExpired() { return expired; }
+
+        private long due() { return Math.min(readAt.get(), writeAt.get()); }
+
+        private void enqueue() {
+            if (!queued.get() && queued.compareAndSet(false, true)) pending.add(this);
+        }
+
+        // claims a slot that is still due with a CAS, so a concurrent arm* and the expiry
+        // can't both win; false if both were re-armed or disarmed since due() was read
+        private boolean expire(long now) {
+            String phase = claim(readAt, readPhase, now);
+            if (phase == null) phase = claim(writeAt, writePhase, now);
+            if (phase == null) return false;
+            cancel();
+            queued.set(false);
+            if (expired) return true;       // armed again after the connection was closed
+            expired = true;
+            try {
+                onExpire.accept(phase);
+            } catch (RuntimeException e) {
+                Logger.log(Logger.Level.ERROR, "Timeout handler failed: " + e);
+            }
+            return true;
+        }
+    }
+}
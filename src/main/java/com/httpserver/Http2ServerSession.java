@@ -0,0 +1,190 @@
+package main.java.com.httpserver;
+
+import main.java.com.common.Hpack;
+import main.java.com.common.Http2Exception;
+import main.java.com.common.Http2Frame;
+import main.java.com.common.Http2Session;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/*
+ * Server side of an HTTP/2 connection (h2c or h2 over TLS): every peer-opened stream becomes an HttpRequest
+ * that runs through SimpleHttpServer.dispatch on its own thread, so existing
+ * RequestHandlers serve HTTP/2 unchanged and concurrently on one socket.
+ */
+class Http2ServerSession extends Http2Session {
+
+    static final int MAX_STREAMS = 100;             // SETTINGS_MAX_CONCURRENT_STREAMS we advertise
+
+    // HTTP/1.1 connection-specific fields that are illegal in HTTP/2 (RFC 9113 §8.2.2)
+    private static final Set<String> HOP_BY_HOP = Set.of(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade");
+
+    private final SimpleHttpServer server;
+    private final HashedWheelTimer.Deadline deadline;  // the connection's; writes arm it in the socket stream
+    private final long idleTimeout;                    // no open streams and no frames → close
+
+    Http2ServerSession(SimpleHttpServer server, InputStream in, OutputStream out,
+                       HashedWheelTimer.Deadline deadline, long idleTimeout) {
+        super(in, out, MAX_STREAMS);
+        this.server = server;
+        this.deadline = deadline;
+        this.idleTimeout = idleTimeout;
+    }
+
+    // idle only counts while no stream is open; running handlers keep the connection
+    @Override protected void awaitingFrame() {
+        if (streams.isEmpty()) deadline.armRead(idleTimeout, "HTTP/2 idle");
+        else deadline.disarmRead();
+    }
+
+    // prior knowledge: "PRI * HTTP/2.0" + blank line were consumed as a request head
+    void serve() throws IOException {
+        byte[] rest = in.readNBytes(6);
+        if (!Arrays.equals(rest, Arrays.copyOfRange(Http2Frame.PREFACE, 18, 24))) return; // not a real preface
+        sendSettings(false);
+        readLoop();
+    }
+
+    // ALPN "h2" over TLS: the client sends the complete preface
+    void serveNegotiated() throws IOException {
+        if (!Arrays.equals(in.readNBytes(Http2Frame.PREFACE.length), Http2Frame.PREFACE)) return;
+        sendSettings(false);
+        readLoop();
+    }
+
+    // Upgrade: 101 already sent; the upgrading request is stream 1, half-closed by the client
+    void serveUpgrade(HttpRequest first, String http2Settings) throws IOException {
+        applyUpgradeSettings(Base64.getUrlDecoder().decode(http2Settings.trim()));
+        sendSettings(false);
+        if (!Arrays.equals(in.readNBytes(Http2Frame.PREFACE.length), Http2Frame.PREFACE)) return;
+
+        lastPeerStreamId = 1;
+        Stream s = openStream(1);
+        remoteEnd(s);
+        startStream(s, first);
+        readLoop();
+    }
+
+    @Override
+    protected void onHeaders(int id, List<Hpack.Header> fields, boolean endStream) throws IOException {
+        Stream existing = streams.get(id);
+        if (existing != null) {                          // trailers close the request body
+            if (!endStream) throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "Trailers without END_STREAM");
+            remoteEnd(existing);
+            return;
+        }
+        if ((id & 1) == 0) throw new Http2Exception(Http2Frame.PROTOCOL_ERROR, "Bad stream id " + id);
+        if (id <= lastPeerStreamId) {                    // e.g. trailers after we reset or answered it
+            resetClosed(id);
+            return;
+        }
+        lastPeerStreamId = id;
+
+        Stream s = openStream(id);
+        if (streams.size() > MAX_STREAMS || goingAway) { // peer ignored our limit → refuse, it may retry
+            resetStream(s, Http2Frame.REFUSED_STREAM);
+            return;
+        }
+        ServerEvents.Parse parsed = new ServerEvents.Parse();
+        parsed.begin();
+        HttpRequest req = toRequest(fields);
+        if (req == null) {
+            resetStream(s, Http2Frame.PROTOCOL_ERROR);
+            return;
+        }
+        SimpleHttpServer.parsed(parsed, req);
+        if (endStream) remoteEnd(s);
+        else req.setBodyStream(s.body());
+        startStream(s, req);
+    }
+
+    // one thread per stream, like one thread per HTTP/1.1 connection
+    private void startStream(Stream s, HttpRequest req) {
+        new Thread(() -> {
+            StreamResponseWriter resp = new StreamResponseWriter(s);
+            resp.setOnRelease(() -> finish(s)); // a detached response ends its stream later
+            try {
+                server.dispatch(req, resp);
+                if (resp.isDetached()) return;
+                if (!s.isRemoteClosed() && !s.isReset()) {
+                    resetStream(s, Http2Frame.NO_ERROR); // response done, rest of the body is not needed
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                try { resetStream(s, Http2Frame.INTERNAL_ERROR); } catch (IOException ignored) { }
+            }
+        }).start();
+    }
+
+    // end of a detached exchange: cancel the stream if it was aborted mid-response,
+    // else stop the request body like above
+    private void finish(Stream s) {
+        if (s.isReset()) return;
+        try {
+            if (!s.isLocalClosed()) resetStream(s, Http2Frame.CANCEL);
+            else if (!s.isRemoteClosed()) resetStream(s, Http2Frame.NO_ERROR);
+        } catch (IOException ignored) { }  // the connection is gone anyway
+    }
+
+    // pseudo-headers → method/path, regular fields → case-insensitive header map
+    private static HttpRequest toRequest(List<Hpack.Header> fields) {
+        HttpRequest req = new HttpRequest();
+        Map<String,String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Hpack.Header h : fields) {
+            switch (h.name()) {
+                case ":method"    -> req.setMethod(h.value());
+                case ":path"      -> req.setPath(h.value());
+                case ":authority" -> headers.put("Host", h.value());
+                case ":scheme"    -> { }
+                case "cookie"     -> headers.merge("Cookie", h.value(), (a, b) -> a + "; " + b);
+                default           -> {
+                    if (h.name().startsWith(":")) return null;
+                    headers.merge(h.name(), h.value(), (a, b) -> a + ", " + b);
+                }
+            }
+        }
+        if (req.getMethod() == null || req.getPath() == null) return null;
+        req.setHeaders(headers);
+        return req;
+    }
+
+    // Response writer for one stream: HEADERS is held back until the first data
+    // so that a bodiless response goes out as a single HEADERS + END_STREAM frame
+    private final class StreamResponseWriter extends BufferedResponseWriter {
+        private final Stream stream;
+        private List<Hpack.Header> head;
+
+        StreamResponseWriter(Stream stream) { this.stream = stream; }
+
+        @Override protected void writeHead(boolean streaming) {
+            head = new ArrayList<>(headers.size() + moreHeaders.size() + 1);
+            head.add(new Hpack.Header(":status", String.valueOf(statusCode)));
+            headers.forEach(this::field);
+            moreHeaders.forEach(e -> field(e.getKey(), e.getValue()));
+        }
+
+        private void field(String k, String v) {
+            String name = k.toLowerCase();
+            if (!HOP_BY_HOP.contains(name)) head.add(new Hpack.Header(name, v));
+        }
+
+        @Override protected void writeData(byte[] data, boolean last) throws IOException {
+            if (head != null) {
+                List<Hpack.Header> h = head;
+                head = null;
+                sendHeaders(stream, h, last && data.length == 0);
+                if (last && data.length == 0) return;
+            }
+            if (data.length > 0 || last) sendData(stream, data, 0, data.length, last);
+        }
+    }
+}
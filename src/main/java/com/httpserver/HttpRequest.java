@@ -1,13 +1,27 @@
 package main.java.com.httpserver;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 // Object representing an incoming HTTP request (method, path, headers, body).
+// The body stays on the connection until a handler reads it, either streaming
+// (getBodyStream / getBodyChannel / getBodyReader) or buffered (getBody).
 public class HttpRequest {
     private String method;                        // HTTP verb (GET, POST, ...)
     private String path;                          // requested path, e.g. "/users/42"
+    private String version;                       // "HTTP/1.1" / "HTTP/1.0" (null for HTTP/2)
     private Map<String,String> headers;           // request headers (case‑insensitive keys)
-    private String body;                          // request body as raw string (may be null)
+    private String body;                          // buffered body as UTF-8 string (may be null)
+    private InputStream bodyStream;               // unread body, consumed lazily (null = no body)
+    private BufferedReader bodyReader;            // text view over bodyStream, created on demand
+    private String route;                         // matched route key ("GET /resources/"), set by the server
 
     // --- getters / setters -------------------------------------------------
     public String getMethod() { return method; }
@@ -16,9 +30,42 @@ public class HttpRequest {
     public String getPath() { return path; }
     public void setPath(String path) { this.path = path; }
 
+    public String getVersion() { return version; }
+    public void setVersion(String version) { this.version = version; }
+
+    public String getRoute() { return route; }
+    public void setRoute(String route) { this.route = route; }
+
     public Map<String,String> getHeaders() { return headers; }
     public void setHeaders(Map<String,String> headers) { this.headers = headers; }
 
-    public String getBody() { return body; }
+    // Buffered convenience: drains the remaining body on first call
+    public String getBody() {
+        if (body == null && bodyStream != null) {
+            try {
+                body = new String(bodyStream.readAllBytes(), StandardCharsets.UTF_8);
+                bodyStream = null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return body;
+    }
     public void setBody(String body) { this.body = body; }
-}
\ No newline at end of file
+
+    // Streaming access: raw body bytes, already de-chunked and size-limited (null = no body)
+    public InputStream getBodyStream() { return bodyStream; }
+    public void setBodyStream(InputStream bodyStream) { this.bodyStream = bodyStream; }
+
+    public ReadableByteChannel getBodyChannel() {
+        return bodyStream == null ? null : Channels.newChannel(bodyStream);
+    }
+
+    // UTF-8 line-oriented view for handlers that process the body incrementally (e.g. NDJSON)
+    public BufferedReader getBodyReader() {
+        if (bodyReader == null && bodyStream != null) {
+            bodyReader = new BufferedReader(new InputStreamReader(bodyStream, StandardCharsets.UTF_8));
+        }
+        return bodyReader;
+    }
+}
@@ -5,6 +5,15 @@ package main.java.com.httpserver;
 public interface HttpResponseWriter {
     void setStatus(int code, String message);   // e.g. 200 "OK"
     void setHeader(String name, String value);  // add / replace a header field
-    void writeBody(String data);                // append to response body
+    void addHeader(String name, String value);  // one more line of a field (Set-Cookie, …)
+    void writeBody(String data);                // append to response body (UTF-8)
+    void writeBody(byte[] data, int off, int len); // append raw bytes (files)
+    void flush();                               // commit headers and push buffered body now (streaming)
     void send();                                // flush headers + body to socket
-}
\ No newline at end of file
+
+    // long-lived responses (server push): after detach() the exchange stays open when the
+    // handler returns; any one thread may then writeBody/flush and end it with send(),
+    // or abort() it (e.g. after a failed flush), which also drops the connection
+    void detach();
+    void abort();
+}
@@ -0,0 +1,17 @@
+package main.java.com.httpserver;
+
+import java.io.IOException;
+
+// Signals that a request must be rejected with a specific status (e.g. 413, 431)
+// before or while its body is read. Caught by SimpleHttpServer and turned into a response.
+public class HttpStatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+    private final int status;                     // HTTP status code to send
+
+    public HttpStatusException(int status, String reason) {
+        super(reason);
+        this.status = status;
+    }
+
+    public int getStatus() { return status; }
+}
@@ -0,0 +1,34 @@
+package main.java.com.httpserver;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+
+// Original store: boxed Integer → HashMap of boxed values, all on the heap.
+// Simple and fast for small data sets; a few hundred bytes of heap per record.
+public class MapResourceStore implements ResourceStore {
+
+    private final Map<Integer, Map<String, Object>> rows = new ConcurrentHashMap<>();
+
+    @Override public void put(int id, Map<String, Object> data)          { rows.put(id, data); }
+    @Override public void putAll(Map<Integer, Map<String, Object>> batch) { rows.putAll(batch); }
+    @Override public boolean contains(int id)                             { return rows.containsKey(id); }
+    @Override public boolean remove(int id)                               { return rows.remove(id) != null; }
+    @Override public int size()                                           { return rows.size(); }
+
+    @Override public void forEachId(IntConsumer action) {
+        for (Integer id : rows.keySet()) action.accept(id);
+    }
+
+    @Override public boolean appendJson(int id, StringBuilder sb) {
+        Map<String, Object> d = rows.get(id);
+        if (d == null) return false;
+        sb.append("{\"id\":").append(id);
+        d.forEach((k, v) -> {
+            sb.append(",\"").append(k).append("\":");
+            sb.append(v instanceof Number ? v : ("\"" + v + "\""));
+        });
+        sb.append("}");
+        return true;
+    }
+}
@@ -0,0 +1,56 @@
+package main.java.com.httpserver;
+
+import main.java.com.common.MemoryTransport;
+import main.java.com.common.TcpTransport;
+import main.java.com.common.Transport;
+import java.util.List;
+
+/*
+ * What the reverse proxy adds per request: the same keep-alive GET /ping load (see
+ * TransportBench) straight at an upstream, then through a ProxyHandler balancing over
+ * two such upstreams. The difference of the percentiles is the proxy's own cost – one
+ * more parse / route / serialize on each side plus picking an upstream and a pooled
+ * connection; over in-memory pipes that is all there is, over TCP the second hop too.
+ * Usage: ProxyBench [connections] [requests per connection] [mem|tcp]
+ *        (defaults: 50 2000 mem; tcp uses ports 18080-18082)
+ */
+public class ProxyBench {
+
+    public static void main(String[] args) throws Exception {
+        int conns   = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int perConn = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        boolean tcp = args.length > 2 && args[2].equals("tcp");
+        Transport transport = tcp ? new TcpTransport() : new MemoryTransport();
+        int base = tcp ? 18080 : 1;
+
+        for (int i = 1; i <= 2; i++) {
+            SimpleHttpServer up = new SimpleHttpServer(base + i, null);
+            up.on("GET", "/ping", TransportBench::ping);
+            TransportBench.start(up, transport);
+        }
+        ProxyHandler proxy = new ProxyHandler("/", List.of("http://localhost:" + (base + 1), "http://localhost:" + (base + 2)),
+                ProxyHandler.Balance.P2C, null);
+        proxy.setTransport(transport);
+        SimpleHttpServer front = new SimpleHttpServer(base, null);
+        front.on("GET", "/", proxy);
+        TransportBench.start(front, transport);
+
+        String label = tcp ? "tcp" : "mem";
+        for (int round = 0; round < 3; round++) {                 // warm up the JIT on both paths
+            TransportBench.pass(transport, base + 1, conns, Math.max(perConn / 4, 200), null);
+            TransportBench.pass(transport, base, conns, Math.max(perConn / 4, 200), null);
+        }
+        long[] direct = TransportBench.pass(transport, base + 1, conns, perConn, label + " direct ");
+        long[] proxied = TransportBench.pass(transport, base, conns, perConn, label + " proxied");
+        System.out.printf("added by the proxy: p50 %8.1f us  p90 %8.1f us  p99 %8.1f us%n",
+                (at(proxied, 0.50) - at(direct, 0.50)) / 1e3,
+                (at(proxied, 0.90) - at(direct, 0.90)) / 1e3,
+                (at(proxied, 0.99) - at(direct, 0.99)) / 1e3);
+        proxy.close();
+        System.exit(0); // the servers' connection threads are not daemons
+    }
+
+    private static long at(long[] sorted, double q) {
+        return sorted[(int) (sorted.length * q)];
+    }
+}
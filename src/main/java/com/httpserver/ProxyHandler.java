@@ -0,0 +1,375 @@
+package main.java.com.httpserver;
+
+import main.java.com.common.Transport;
+import main.java.com.httpclient.HttpResponse;
+import main.java.com.httpclient.RequestOptions;
+import main.java.com.httpclient.SimpleHttpClient;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Reverse proxy for one route prefix (proxy.* keys): each request goes to one upstream of
+ * a pool over the client's keep-alive connections. The request body is streamed up as it
+ * is read and the response streamed back as it arrives, neither is buffered whole.
+ *   • balancing: least outstanding requests, or power of two choices (two random
+ *     upstreams, the less busy one wins – no herding when several proxies share a pool)
+ *   • active health checks: GET healthPath on every upstream each interval; 2 failures in
+ *     a row take it out of rotation, 2 successes bring it back
+ *   • outlier ejection: EJECT_AFTER consecutive 5xx / failed exchanges eject an upstream
+ *     for 30 s × the number of times it was ejected (at most 5 min), never more than half
+ *     of the pool at once
+ *   • a connect failure (nothing was sent) is tried once more on another upstream
+ * With every upstream out, requests still go to the least busy one rather than nowhere.
+ * The upstream sees the original path (minus the prefix with stripPrefix), X-Forwarded-Host
+ * and Via; hop-by-hop headers stay on their own hop. GET /proxy shows the pool.
+ */
+public class ProxyHandler implements RequestHandler {
+
+    public enum Balance { LEAST_OUTSTANDING, P2C }
+
+    private static final int EJECT_AFTER = 5;                     // consecutive failures
+    private static final long EJECT_NANOS = 30_000_000_000L;      // × ejections so far
+    private static final long MAX_EJECT_NANOS = 300_000_000_000L;
+    private static final int HEALTH_THRESHOLD = 2;                // checks in a row to flip state
+    private static final int CHUNK = 16 * 1024;                   // body copy buffer
+
+    // connection-level headers (RFC 9110 §7.6.1) plus those the client writes itself
+    private static final Set<String> HOP_BY_HOP = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    static {
+        HOP_BY_HOP.addAll(List.of("Connection", "Keep-Alive", "Proxy-Connection", "Proxy-Authenticate",
+                "Proxy-Authorization", "TE", "Trailer", "Transfer-Encoding", "Upgrade",
+                "Host", "Content-Length", "Expect"));
+    }
+
+    private final String prefix;
+    private final Upstream[] pool;
+    private final Balance balance;
+    private final SimpleHttpClient client;
+    private final RequestOptions options;
+    private final boolean ownKey;                                 // upstream key set: drop the caller's
+    private boolean stripPrefix;
+    private String healthPath;                                    // null = no active checks
+    private long healthIntervalMs;
+    private volatile Thread checker;
+
+    private static final class Upstream {
+        final String base;                                        // scheme://host:port[/path]
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();       // consecutive
+        final AtomicLong requests = new AtomicLong(), errors = new AtomicLong();
+        volatile boolean healthy = true;
+        volatile long ejectedUntil;                               // nanoTime; 0 = in rotation
+        int ejections;                                            // guarded by the handler
+        int streak;                                               // health checks against the state (checker only)
+
+        Upstream(String base) { this.base = base; }
+
+        boolean ejected(long now) { return ejectedUntil != 0 && now - ejectedUntil < 0; }
+        boolean usable(long now)  { return healthy && !ejected(now); }
+    }
+
+    /*
+     * @param prefix      route prefix the handler is registered under
+     * @param upstreams   base URLs, e.g. http://10.0.0.5:8080
+     * @param upstreamKey X-API-Key for the upstreams (null = pass the caller's through)
+     */
+    public ProxyHandler(String prefix, List<String> upstreams, Balance balance, String upstreamKey) {
+        if (upstreams.isEmpty()) throw new IllegalArgumentException("No upstreams for " + prefix);
+        this.prefix = prefix;
+        this.pool = upstreams.stream()
+                .map(u -> new Upstream(u.endsWith("/") ? u.substring(0, u.length() - 1) : u))
+                .toArray(Upstream[]::new);
+        this.balance = balance;
+        this.ownKey = upstreamKey != null;
+        this.client = new SimpleHttpClient(upstreamKey);
+        client.setCookies(false);                                 // the callers' cookies pass through
+        client.setKeepAlive(256);
+        this.options = new RequestOptions()
+                .setMaxRetries(0)
+                .setDecompress(false);                            // bytes pass through as encoded
+    }
+
+    // configuration, before start() and the first request
+
+    // forward /api/x under prefix /api as /x
+    public void setStripPrefix(boolean strip) { this.stripPrefix = strip; }
+
+    // per upstream exchange (ms, 0 = none); the read timeout applies to each read, not the whole body
+    public void setTimeouts(int connectMs, int readMs) {
+        options.setConnectTimeout(connectMs).setReadTimeout(readMs);
+    }
+
+    // GET path on every upstream each intervalMs once started (2xx / 3xx = healthy)
+    public void setHealthCheck(String path, long intervalMs) {
+        this.healthPath = path;
+        this.healthIntervalMs = intervalMs;
+    }
+
+    // use another transport to reach the upstreams (e.g. in-process servers)
+    public void setTransport(Transport transport) { client.setTransport(transport); }
+
+    // start the active health checks (no-op without a health path)
+    public void start() {
+        if (healthPath == null || checker != null) return;
+        Thread t = new Thread(this::checkLoop, "proxy-health");
+        t.setDaemon(true);
+        checker = t;
+        t.start();
+    }
+
+    public void close() {
+        Thread t = checker;
+        if (t != null) t.interrupt();
+        client.close();
+    }
+
+    // ----- forwarding -----
+
+    @Override public void handle(HttpRequest req, HttpResponseWriter res) {
+        String path = req.getPath();
+        if (stripPrefix) {
+            path = path.substring(Math.min(prefix.length(), path.length()));
+            if (!path.startsWith("/")) path = "/" + path;
+        }
+        Map<String, String> headers = forwardHeaders(req);
+        InputStream body = req.getBodyStream();
+        long length = body == null ? -1 : declaredLength(req);
+
+        Upstream tried = null;
+        while (true) {
+            Upstream u = pick(tried);
+            if (u == null) {
+                error(res, 503, "Service Unavailable", "No upstream available");
+                return;
+            }
+            u.requests.incrementAndGet();
+            u.outstanding.incrementAndGet();
+            HttpResponse up;
+            try {
+                up = client.exchange(req.getMethod(), u.base + path, headers, body, length, options);
+            } catch (HttpStatusException e) {
+                u.outstanding.decrementAndGet();                  // the caller's body, not the upstream
+                throw new UncheckedIOException(e);
+            } catch (IllegalArgumentException e) {
+                u.outstanding.decrementAndGet();
+                error(res, 400, "Bad Request", "Cannot forward " + req.getPath());
+                return;
+            } catch (Exception e) {
+                u.outstanding.decrementAndGet();
+                failed(u);
+                if (e instanceof ConnectException && tried == null && pool.length > 1) {
+                    tried = u;                                    // nothing was sent: another one may take it
+                    continue;
+                }
+                Logger.log(Logger.Level.WARN, "Proxy " + req.getMethod() + " " + req.getPath()
+                        + " to " + u.base + " failed: " + e.getMessage());
+                if (e instanceof SocketTimeoutException) error(res, 504, "Gateway Timeout", "Upstream timed out");
+                else error(res, 502, "Bad Gateway", "Upstream failed");
+                return;
+            }
+            relay(u, up, res);
+            return;
+        }
+    }
+
+    // status, end-to-end headers and the body as it arrives; a body cut short upstream
+    // is cut short downstream too (the connection is dropped). The response is sent from
+    // here, before the request log and the rest of the filter chain unwind.
+    private void relay(Upstream u, HttpResponse up, HttpResponseWriter res) {
+        boolean ok = up.getStatusCode() < 500;
+        try (up) {
+            res.setStatus(up.getStatusCode(), up.getStatusMessage());
+            Map<String, String> h = up.getHeaders();
+            for (String k : h.keySet()) {                          // every line of repeated fields (Set-Cookie, …)
+                if (HOP_BY_HOP.contains(k)) continue;
+                List<String> values = up.getHeaderValues(k);
+                res.setHeader(k, values.get(0));
+                for (int i = 1; i < values.size(); i++) res.addHeader(k, values.get(i));
+            }
+            res.setHeader("Via", via(h.containsKey("Via") ? String.join(", ", up.getHeaderValues("Via")) : null));
+            long left = -1;
+            String cl = h.get("Content-Length");
+            if (cl != null && !h.getOrDefault("Transfer-Encoding", "").toLowerCase().contains("chunked")) {
+                res.setHeader("Content-Length", cl);
+                left = Long.parseLong(cl.trim());
+            }
+            InputStream in = up.getBodyStream();
+            if (in != null) {
+                byte[] buf = new byte[left >= 0 ? (int) Math.max(1, Math.min(CHUNK, left)) : CHUNK];
+                for (int n; (n = in.read(buf)) != -1; ) {
+                    res.writeBody(buf, 0, n);
+                    if (left >= 0 && (left -= n) <= 0) continue;  // complete: the next read ends it, send() writes the rest
+                    if (in.available() == 0) res.flush();         // nothing more yet: pass on what we have
+                }
+            }
+            res.send();
+        } catch (IOException e) {
+            ok = false;
+            Logger.log(Logger.Level.WARN, "Proxy body from " + u.base + " failed: " + e.getMessage());
+            res.abort();
+        } catch (UncheckedIOException | NumberFormatException e) {
+            res.abort();                                          // caller went away / garbled length
+        } finally {
+            u.outstanding.decrementAndGet();
+            if (ok) u.failures.set(0);
+            else failed(u);
+        }
+    }
+
+    private Map<String, String> forwardHeaders(HttpRequest req) {
+        Map<String, String> in = req.getHeaders();
+        Map<String, String> out = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        Set<String> named = connectionTokens(in.get("Connection"));
+        in.forEach((k, v) -> {
+            if (!HOP_BY_HOP.contains(k) && (named == null || !named.contains(k))) out.put(k, v);
+        });
+        if (ownKey) out.remove("X-API-Key");
+        String host = in.get("Host");
+        if (host != null && !out.containsKey("X-Forwarded-Host")) out.put("X-Forwarded-Host", host);
+        out.put("Via", via(in.get("Via")));
+        return out;
+    }
+
+    // headers named in Connection are hop-by-hop as well
+    private static Set<String> connectionTokens(String connection) {
+        if (connection == null) return null;
+        Set<String> s = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (String t : connection.split(",")) s.add(t.trim());
+        return s;
+    }
+
+    private static String via(String earlier) {
+        return earlier == null ? "1.1 simplehttp" : earlier + ", 1.1 simplehttp";
+    }
+
+    private static long declaredLength(HttpRequest req) {
+        Map<String, String> h = req.getHeaders();
+        if (h.getOrDefault("Transfer-Encoding", "").toLowerCase().contains("chunked")) return -1;
+        String cl = h.get("Content-Length");
+        return cl == null ? -1 : Long.parseLong(cl.trim());      // validated by the server
+    }
+
+    private static void error(HttpResponseWriter res, int status, String reason, String message) {
+        res.setStatus(status, reason);
+        res.setHeader("Content-Type", "text/plain");
+        res.writeBody(message);
+    }
+
+    // ----- balancing -----
+
+    // a usable upstream other than `exclude`; null if there is none at all
+    private Upstream pick(Upstream exclude) {
+        long now = System.nanoTime();
+        Upstream[] p = pool;
+        if (balance == Balance.P2C && p.length > 1) {
+            ThreadLocalRandom r = ThreadLocalRandom.current();
+            int i = r.nextInt(p.length), j = r.nextInt(p.length - 1);
+            if (j >= i) j++;                                      // two distinct ones
+            Upstream a = p[i], b = p[j];
+            boolean okA = a != exclude && a.usable(now), okB = b != exclude && b.usable(now);
+            if (okA && okB) return a.outstanding.get() <= b.outstanding.get() ? a : b;
+            if (okA) return a;
+            if (okB) return b;
+        }
+        // least outstanding, scanning from a random start so ties spread out
+        Upstream best = null, fallback = null;
+        int start = p.length > 1 ? ThreadLocalRandom.current().nextInt(p.length) : 0;
+        for (int k = 0; k < p.length; k++) {
+            Upstream u = p[(start + k) % p.length];
+            if (u == exclude) continue;
+            if (fallback == null || u.outstanding.get() < fallback.outstanding.get()) fallback = u;
+            if (u.usable(now) && (best == null || u.outstanding.get() < best.outstanding.get())) best = u;
+        }
+        return best != null ? best : fallback;
+    }
+
+    // ----- outlier ejection -----
+
+    private void failed(Upstream u) {
+        u.errors.incrementAndGet();
+        if (u.failures.incrementAndGet() < EJECT_AFTER) return;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (u.ejected(now)) return;
+            int out = 0;
+            for (Upstream o : pool) if (o.ejected(now)) out++;
+            if ((out + 1) * 2 > pool.length) return;              // keep at least half in rotation
+            u.ejections++;
+            u.ejectedUntil = now + Math.min(EJECT_NANOS * u.ejections, MAX_EJECT_NANOS);
+            u.failures.set(0);
+            Logger.log(Logger.Level.WARN, "Proxy ejected " + u.base + " for "
+                    + (u.ejectedUntil - now) / 1_000_000_000L + " s after " + EJECT_AFTER + " failures");
+        }
+    }
+
+    // ----- active health checks -----
+
+    private void checkLoop() {
+        RequestOptions check = new RequestOptions()
+                .setConnectTimeout((int) Math.min(healthIntervalMs, options.getConnectTimeout()))
+                .setReadTimeout((int) Math.min(healthIntervalMs, 5_000))
+                .setMaxRetries(0);
+        while (!Thread.currentThread().isInterrupted()) {
+            for (Upstream u : pool) check(u, check);
+            try {
+                Thread.sleep(healthIntervalMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void check(Upstream u, RequestOptions o) {
+        boolean up;
+        // only the status counts: the body is left unread and the response closed
+        try (HttpResponse r = client.requestStreaming("GET", u.base + healthPath, null, null, o)) {
+            up = r.getStatusCode() >= 200 && r.getStatusCode() < 400;
+        } catch (Exception e) {
+            up = false;
+        }
+        if (up == u.healthy) {
+            u.streak = 0;
+        } else if (++u.streak >= HEALTH_THRESHOLD) {
+            u.streak = 0;
+            u.healthy = up;
+            Logger.log(up ? Logger.Level.INFO : Logger.Level.WARN,
+                    "Proxy upstream " + u.base + (up ? " is healthy again" : " failed its health check"));
+        }
+        // an upstream that stayed out of trouble for a while starts over with short ejections
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (u.ejections > 0 && !u.ejected(now) && now - u.ejectedUntil > MAX_EJECT_NANOS) u.ejections = 0;
+        }
+    }
+
+    // GET /proxy
+    void status(HttpRequest req, HttpResponseWriter res) {
+        long now = System.nanoTime();
+        StringBuilder sb = new StringBuilder("{\"prefix\":\"").append(prefix)
+                .append("\",\"balance\":\"").append(balance.name().toLowerCase()).append("\",\"upstreams\":[");
+        for (Upstream u : pool) {
+            if (sb.charAt(sb.length() - 1) != '[') sb.append(',');
+            sb.append("{\"url\":\"").append(u.base)
+              .append("\",\"healthy\":").append(u.healthy)
+              .append(",\"ejected\":").append(u.ejected(now))
+              .append(",\"outstanding\":").append(u.outstanding.get())
+              .append(",\"requests\":").append(u.requests.get())
+              .append(",\"errors\":").append(u.errors.get()).append('}');
+        }
+        res.setStatus(200, "OK");
+        res.setHeader("Content-Type", "application/json");
+        res.setHeader("Cache-Control", "no-store");
+        res.writeBody(sb.append("]}").toString());
+    }
+}
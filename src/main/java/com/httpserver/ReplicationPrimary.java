@@ -0,0 +1,259 @@
+package main.java.com.httpserver;
+
+import main.java.com.common.Transport;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Primary side of replication (replication.role = primary). Replicas keep one connection
+ * to replication.port open and receive the ChangeLog as a stream of batches: everything
+ * after the replica's last acknowledged seq, up to MAX_BATCH changes per frame, sent
+ * without waiting for the ACK of the previous one until `window` changes are in flight.
+ * A replica that reconnects resumes from its own seq; one that fell out of the ring, or
+ * whose copy came from an earlier run of this primary, first gets a snapshot of the store.
+ * The snapshot is taken without stopping writes: it starts at the current seq and the
+ * changes logged while it is read are replayed after it (each carries the record's state).
+ *
+ * The stream is the whole store, so a replica must present the shared replication.key
+ * in its SYNC; anything else is dropped before a byte of data is sent.
+ *
+ * Protocol (DataOutputStream framing; json = int length + UTF-8):
+ *   replica → primary  SYNC runId after key    once, after connecting (runId 0 = no copy yet;
+ *                                              key as writeUTF)
+ *                      ACK seq                 everything up to seq is applied
+ *   primary → replica  SNAPSHOT runId seq      the store as of seq follows
+ *                      ROWS n {id json}…       snapshot rows
+ *                      END                     snapshot complete; ids not in it are gone
+ *                      BATCH n {seq type id json}…   type c / u / d
+ *                      HEARTBEAT lastSeq       when idle; answered with an ACK
+ */
+final class ReplicationPrimary {
+
+    static final byte SYNC = 'S', ACK = 'A', SNAPSHOT = 'R', ROWS = 'P', END = 'E', BATCH = 'B', HEARTBEAT = 'H';
+    static final int TIMEOUT_MS = 5_000;                  // no frame for this long → connection is dead
+    private static final long HEARTBEAT_NANOS = 1_000_000_000L;
+    private static final int MAX_BATCH = 1000;            // changes per BATCH frame
+    private static final int SNAPSHOT_CHUNK = 1000;       // rows per ROWS frame
+
+    private final ResourceStore store;
+    private final ChangeLog log;
+    private final int window;                             // unacknowledged changes per replica
+    private final byte[] key;                             // shared secret replicas must send
+    private final long runId = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final Set<Replica> replicas = ConcurrentHashMap.newKeySet();
+
+    private static final class Replica {
+        final Transport.Connection conn;
+        final DataOutputStream out;
+        final Thread sender = Thread.currentThread();
+        volatile long sent, acked;                        // -1 = needs a snapshot
+        volatile boolean closed;
+
+        Replica(Transport.Connection conn, long from) throws IOException {
+            this.conn = conn;
+            this.out = new DataOutputStream(new BufferedOutputStream(conn.getOutputStream()));
+            this.sent = from;
+            this.acked = from;
+        }
+    }
+
+    ReplicationPrimary(ResourceStore store, ChangeLog log, int window, String key) {
+        if (key == null || key.isBlank()) throw new IllegalArgumentException("replication.key (or apiKey) is not set");
+        this.store = store;
+        this.log = log;
+        this.window = window;
+        this.key = key.getBytes(StandardCharsets.UTF_8);
+        log.addOnAppend(() -> replicas.forEach(r -> LockSupport.unpark(r.sender)));
+    }
+
+    // bindAddress: local address to listen on (null = all interfaces)
+    void start(Transport transport, String bindAddress, int port) throws IOException {
+        Transport.Listener listener = transport.listen(bindAddress, port);
+        Thread t = new Thread(() -> acceptLoop(listener), "replication-accept");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void acceptLoop(Transport.Listener listener) {
+        try (listener) {
+            while (true) {
+                Transport.Connection c = listener.accept();
+                Thread t = new Thread(() -> serve(c), "replication-" + c.getRemoteAddress());
+                t.setDaemon(true);
+                t.start();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // one replica: this thread streams, a second one reads its ACKs
+    private void serve(Transport.Connection c) {
+        Replica r = null;
+        try (c) {
+            c.setReadTimeout(TIMEOUT_MS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(c.getInputStream()));
+            if (in.readByte() != SYNC) throw new IOException("Expected SYNC");
+            long theirRun = in.readLong(), after = in.readLong();
+            if (!MessageDigest.isEqual(key, in.readUTF().getBytes(StandardCharsets.UTF_8))) {
+                Logger.log(Logger.Level.WARN, "Replica " + c.getRemoteAddress() + " rejected: wrong replication key");
+                return;
+            }
+            r = new Replica(c, theirRun == runId ? after : -1);
+            replicas.add(r);
+            Logger.log(Logger.Level.INFO, "Replica " + c.getRemoteAddress() + " connected at seq " + after
+                    + (theirRun == runId ? "" : " (other run, snapshot first)"));
+            Replica replica = r;
+            Thread acks = new Thread(() -> readAcks(replica, in), "replication-acks");
+            acks.setDaemon(true);
+            acks.start();
+            stream(r);
+        } catch (IOException | UncheckedIOException e) {
+            Logger.log(Logger.Level.WARN, "Replica " + c.getRemoteAddress() + " disconnected: " + e.getMessage());
+        } finally {
+            if (r != null) {
+                r.closed = true;
+                replicas.remove(r);
+            }
+        }
+    }
+
+    private void stream(Replica r) throws IOException {
+        long lastWrite = System.nanoTime();
+        while (!r.closed) {
+            List<ChangeLog.Change> batch = r.sent < 0 ? null : log.since(r.sent, MAX_BATCH);
+            if (batch == null) {
+                snapshot(r);
+                lastWrite = System.nanoTime();
+                continue;
+            }
+            if (!batch.isEmpty() && r.sent - r.acked < window) {
+                writeBatch(r.out, batch);
+                r.out.flush();
+                r.sent = batch.get(batch.size() - 1).seq();
+                lastWrite = System.nanoTime();
+                continue;
+            }
+            if (System.nanoTime() - lastWrite >= HEARTBEAT_NANOS) {
+                r.out.writeByte(HEARTBEAT);
+                r.out.writeLong(log.lastSeq());
+                r.out.flush();
+                lastWrite = System.nanoTime();
+            }
+            LockSupport.parkNanos(HEARTBEAT_NANOS);       // appends and ACKs unpark
+        }
+    }
+
+    private void readAcks(Replica r, DataInputStream in) {
+        try {
+            while (true) {
+                if (in.readByte() != ACK) throw new IOException("Expected ACK");
+                r.acked = in.readLong();
+                LockSupport.unpark(r.sender);             // may have been waiting for window space
+            }
+        } catch (IOException e) {
+            r.closed = true;
+            try { r.conn.close(); } catch (IOException ignored) { } // fails the sender's next write
+            LockSupport.unpark(r.sender);
+        }
+    }
+
+    private static void writeBatch(DataOutputStream out, List<ChangeLog.Change> batch) throws IOException {
+        out.writeByte(BATCH);
+        out.writeInt(batch.size());
+        for (ChangeLog.Change c : batch) {
+            out.writeLong(c.seq());
+            out.writeByte(c.type().charAt(0));
+            out.writeInt(c.id());
+            writeJson(out, c.json());
+        }
+    }
+
+    // the store as of the current seq, read while writes go on
+    private void snapshot(Replica r) throws IOException {
+        long seq = log.lastSeq();                         // before the scan: later writes are replayed
+        r.out.writeByte(SNAPSHOT);
+        r.out.writeLong(runId);
+        r.out.writeLong(seq);
+        List<Integer> ids = new ArrayList<>(SNAPSHOT_CHUNK);
+        List<String> rows = new ArrayList<>(SNAPSHOT_CHUNK);
+        int[] total = { 0 };
+        try {
+            store.forEachId(id -> {
+                StringBuilder sb = new StringBuilder();
+                if (!store.appendJson(id, sb)) return;    // deleted meanwhile
+                ids.add(id);
+                rows.add(sb.toString());
+                total[0]++;
+                if (ids.size() == SNAPSHOT_CHUNK) writeRows(r.out, ids, rows);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writeRows(r.out, ids, rows);
+        r.out.writeByte(END);
+        r.out.flush();
+        r.sent = seq;
+        Logger.log(Logger.Level.INFO, "Replica " + r.conn.getRemoteAddress() + " sent a snapshot of "
+                + total[0] + " records at seq " + seq);
+    }
+
+    private static void writeRows(DataOutputStream out, List<Integer> ids, List<String> rows) {
+        if (ids.isEmpty()) return;
+        try {
+            out.writeByte(ROWS);
+            out.writeInt(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                out.writeInt(ids.get(i));
+                writeJson(out, rows.get(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ids.clear();
+        rows.clear();
+    }
+
+    static void writeJson(DataOutputStream out, String json) throws IOException {
+        byte[] b = json.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    static String readJson(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > 16 * 1024 * 1024) throw new IOException("Bad record length " + n);
+        byte[] b = new byte[n];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // GET /replication
+    void status(HttpRequest req, HttpResponseWriter res) {
+        long last = log.lastSeq();
+        StringBuilder sb = new StringBuilder("{\"role\":\"primary\",\"lastSeq\":").append(last).append(",\"replicas\":[");
+        for (Replica r : replicas) {
+            if (sb.charAt(sb.length() - 1) != '[') sb.append(',');
+            sb.append("{\"address\":\"").append(r.conn.getRemoteAddress())
+              .append("\",\"sent\":").append(r.sent)
+              .append(",\"acked\":").append(r.acked)
+              .append(",\"lag\":").append(r.acked < 0 ? last : last - r.acked).append('}');
+        }
+        res.setStatus(200, "OK");
+        res.setHeader("Content-Type", "application/json");
+        res.setHeader("Cache-Control", "no-store");
+        res.writeBody(sb.append("]}").toString());
+    }
+}
@@ -0,0 +1,177 @@
+package main.java.com.httpserver;
+
+import main.java.com.common.Transport;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Replica side of replication (replication.role = replica): follows the primary's change
+// stream (protocol in ReplicationPrimary) into the local store and ChangeLog, so reads,
+// the bulk read and the change feed are served here under the primary's seq numbers.
+// One thread applies frames in order and ACKs once it has caught up with what arrived.
+// On a broken or silent connection it reconnects with backoff and resumes after its
+// last applied seq; the local copy stays readable (and possibly stale) meanwhile.
+final class ReplicationReplica {
+
+    private static final long MAX_BACKOFF_MS = 10_000;
+
+    private final ResourceStore store;
+    private final ChangeLog log;
+    private final Transport transport;
+    private final String host;
+    private final int port;
+    private final String key;                             // shared replication.key, sent in SYNC
+
+    private long runId;                                   // primary run the local copy is from (0 = none)
+    private volatile long applied;                        // last seq applied locally
+    private volatile long primarySeq;                     // primary's last seq as of the latest frame
+    private volatile boolean connected;
+
+    ReplicationReplica(ResourceStore store, ChangeLog log, Transport transport, String host, int port, String key) {
+        this.store = store;
+        this.log = log;
+        this.transport = transport;
+        this.host = host;
+        this.port = port;
+        this.key = key == null ? "" : key;
+    }
+
+    void start() {
+        Thread t = new Thread(this::run, "replication-follow");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void run() {
+        for (int failures = 0; ; failures++) {
+            try (Transport.Connection c = transport.connect(host, port, ReplicationPrimary.TIMEOUT_MS)) {
+                c.setReadTimeout(ReplicationPrimary.TIMEOUT_MS); // primary heartbeats every second
+                DataInputStream in = new DataInputStream(new BufferedInputStream(c.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(c.getOutputStream()));
+                out.writeByte(ReplicationPrimary.SYNC);
+                out.writeLong(runId);
+                out.writeLong(applied);
+                out.writeUTF(key);
+                out.flush();
+                connected = true;
+                failures = 0;
+                Logger.log(Logger.Level.INFO, "Replicating from " + host + ":" + port + " after seq " + applied);
+                follow(in, out);
+            } catch (EOFException e) {
+                Logger.log(Logger.Level.WARN, "Replication from " + host + ":" + port + " closed by the primary");
+            } catch (IOException e) {
+                if (connected || failures == 0)
+                    Logger.log(Logger.Level.WARN, "Replication from " + host + ":" + port + " failed: " + e.getMessage());
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(Math.min(MAX_BACKOFF_MS, 250L << Math.min(failures, 6)));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void follow(DataInputStream in, DataOutputStream out) throws IOException {
+        Set<Integer> snapshotIds = null;                  // ids received in the snapshot in progress
+        long snapshotSeq = 0;
+        while (true) {
+            byte frame = in.readByte();
+            switch (frame) {
+                case ReplicationPrimary.SNAPSHOT -> {
+                    runId = in.readLong();
+                    snapshotSeq = in.readLong();
+                    snapshotIds = new HashSet<>();
+                }
+                case ReplicationPrimary.ROWS -> {
+                    if (snapshotIds == null) throw new IOException("ROWS outside a snapshot");
+                    for (int n = in.readInt(); n > 0; n--) {
+                        int id = in.readInt();
+                        put(id, ReplicationPrimary.readJson(in));
+                        snapshotIds.add(id);
+                    }
+                    ack(in, out, applied);                // keeps the primary's read timeout at bay
+                }
+                case ReplicationPrimary.END -> {
+                    if (snapshotIds == null) throw new IOException("END outside a snapshot");
+                    List<Integer> gone = new ArrayList<>();
+                    Set<Integer> keep = snapshotIds;
+                    store.forEachId(id -> { if (!keep.contains(id)) gone.add(id); });
+                    gone.forEach(store::remove);
+                    log.reset(snapshotSeq);
+                    applied = snapshotSeq;
+                    primarySeq = Math.max(primarySeq, snapshotSeq);
+                    snapshotIds = null;
+                    Logger.log(Logger.Level.INFO, "Replica loaded a snapshot of " + keep.size() + " records at seq " + snapshotSeq);
+                    ack(in, out, applied);
+                }
+                case ReplicationPrimary.BATCH -> {
+                    for (int n = in.readInt(); n > 0; n--) {
+                        long seq = in.readLong();
+                        byte type = in.readByte();
+                        int id = in.readInt();
+                        apply(seq, type, id, ReplicationPrimary.readJson(in));
+                    }
+                    ack(in, out, applied);
+                }
+                case ReplicationPrimary.HEARTBEAT -> {
+                    primarySeq = in.readLong();
+                    ack(in, out, applied);
+                }
+                default -> throw new IOException("Unknown replication frame " + frame);
+            }
+        }
+    }
+
+    private void apply(long seq, byte type, int id, String json) {
+        if (seq <= applied) return;                       // resent after a reconnect
+        switch (type) {
+            case 'c' -> { put(id, json); log.replicated(seq, "created", id, json); }
+            case 'u' -> { put(id, json); log.replicated(seq, "updated", id, json); }
+            case 'd' -> { store.remove(id); log.replicated(seq, "deleted", id, json); }
+            default  -> Logger.log(Logger.Level.WARN, "Replication: unknown change type " + (char) type + " at seq " + seq);
+        }
+        applied = seq;
+        primarySeq = Math.max(primarySeq, seq);
+    }
+
+    // records travel as the store's own JSON ({"id":N,…}); only that leading id, which the
+    // store prepends, is dropped – a field of the record that is itself named "id" stays
+    private void put(int id, String json) {
+        String prefix = "{\"id\":" + id;
+        String fields = json.startsWith(prefix) ? "{" + json.substring(prefix.length()).replaceFirst("^,", "") : null;
+        Map<String, Object> data = fields == null ? null : ServerApp.parseJson(fields);
+        if (data == null) {
+            Logger.log(Logger.Level.WARN, "Replication: unreadable record " + id + ": " + json);
+            return;
+        }
+        store.put(id, data);
+    }
+
+    // ACKs are only flushed once everything that already arrived is applied, so a burst
+    // of batches is answered with one ACK for the last of them
+    private static void ack(DataInputStream in, DataOutputStream out, long seq) throws IOException {
+        out.writeByte(ReplicationPrimary.ACK);
+        out.writeLong(seq);
+        if (in.available() == 0) out.flush();
+    }
+
+    // GET /replication
+    void status(HttpRequest req, HttpResponseWriter res) {
+        long last = applied, primary = primarySeq;
+        res.setStatus(200, "OK");
+        res.setHeader("Content-Type", "application/json");
+        res.setHeader("Cache-Control", "no-store");
+        res.writeBody("{\"role\":\"replica\",\"primary\":\"" + host + ":" + port + "\",\"connected\":" + connected
+                + ",\"appliedSeq\":" + last + ",\"primarySeq\":" + primary + ",\"lag\":" + Math.max(0, primary - last) + "}");
+    }
+}
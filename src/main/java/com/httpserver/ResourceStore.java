@@ -0,0 +1,32 @@
+package main.java.com.httpserver;
+
+import main.java.com.common.Config;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+// Storage behind /resources: id → flat record of string / number fields.
+// Reads hand out JSON only, so an implementation never has to rebuild a Map.
+// store.mode in api.properties picks the implementation (map | compact).
+public interface ResourceStore {
+
+    void put(int id, Map<String, Object> data);                 // insert or replace
+    void putAll(Map<Integer, Map<String, Object>> rows);        // batch insert (bulk ingest)
+    boolean contains(int id);
+    boolean remove(int id);                                     // false if absent
+    boolean appendJson(int id, StringBuilder out);              // {"id":…,…}; false if absent
+    void forEachId(IntConsumer action);                         // live iteration, order unspecified
+    int size();
+
+    static ResourceStore fromConfig() {
+        return switch (Config.get("store.mode", "map").toLowerCase()) {
+            case "compact" -> new CompactResourceStore(slabBytes(Config.getInt("store.slabMiB", 64)));
+            default        -> new MapResourceStore();
+        };
+    }
+
+    // a slab is one direct ByteBuffer, so it must stay below 2 GiB
+    private static int slabBytes(int mib) {
+        if (mib < 1 || mib > 2047) throw new IllegalArgumentException("store.slabMiB must be 1..2047, not " + mib);
+        return mib << 20;
+    }
+}
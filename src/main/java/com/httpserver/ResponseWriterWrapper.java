@@ -0,0 +1,22 @@
+package main.java.com.httpserver;
+
+// Base for filters that wrap the response writer: forwards everything to the
+// wrapped writer; override just the calls to intercept.
+public class ResponseWriterWrapper implements HttpResponseWriter {
+
+    protected final HttpResponseWriter inner;   // writer being decorated
+
+    public ResponseWriterWrapper(HttpResponseWriter inner) {
+        this.inner = inner;
+    }
+
+    @Override public void setStatus(int code, String message) { inner.setStatus(code, message); }
+    @Override public void setHeader(String name, String value) { inner.setHeader(name, value); }
+    @Override public void addHeader(String name, String value) { inner.addHeader(name, value); }
+    @Override public void writeBody(String data)               { inner.writeBody(data); }
+    @Override public void writeBody(byte[] b, int off, int len) { inner.writeBody(b, off, len); }
+    @Override public void flush()                              { inner.flush(); }
+    @Override public void send()                               { inner.send(); }
+    @Override public void detach()                             { inner.detach(); }
+    @Override public void abort()                              { inner.abort(); }
+}
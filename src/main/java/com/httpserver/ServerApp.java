@@ -1,21 +1,41 @@
 package main.java.com.httpserver;
 
 import main.java.com.common.ApiKeyConfig;
+import main.java.com.common.Config;
+import main.java.com.common.Json;
+import main.java.com.common.TcpTransport;
+import main.java.com.common.TlsConfig;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.Scanner;
+import javax.net.ssl.SSLContext;
 
 /*
- * Supports GET, HEAD, POST, PUT, DELETE on /resources and /resources/{id}, plus a static file.
+ * Supports GET, HEAD, POST, PUT, DELETE on /resources and /resources/{id}, plus static files
+ * (with byte ranges) under /static.
+ * Bulk NDJSON ingest / read on /resources/_bulk, change events (SSE) on /resources/_changes.
+ * Optional primary / replica replication of the store (replication.* keys, GET /replication).
+ * Optional reverse proxy of a route prefix to an upstream pool (proxy.* keys, GET /proxy);
+ * GET /health for its health checks and other load balancers.
  */
 public class ServerApp {
 
-    // In-memory store: id → JSON-like map
-    private static final Map<Integer, Map<String, Object>> store = new HashMap<>();
+    // In-memory store: id → flat record (shared by all connection threads), see store.mode
+    private static final ResourceStore store = ResourceStore.fromConfig();
     private static final AtomicInteger ids = new AtomicInteger(1);
+    // recent creates / updates / deletes for /resources/_changes (changes.* keys)
+    private static final ChangeLog changes = new ChangeLog(store, Config.getInt("changes.capacity", 10_000));
+
+    private static final int BULK_BATCH = 1000; // records per store write / response flush
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
 
     public static void main(String[] args) {
         Scanner sc = new Scanner(System.in);
@@ -49,13 +69,22 @@ public class ServerApp {
         // Create and configure server
         SimpleHttpServer srv = new SimpleHttpServer(port, apiKey);
 
-        // Static file endpoints
-        srv.on("GET",  "/static", serveStatic());
-        srv.on("HEAD", "/static", headStatic());
+        // Static file endpoints: /static → index.html, /static/<path> → static.dir (byte ranges supported)
+        StaticFileHandler files = new StaticFileHandler(Paths.get(Config.get("static.dir", "static")), Paths.get("index.html"));
+        srv.on("GET",  "/static", files);
+        srv.on("HEAD", "/static", files);
 
         // Create resource
         srv.on("POST", "/resources", ServerApp::createResource);
 
+        // Bulk ingest / read (NDJSON)
+        srv.on("POST", "/resources/_bulk", ServerApp::bulkCreate, Long.MAX_VALUE); // streamed, never buffered
+        srv.on("GET",  "/resources/_bulk", ServerApp::bulkRead);
+
+        // Change feed (Server-Sent Events) instead of polling the list
+        ChangeFeed feed = new ChangeFeed(changes, Config.getInt("changes.writerThreads", 4));
+        srv.on("GET",  "/resources/_changes", feed::subscribe);
+
         // List resources
         srv.on("GET",  "/resources", ServerApp::listResources);
         srv.on("HEAD", "/resources", ServerApp::headList);
@@ -66,6 +95,96 @@ public class ServerApp {
         srv.on("PUT",    "/resources/", ServerApp::updateResource);
         srv.on("DELETE", "/resources/", ServerApp::deleteResource);
 
+        // Connection timeouts (ms, 0 = off) and header limits (server.* keys in api.properties)
+        srv.setHeaderTimeout(Config.getLong("server.headerTimeoutMs", 10_000));
+        srv.setBodyTimeout(Config.getLong("server.bodyTimeoutMs", 30_000));
+        srv.setWriteTimeout(Config.getLong("server.writeTimeoutMs", 30_000));
+        srv.setKeepAliveTimeout(Config.getLong("server.keepAliveMs", 5_000));
+        srv.setMaxHeaderCount(Config.getInt("server.maxHeaders", 100));
+        srv.setMaxHeaderBytes(Config.getInt("server.maxHeaderBytes", 16 * 1024));
+
+        // Optional CORS for browser dashboards (cors.allowOrigin in api.properties)
+        String corsOrigin = Config.get("cors.allowOrigin", null);
+        if (corsOrigin != null) srv.use(Filters.cors(corsOrigin));
+
+        // Optional traffic capture (capture.* keys in api.properties), replay with TrafficReplay
+        String captureFile = Config.get("capture.file", null);
+        if (captureFile != null) {
+            try {
+                TrafficCapture cap = new TrafficCapture(Paths.get(captureFile),
+                        Config.getDouble("capture.sampleRate", 1.0),
+                        Config.getInt("capture.maxBodyBytes", 64 * 1024),
+                        Config.getInt("capture.queueSize", 10_000));
+                srv.setCapture(cap);
+                Runtime.getRuntime().addShutdownHook(new Thread(cap::close));
+                System.out.println("Capturing traffic to " + captureFile);
+            } catch (IOException e) {
+                System.out.println("Traffic capture disabled: " + e.getMessage());
+            }
+        }
+
+        // Optional replication (replication.* keys): a primary streams its change log to
+        // replicas, which serve reads from their copy and redirect writes to the primary
+        String role = Config.get("replication.role", "").toLowerCase();
+        String replKey = Config.get("replication.key", apiKey);
+        if (role.equals("primary")) {
+            int replPort = Config.getInt("replication.port", 9090);
+            try {
+                ReplicationPrimary primary = new ReplicationPrimary(store, changes,
+                        Config.getInt("replication.window", 10_000), replKey);
+                primary.start(new TcpTransport(), Config.get("replication.bind", null), replPort);
+                srv.on("GET", "/replication", primary::status);
+                System.out.println("Replication primary on port " + replPort);
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Replication disabled: " + e.getMessage());
+            }
+        } else if (role.equals("replica")) {
+            String[] hp = Config.get("replication.primary", "localhost:9090").split(":", 2);
+            ReplicationReplica replica = new ReplicationReplica(store, changes, new TcpTransport(),
+                    hp[0], hp.length > 1 ? Integer.parseInt(hp[1].trim()) : 9090, replKey);
+            replica.start();
+            srv.on("GET", "/replication", replica::status);
+            srv.use(Filters.readOnly(Config.get("replication.primaryUrl", null)));
+            System.out.println("Replica of " + String.join(":", hp));
+        }
+
+        // Liveness for load balancers and the proxy's health checks
+        srv.on("GET", "/health", (req, res) -> {
+            res.setStatus(200, "OK");
+            res.setHeader("Content-Type", "text/plain");
+            res.setHeader("Cache-Control", "no-store");
+            res.writeBody("ok");
+        });
+
+        // Optional reverse proxy (proxy.* keys): everything under proxy.prefix is forwarded
+        // to one of proxy.upstreams, bodies streamed through in both directions
+        String upstreams = Config.get("proxy.upstreams", null);
+        if (upstreams != null) {
+            String prefix = Config.get("proxy.prefix", "/api");
+            ProxyHandler proxy = new ProxyHandler(prefix,
+                    Arrays.stream(upstreams.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList(),
+                    Config.get("proxy.balance", "p2c").equalsIgnoreCase("least")
+                            ? ProxyHandler.Balance.LEAST_OUTSTANDING : ProxyHandler.Balance.P2C,
+                    Config.get("proxy.upstreamKey", null));
+            proxy.setStripPrefix(Boolean.parseBoolean(Config.get("proxy.stripPrefix", "false")));
+            proxy.setTimeouts(Config.getInt("proxy.connectTimeoutMs", 2_000), Config.getInt("proxy.readTimeoutMs", 30_000));
+            String healthPath = Config.get("proxy.healthPath", "/health");
+            if (!healthPath.isEmpty()) proxy.setHealthCheck(healthPath, Config.getLong("proxy.healthIntervalMs", 5_000));
+            for (String m : List.of("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"))
+                srv.on(m, prefix, proxy, Long.MAX_VALUE);     // bodies stream through, never buffered
+            srv.on("GET", "/proxy", proxy::status);
+            proxy.start();
+            System.out.println("Proxying " + prefix + " to " + upstreams);
+        }
+
+        // Optional HTTPS listener (tls.* keys next to apiKey in api.properties)
+        try {
+            SSLContext tls = TlsConfig.serverContext();
+            if (tls != null) srv.enableTls(TlsConfig.port(8443), tls);
+        } catch (Exception e) {
+            System.out.println("TLS disabled: " + e.getMessage());
+        }
+
         // Start server
         try {
             srv.start();
@@ -76,30 +195,6 @@ public class ServerApp {
 
     // ----- Handlers -----
 
-    // GET /static
-    private static RequestHandler serveStatic() {
-        return (req, res) -> {
-            try {
-                byte[] b = Files.readAllBytes(Paths.get("index.html"));
-                res.setStatus(200, "OK");
-                res.setHeader("Content-Type", "text/html");
-                res.writeBody(new String(b));
-            } catch (IOException e) {
-                res.setStatus(404, "Not Found");
-                res.setHeader("Content-Type", "text/plain");
-                res.writeBody("Static file not found");
-            }
-        };
-    }
-
-    // HEAD /static
-    private static RequestHandler headStatic() {
-        return (req, res) -> {
-            res.setStatus(200, "OK");
-            res.setHeader("Content-Type", "text/html");
-        };
-    }
-
     // POST /resources
     private static void createResource(HttpRequest req, HttpResponseWriter res) {
         if (!isJson(req)) { bad(res, "Expected JSON"); return; }
@@ -108,24 +203,109 @@ public class ServerApp {
 
         int id = ids.getAndIncrement();
         store.put(id, data);
+        changes.created(id);
 
         res.setStatus(201, "Created");
         res.setHeader("Content-Type", "application/json");
         res.writeBody("{\"id\":" + id + "}");
     }
 
+    // POST /resources/_bulk – one JSON object per line in, one result line per input line out
+    private static void bulkCreate(HttpRequest req, HttpResponseWriter res) {
+        if (!isJson(req) && !isNdjson(req)) { bad(res, "Expected NDJSON"); return; }
+
+        res.setStatus(200, "OK");
+        res.setHeader("Content-Type", "application/x-ndjson");
+        BufferedReader in = req.getBodyReader();
+        if (in == null) return; // empty body → empty result stream
+
+        List<Map<String, Object>> batch = new ArrayList<>(BULK_BATCH); // null = invalid line
+        int[] lineNos = new int[BULK_BATCH];
+        int lineNo = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) continue;
+                lineNos[batch.size()] = lineNo;
+                batch.add(parseJson(line));
+                if (batch.size() == BULK_BATCH) {
+                    commitBatch(batch, lineNos, res);
+                    res.flush(); // stream results for this batch
+                }
+            }
+        } catch (IOException e) {
+            Logger.log(Logger.Level.WARN, "Bulk ingest aborted at line " + lineNo + ": " + e.getMessage());
+        }
+        commitBatch(batch, lineNos, res);
+    }
+
+    // insert valid records of a batch with a single id reservation, then write per-line results
+    private static void commitBatch(List<Map<String, Object>> batch, int[] lineNos, HttpResponseWriter res) {
+        int valid = 0;
+        for (Map<String, Object> d : batch) if (d != null) valid++;
+        int id = ids.getAndAdd(valid);
+
+        Map<Integer, Map<String, Object>> rows = new HashMap<>(valid * 2);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < batch.size(); i++) {
+            Map<String, Object> d = batch.get(i);
+            sb.append("{\"line\":").append(lineNos[i]);
+            if (d == null) {
+                sb.append(",\"error\":\"Invalid JSON\"}\n");
+            } else {
+                rows.put(id, d);
+                sb.append(",\"id\":").append(id++).append("}\n");
+            }
+        }
+        store.putAll(rows);
+        for (int created = id - valid; created < id; created++) changes.created(created);
+        res.writeBody(sb.toString());
+        batch.clear();
+    }
+
+    // GET /resources/_bulk?ids=1,2,3 – one JSON object (or error) per requested id
+    private static void bulkRead(HttpRequest req, HttpResponseWriter res) {
+        String idList = queryParam(req.getPath(), "ids");
+        if (idList == null || idList.isBlank()) { bad(res, "Missing ids"); return; }
+
+        res.setStatus(200, "OK");
+        res.setHeader("Content-Type", "application/x-ndjson");
+        String[] parts = idList.replace("%2C", ",").replace("%2c", ",").split(",");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            String p = parts[i].trim();
+            int id;
+            try { id = Integer.parseInt(p); } catch (NumberFormatException e) { id = -1; }
+
+            if (id > 0 && store.appendJson(id, sb)) {
+                sb.append("\n");
+            } else if (id > 0) {
+                sb.append("{\"id\":").append(id).append(",\"error\":\"Not Found\"}\n");
+            } else {
+                sb.append("{\"id\":");
+                Json.quote(sb, p).append(",\"error\":\"Invalid ID\"}\n"); // echoed input, escaped
+            }
+            if ((i + 1) % BULK_BATCH == 0) {
+                res.writeBody(sb.toString());
+                sb.setLength(0);
+                res.flush();
+            }
+        }
+        res.writeBody(sb.toString());
+    }
+
     // GET /resources
     private static void listResources(HttpRequest req, HttpResponseWriter res) {
         res.setStatus(200, "OK");
         res.setHeader("Content-Type", "application/json");
 
         StringBuilder sb = new StringBuilder("[");
-        boolean first = true;
-        for (var e : store.entrySet()) {
-            if (!first) sb.append(",");
-            first = false;
-            sb.append(toJson(e.getKey(), e.getValue()));
-        }
+        store.forEachId(id -> {
+            int mark = sb.length();
+            if (sb.length() > 1) sb.append(",");
+            if (!store.appendJson(id, sb)) sb.setLength(mark); // deleted meanwhile
+        });
         sb.append("]");
         res.writeBody(sb.toString());
     }
@@ -141,20 +321,23 @@ public class ServerApp {
         int id = parseId(req.getPath());
         if (id <= 0) { bad(res, "Invalid ID"); return; }
 
-        Map<String, Object> data = store.get(id);
-        if (data == null) {
+        StringBuilder sb = new StringBuilder();
+        if (!store.appendJson(id, sb)) {
             res.setStatus(404, "Not Found");
             return;
         }
+        String json = sb.toString();
+        res.setHeader("Cache-Control", "no-cache"); // mutable: clients revalidate every time
+        if (notModified(req, res, "\"" + Integer.toHexString(json.hashCode()) + "-" + Integer.toHexString(json.length()) + "\"", -1)) return;
         res.setStatus(200, "OK");
         res.setHeader("Content-Type", "application/json");
-        res.writeBody(toJson(id, data));
+        res.writeBody(json);
     }
 
     // HEAD /resources/{id}
     private static void headResource(HttpRequest req, HttpResponseWriter res) {
         int id = parseId(req.getPath());
-        if (id <= 0 || !store.containsKey(id)) {
+        if (id <= 0 || !store.contains(id)) {
             res.setStatus(404, "Not Found");
             return;
         }
@@ -166,13 +349,14 @@ public class ServerApp {
     private static void updateResource(HttpRequest req, HttpResponseWriter res) {
         int id = parseId(req.getPath());
         if (id <= 0)               { bad(res, "Invalid ID"); return; }
-        if (!store.containsKey(id)) { res.setStatus(404, "Not Found"); return; }
+        if (!store.contains(id))    { res.setStatus(404, "Not Found"); return; }
         if (!isJson(req))           { bad(res, "Expected JSON"); return; }
 
         Map<String, Object> data = parseJson(req.getBody());
         if (data == null) { bad(res, "Invalid JSON"); return; }
 
         store.put(id, data);
+        changes.updated(id);
         res.setStatus(200, "OK");
         res.setHeader("Content-Type", "application/json");
         res.writeBody("{\"status\":\"updated\"}");
@@ -182,10 +366,11 @@ public class ServerApp {
     private static void deleteResource(HttpRequest req, HttpResponseWriter res) {
         int id = parseId(req.getPath());
         if (id <= 0)               { bad(res, "Invalid ID"); return; }
-        if (store.remove(id) == null) {
+        if (!store.remove(id)) {
             res.setStatus(404, "Not Found");
             return;
         }
+        changes.deleted(id);
         res.setStatus(200, "OK");
         res.setHeader("Content-Type", "application/json");
         res.writeBody("{\"status\":\"deleted\"}");
@@ -193,6 +378,32 @@ public class ServerApp {
 
     // ----- Helpers -----
 
+    // sets ETag / Last-Modified; answers 304 when the client's copy is current (RFC 9110 §13)
+    static boolean notModified(HttpRequest req, HttpResponseWriter res, String etag, long lastModified) {
+        res.setHeader("ETag", etag);
+        long lm = lastModified / 1000 * 1000; // HTTP dates have second precision
+        if (lastModified >= 0) res.setHeader("Last-Modified", HTTP_DATE.format(Instant.ofEpochMilli(lm)));
+
+        String inm = req.getHeaders().get("If-None-Match");
+        String ims = req.getHeaders().get("If-Modified-Since");
+        boolean match;
+        if (inm != null) {
+            match = inm.trim().equals("*") || Arrays.stream(inm.split(","))
+                    .map(t -> t.trim().replaceFirst("^W/", ""))
+                    .anyMatch(etag::equals);
+        } else if (ims != null && lastModified >= 0) {
+            try {
+                match = lm <= ZonedDateTime.parse(ims.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                match = false;
+            }
+        } else {
+            match = false;
+        }
+        if (match) res.setStatus(304, "Not Modified");
+        return match;
+    }
+
     private static void bad(HttpResponseWriter r, String m) {
         r.setStatus(400, "Bad Request");
         r.setHeader("Content-Type", "text/plain");
@@ -204,6 +415,22 @@ public class ServerApp {
         return ct.contains("application/json");
     }
 
+    private static boolean isNdjson(HttpRequest r) {
+        String ct = r.getHeaders().getOrDefault("Content-Type", "").toLowerCase();
+        return ct.contains("ndjson");
+    }
+
+    // value of `name` in the query string of a raw request path, or null
+    private static String queryParam(String path, String name) {
+        int q = path.indexOf('?');
+        if (q < 0) return null;
+        for (String pair : path.substring(q + 1).split("&")) {
+            String[] kv = pair.split("=", 2);
+            if (kv[0].equals(name)) return kv.length > 1 ? kv[1] : "";
+        }
+        return null;
+    }
+
     private static int parseId(String path) {
         try {
             return Integer.parseInt(path.replaceFirst("^/resources/", ""));
@@ -212,7 +439,7 @@ public class ServerApp {
         }
     }
 
-    private static Map<String, Object> parseJson(String j) {
+    static Map<String, Object> parseJson(String j) {
         try {
             Map<String, Object> m = new HashMap<>();
             String in = j.trim();
@@ -235,14 +462,4 @@ public class ServerApp {
             return null;
         }
     }
-
-    private static String toJson(int id, Map<String, Object> d) {
-        StringBuilder sb = new StringBuilder("{\"id\":").append(id);
-        d.forEach((k, v) -> {
-            sb.append(",\"").append(k).append("\":");
-            sb.append(v instanceof Number ? v : ("\"" + v + "\""));
-        });
-        sb.append("}");
-        return sb.toString();
-    }
 }
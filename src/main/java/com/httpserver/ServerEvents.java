@@ -0,0 +1,73 @@
+package main.java.com.httpserver;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// Flight Recorder events for the phases of a server request. Call sites follow one
+// pattern: new + begin() before the phase, end() after, and only if shouldCommit()
+// fill in the fields and commit(). With the event disabled shouldCommit() is a
+// constant false, so the strings are never touched and the JIT drops the allocation.
+// Enable / threshold them per name in a .jfc file (see http.jfc); without one they
+// record phases slower than 10 ms.
+final class ServerEvents {
+
+    private ServerEvents() { }
+
+    @Category({ "HTTP", "Server" })
+    @StackTrace(false)
+    @Threshold("10 ms")
+    abstract static class Phase extends Event {
+        @Label("Method") String method;
+        @Label("Route") @Description("Matched route key, e.g. \"GET /resources/\"") String route;
+        @Label("Status") int status;
+    }
+
+    @Name("http.server.Accept")
+    @Label("HTTP Accept")
+    @Description("Accepted socket until the connection is ready for requests (thread start, TLS handshake)")
+    @Category({ "HTTP", "Server" })
+    @StackTrace(false)
+    @Threshold("10 ms")
+    static final class Accept extends Event {
+        @Label("Remote Address") String remoteAddress;
+        @Label("TLS") boolean tls;
+        @Label("ALPN") String alpn;
+    }
+
+    @Name("http.server.Parse")
+    @Label("HTTP Parse")
+    @Description("Request line and headers (HTTP/1.1), or decoded HEADERS into a request (HTTP/2)")
+    static final class Parse extends Phase {
+        @Label("Path") String path;
+    }
+
+    @Name("http.server.Auth")
+    @Label("HTTP Auth")
+    @Description("API key check")
+    static final class Auth extends Phase {
+        @Label("Allowed") boolean allowed;
+    }
+
+    @Name("http.server.Route")
+    @Label("HTTP Route")
+    @Description("Route lookup for the request path")
+    static final class Route extends Phase { }
+
+    @Name("http.server.Handler")
+    @Label("HTTP Handler")
+    @Description("The route's handler, without filters; includes body reads and streamed flushes")
+    static final class Handler extends Phase { }
+
+    @Name("http.server.Send")
+    @Label("HTTP Send")
+    @Description("Final send() of the response (head and whatever was still buffered)")
+    static final class Send extends Phase {
+        @Label("Body Bytes") @DataAmount long bytes;
+    }
+}
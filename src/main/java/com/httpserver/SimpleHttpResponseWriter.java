@@ -1,52 +1,49 @@
 package main.java.com.httpserver;
 
-import java.io.PrintWriter;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
-// HTTP/1.1 response assembler that writes directly to a socket PrintWriter.
-// No chunked encoding, sends Content-Length and flushes once in send().
-public class SimpleHttpResponseWriter implements HttpResponseWriter {
+// HTTP/1.1 response assembler that writes directly to the socket stream.
+// Buffers the body and sends Content-Length in send(); once flush() is called
+// the response switches to chunked encoding and each flush emits one chunk,
+// unless the handler declared Content-Length (then the bytes go out as they are).
+public class SimpleHttpResponseWriter extends BufferedResponseWriter {
 
-    private final PrintWriter out;                 // underlying socket writer
-    private int statusCode = 200;                  // default status
-    private String statusMessage = "OK";           // default reason phrase
-    private final Map<String,String> headers = new HashMap<>(); // response headers
-    private final StringBuilder body = new StringBuilder();     // body buffer
+    private final OutputStream out;                // underlying socket stream
+    private boolean chunked;                       // body framed as chunks
 
-    public SimpleHttpResponseWriter(PrintWriter out) {
+    public SimpleHttpResponseWriter(OutputStream out) {
         this.out = out;
     }
 
-    // --- HttpResponseWriter impl -----------------------------------------
-
-    @Override public void setStatus(int c, String m) {
-        statusCode = c;
-        statusMessage = m;
-    }
-
-    @Override public void setHeader(String n, String v) {
-        headers.put(n, v);
-    }
-
-    @Override public void writeBody(String data) {
-        body.append(data);
+    // status line + headers + blank line
+    @Override protected void writeHead(boolean streaming) throws IOException {
+        if (streaming && !headers.containsKey("Content-Length")) {
+            // length is unknown from here on → frame the body as chunks
+            headers.put("Transfer-Encoding", "chunked");
+            chunked = true;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("HTTP/1.1 ").append(statusCode).append(' ').append(statusMessage).append("\r\n");
+        headers.forEach((k, v) -> sb.append(k).append(": ").append(v).append("\r\n"));
+        moreHeaders.forEach(e -> sb.append(e.getKey()).append(": ").append(e.getValue()).append("\r\n"));
+        sb.append("\r\n"); // blank line separates headers from body
+        out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
     }
 
-    @Override public void send() {
-        String b = body.toString();
-
-        // ensure Content-Length is present so clients know when body ends
-        headers.putIfAbsent("Content-Length", String.valueOf(b.getBytes().length));
-
-        // status line
-        out.print("HTTP/1.1 " + statusCode + " " + statusMessage + "\r\n");
-
-        // headers (one per line)
-        headers.forEach((k, v) -> out.print(k + ": " + v + "\r\n"));
-
-        out.print("\r\n"); // blank line separates headers from body
-        out.print(b);        // actual body
-        out.flush();         // push everything to client
+    @Override protected void writeData(byte[] data, boolean last) throws IOException {
+        if (!chunked) {
+            out.write(data);  // actual body
+        } else {
+            if (data.length > 0) { // a zero-size chunk would end the body
+                out.write((Integer.toHexString(data.length) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                out.write(data);
+                out.write('\r');
+                out.write('\n');
+            }
+            if (last) out.write("0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1)); // last-chunk
+        }
+        out.flush();          // push everything to client
     }
 }
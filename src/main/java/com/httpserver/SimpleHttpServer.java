@@ -1,15 +1,28 @@
 package main.java.com.httpserver;
 
-import java.io.BufferedReader;
+import main.java.com.common.ChunkedInputStream;
+import main.java.com.common.FixedLengthInputStream;
+import main.java.com.common.HttpIo;
+import main.java.com.common.TcpTransport;
+import main.java.com.common.TlsConnection;
+import main.java.com.common.Transport;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.net.ssl.SSLContext;
 
 
 public class SimpleHttpServer {
@@ -17,6 +30,29 @@ public class SimpleHttpServer {
     private final int port;                               // TCP port to listen on
     private final String expectedApiKey;                   // null ⇒ auth disabled
     private final Map<String,RequestHandler> routes = new HashMap<>(); // "METHOD path" → handler
+    private final Map<String,Long> bodyLimits = new HashMap<>();       // per-route body limit overrides
+
+    private SSLContext tlsContext;                        // null ⇒ no HTTPS listener
+    private int tlsPort;                                  // HTTPS port (same handlers)
+    private volatile Transport transport = new TcpTransport(); // sockets, or in-process pipes
+    private final List<Transport.Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean stopped;
+
+    private final List<Filter> globalFilters = new ArrayList<>();          // every request, in order
+    private final Map<String,List<Filter>> routeFilters = new HashMap<>(); // "METHOD path" → extra filters
+    private volatile Compiled compiled;                   // routes + chains, rebuilt after changes
+    private volatile TrafficCapture capture;              // null ⇒ no traffic capture
+
+    private int maxHeaderBytes = 16 * 1024;               // request line + headers (→ 414 / 431)
+    private int maxHeaderCount = 100;                     // header fields per request (→ 431)
+    private long maxBodyBytes  = 8L * 1024 * 1024;        // default body limit (→ 413)
+
+    // connection timeouts in ms (0 = none); expiry closes the socket
+    private long headerTimeout    = 10_000;               // request line + headers, start to end (slowloris)
+    private long bodyTimeout      = 30_000;               // longest wait for request body bytes
+    private long writeTimeout     = 30_000;               // longest blocked write (client not reading)
+    private long keepAliveTimeout = 5_000;                // idle wait for the next request (0 = one request per connection)
+    private final HashedWheelTimer timer = new HashedWheelTimer(100, 512);
 
     public SimpleHttpServer(int port, String expectedApiKey) {
         this.port = port;
@@ -24,99 +60,417 @@ public class SimpleHttpServer {
     }
 
     // register handler for exact METHOD + path prefix
-    public void on(String method, String path, RequestHandler handler) {
+    public synchronized void on(String method, String path, RequestHandler handler) {
         routes.put(method.toUpperCase() + " " + path, handler);
+        compiled = null;
+    }
+
+    // register handler with its own body size limit (e.g. streaming bulk endpoints)
+    public synchronized void on(String method, String path, RequestHandler handler, long maxBodyBytes) {
+        on(method, path, handler);
+        bodyLimits.put(method.toUpperCase() + " " + path, maxBodyBytes);
+    }
+
+    // filter for every request, in registration order; runs before the API key check,
+    // so CORS preflights, rate limits and metrics also see unauthenticated traffic
+    public synchronized void use(Filter filter) {
+        globalFilters.add(filter);
+        compiled = null;
+    }
+
+    // filter for one route only, runs after the global ones and the API key check
+    public synchronized void use(String method, String path, Filter filter) {
+        routeFilters.computeIfAbsent(method.toUpperCase() + " " + path, k -> new ArrayList<>()).add(filter);
+        compiled = null;
     }
 
-    // blocking accept loop (spawns new thread per connection)
+    public void setMaxHeaderBytes(int maxHeaderBytes) { this.maxHeaderBytes = maxHeaderBytes; }
+    public void setMaxHeaderCount(int maxHeaderCount) { this.maxHeaderCount = maxHeaderCount; }
+    public synchronized void setMaxBodyBytes(long maxBodyBytes) { this.maxBodyBytes = maxBodyBytes; compiled = null; }
+
+    public void setHeaderTimeout(long ms)    { this.headerTimeout = ms; }
+    public void setBodyTimeout(long ms)      { this.bodyTimeout = ms; }
+    public void setWriteTimeout(long ms)     { this.writeTimeout = ms; }
+    public void setKeepAliveTimeout(long ms) { this.keepAliveTimeout = ms; }
+
+    // append sampled exchanges to a JSONL file (null turns capture off)
+    public void setCapture(TrafficCapture capture)    { this.capture = capture; }
+
+    // serve the same routes over TLS on a second port (ALPN picks h2 or http/1.1)
+    public void enableTls(int tlsPort, SSLContext ctx) {
+        this.tlsPort = tlsPort;
+        this.tlsContext = ctx;
+    }
+
+    // accept connections through another transport, e.g. a MemoryTransport shared with an
+    // in-process SimpleHttpClient; set before start()
+    public void setTransport(Transport transport) { this.transport = transport; }
+
+    // blocking accept loop (spawns new thread per connection); HTTPS listener runs on its own thread
     public void start() throws IOException {
-        try (ServerSocket ss = new ServerSocket(port)) {
+        compile();
+        if (tlsContext != null) {
+            Transport.Listener tss = listen(tlsPort);
+            System.out.println("TLS listening on " + tlsPort);
+            Logger.log(Logger.Level.INFO, "TLS listener started on port " + tlsPort);
+            new Thread(() -> acceptLoop(tss, true)).start();
+        }
+        try (Transport.Listener ss = listen(port)) {
             System.out.println("Server listening on " + port);
             Logger.log(Logger.Level.INFO, "Server started on port " + port);
+            acceptLoop(ss, false);
+        }
+    }
+
+    // stop accepting (start() returns); connections already open run to completion
+    public void stop() {
+        stopped = true;
+        for (Transport.Listener l : listeners) {
+            try { l.close(); } catch (IOException ignored) { }
+        }
+    }
+
+    private Transport.Listener listen(int port) throws IOException {
+        Transport.Listener l = transport.listen(port);
+        listeners.add(l);
+        if (stopped) l.close();
+        return l;
+    }
+
+    private void acceptLoop(Transport.Listener ss, boolean tls) {
+        try (ss) {
             while (true) {
-                Socket s = ss.accept();
-                Logger.log(Logger.Level.INFO, "Accepted connection from " + s.getInetAddress());
-                new Thread(() -> handleClient(s)).start();
+                Transport.Connection s = ss.accept();
+                ServerEvents.Accept accepted = new ServerEvents.Accept();
+                accepted.begin();
+                Logger.log(Logger.Level.INFO, "Accepted connection from " + s.getRemoteAddress());
+                new Thread(() -> handleClient(s, tls, accepted)).start();
             }
+        } catch (IOException e) {
+            if (!stopped) e.printStackTrace();
         }
     }
 
-    // per-client handling: parse, auth, routing, method checks, response
-    private void handleClient(Socket socket) {
-        try (socket;
-             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-             PrintWriter out = new PrintWriter(socket.getOutputStream(), true)) {
-
-            HttpRequest request = parseRequest(in);
-            if (request == null) return; // malformed → drop
-
-            String method = request.getMethod().toUpperCase();
-            String path   = request.getPath();
-            String incoming = method + " " + path;
-
-            // API key check
-            if (expectedApiKey != null) {
-                String provided = request.getHeaders().entrySet().stream()
-                        .filter(e -> e.getKey().equalsIgnoreCase("X-API-Key"))
-                        .map(Map.Entry::getValue)
-                        .findFirst().orElse("");
-                if (!expectedApiKey.equals(provided)) {
-                    out.print("HTTP/1.1 401 Unauthorized\r\n");
-                    out.print("WWW-Authenticate: ApiKey realm=\"SimpleServer\"\r\n");
-                    out.print("Content-Length: 0\r\n\r\n");
-                    out.flush();
-                    return;
-                }
+    // per-client handling: TLS handshake if needed, then HTTP/1.1 (or HTTP/2) on the resulting streams;
+    // the connection's deadline closes the socket when a phase takes too long. A detached
+    // HTTP/1.1 response takes the connection over, and closes it when it ends.
+    private void handleClient(Transport.Connection socket, boolean tls, ServerEvents.Accept accepted) {
+        HashedWheelTimer.Deadline deadline = timer.newDeadline(phase -> {
+            Logger.log(Logger.Level.INFO, "Closing connection from " + socket.getRemoteAddress() + ": " + phase + " timeout");
+            closeQuietly(socket);
+        });
+        boolean handedOff = false;
+        try {
+            InputStream rawIn = socket.getInputStream();
+            OutputStream rawOut = new TimedOutputStream(socket.getOutputStream(), deadline, writeTimeout);
+            String alpn = null;
+            TlsConnection conn = null;
+            if (tls) {
+                long t0 = System.nanoTime();
+                deadline.armRead(headerTimeout, "TLS handshake");
+                conn = TlsConnection.server(tlsContext, rawIn, rawOut, "h2", "http/1.1");
+                conn.handshake();
+                alpn = conn.getApplicationProtocol();
+                Logger.log(Logger.Level.DEBUG, String.format("TLS handshake %.2f ms (%s, alpn=%s)",
+                        (System.nanoTime() - t0) / 1e6, conn.getSession().getProtocol(), alpn));
+                rawIn = conn.getInputStream();
+                rawOut = conn.getOutputStream();
+            }
+            accepted.end();
+            if (accepted.shouldCommit()) {
+                accepted.remoteAddress = socket.getRemoteAddress();
+                accepted.tls = tls;
+                accepted.alpn = alpn;
+                accepted.commit();
             }
+            TlsConnection tlsConn = conn;
+            Runnable release = () -> {
+                deadline.cancel();
+                if (tlsConn != null) tlsConn.close(); // close_notify
+                closeQuietly(socket);
+            };
+            handedOff = serveConnection(new HttpIo.LineBufferedInputStream(rawIn), new BufferedOutputStream(rawOut),
+                    tls, alpn, deadline, release);
+            if (!handedOff && conn != null) conn.close(); // close_notify
+        } catch (Exception e) {
+            if (!deadline.isExpired()) e.printStackTrace(); // timeouts are logged by the deadline
+        } finally {
+            if (!handedOff) {
+                deadline.cancel();
+                closeQuietly(socket);
+            }
+        }
+    }
 
-            // find matching handler by longest prefix
-            RequestHandler handler = null;
-            int bestLen = -1;
-            for (var e : routes.entrySet()) {
-                String key = e.getKey();
-                if (incoming.startsWith(key) && key.length() > bestLen) {
-                    bestLen = key.length();
-                    handler = e.getValue();
-                }
+    private static void closeQuietly(Transport.Connection socket) {
+        try { socket.close(); } catch (IOException ignored) { }
+    }
+
+    // HTTP/1.1 keep-alive loop: the idle timeout runs until the first byte of a request,
+    // the header timeout from there to the end of its head. Returns true if a detached
+    // response now owns the connection (release ends it). h2c – prior knowledge or Upgrade –
+    // is cleartext only (RFC 9113 §3.1); over TLS HTTP/2 comes solely from ALPN.
+    private boolean serveConnection(InputStream in, OutputStream out, boolean tls, String alpn,
+                                    HashedWheelTimer.Deadline deadline, Runnable release) throws IOException {
+        boolean handedOff = false;
+        try {
+            // HTTP/2 chosen during the TLS handshake: the client starts with the full preface
+            if ("h2".equals(alpn)) {
+                new Http2ServerSession(this, in, out, deadline, keepAliveTimeout).serveNegotiated();
+                return false;
             }
 
-            SimpleHttpResponseWriter resp = new SimpleHttpResponseWriter(out);
-            if (handler != null) {
-                handler.handle(request, resp);
-                resp.send();
-            } else {
-                // method not allowed?
-                Set<String> allowed = new HashSet<>();
-                for (String key : routes.keySet()) {
-                    String routePath = key.substring(key.indexOf(' ') + 1);
-                    if (path.startsWith(routePath)) {
-                        allowed.add(key.split(" ")[0]);
+            for (boolean first = true; ; first = false) {
+                if (!first) {
+                    deadline.armRead(keepAliveTimeout, "keep-alive idle");
+                    in.mark(1);
+                    if (in.read() == -1) return false; // client closed between requests
+                    in.reset();
+                }
+                deadline.armRead(headerTimeout, "header");
+
+                HttpRequest request;
+                ServerEvents.Parse parsed = new ServerEvents.Parse();
+                parsed.begin();
+                try {
+                    request = parseRequest(in, out, deadline);
+                } catch (HttpStatusException e) {
+                    sendError(out, e); // oversized or malformed head → reject before routing
+                    return false;
+                }
+                if (request == null) return false; // malformed → drop
+                parsed(parsed, request);
+
+                if (first && !tls) {
+                    // h2c with prior knowledge: the preface starts like a request line
+                    if (request.getMethod().equals("PRI") && request.getPath().equals("*")) {
+                        new Http2ServerSession(this, in, out, deadline, keepAliveTimeout).serve();
+                        return false;
+                    }
+                    // h2c via Upgrade: answer 101, then this request becomes stream 1
+                    if (isH2cUpgrade(request)) {
+                        out.write(("HTTP/1.1 101 Switching Protocols\r\n"
+                                + "Connection: Upgrade\r\nUpgrade: h2c\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                        out.flush();
+                        new Http2ServerSession(this, in, out, deadline, keepAliveTimeout)
+                                .serveUpgrade(request, request.getHeaders().get("HTTP2-Settings"));
+                        return false;
                     }
                 }
-                if (!allowed.isEmpty()) {
-                    // 405 Method Not Allowed
-                    out.print("HTTP/1.1 405 Method Not Allowed\r\n");
-                    out.print("Allow: " + String.join(", ", allowed) + "\r\n");
-                    out.print("Content-Length: 0\r\n\r\n");
-                    out.flush();
-                } else {
-                    // 404 Not Found
-                    resp.setStatus(404, "Not Found");
-                    resp.setHeader("Content-Type", "text/plain");
-                    resp.writeBody("404 Not Found");
-                    resp.send();
+                deadline.disarmRead(); // the body stream arms its own timeout per read
+
+                boolean keepAlive = keepAlive(request);
+                SimpleHttpResponseWriter resp = new SimpleHttpResponseWriter(out);
+                if (!keepAlive) resp.setHeader("Connection", "close");
+                resp.setOnRelease(release);
+                dispatch(request, resp);
+                if (resp.isDetached()) return handedOff = true; // e.g. an event stream: release() closes
+                if (!keepAlive || "close".equalsIgnoreCase(resp.getHeader("Connection"))
+                        || !drainBody(request)) return false;
+            }
+        } finally {
+            if (!handedOff) {
+                try { in.close(); } catch (IOException ignored) { }
+                out.close();
+            }
+        }
+    }
+
+    // persistent unless HTTP/1.0, "Connection: close", or a 100-continue body we may never have asked for
+    private boolean keepAlive(HttpRequest req) {
+        Map<String,String> h = req.getHeaders();
+        return keepAliveTimeout > 0
+                && "HTTP/1.1".equals(req.getVersion())
+                && !h.getOrDefault("Connection", "").toLowerCase().contains("close")
+                && !(req.getBodyStream() != null && "100-continue".equalsIgnoreCase(h.getOrDefault("Expect", "")));
+    }
+
+    // skip what the handler left of the body so the next request starts on a boundary;
+    // false (→ close) if that is more than a small remainder or fails
+    private static boolean drainBody(HttpRequest req) {
+        InputStream body = req.getBodyStream();
+        if (body == null) return true;
+        try {
+            byte[] buf = new byte[8192];
+            long left = 64 * 1024;
+            int n;
+            while ((n = body.read(buf)) != -1) {
+                if ((left -= n) < 0) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // shared by HTTP/1.1 and HTTP/2; sampled exchanges are recorded after the response went out
+    void dispatch(HttpRequest request, BufferedResponseWriter resp) {
+        TrafficCapture cap = capture;
+        if (cap == null || !cap.sample()) {
+            route(request, resp);
+            return;
+        }
+        long start = System.currentTimeMillis(), t0 = System.nanoTime();
+        TrafficCapture.Tee body = cap.tee(request);
+        try {
+            route(request, resp);
+        } finally {
+            cap.record(start, request, body, resp.getStatus(), resp.getBytesSent(), System.nanoTime() - t0);
+        }
+    }
+
+    // longest-prefix route → its precompiled chain; body limits; the final send
+    private void route(HttpRequest request, BufferedResponseWriter resp) {
+        String incoming = request.getMethod().toUpperCase() + " " + request.getPath();
+        Compiled c = compiled;
+        if (c == null) c = compile();
+
+        ServerEvents.Route routed = new ServerEvents.Route();
+        routed.begin();
+        Route match = null;
+        for (Route r : c.routes) {                    // longest key first → first hit wins
+            if (incoming.startsWith(r.key)) { match = r; break; }
+        }
+        if (match != null) request.setRoute(match.key);
+        routed.end();
+        if (routed.shouldCommit()) {
+            routed.method = request.getMethod();
+            routed.route = request.getRoute();
+            routed.commit();
+        }
+
+        try {
+            if (match != null) {
+                limitBody(request, match.maxBodyBytes);
+                match.chain.handle(request, resp);
+            } else {
+                c.fallback.handle(request, resp);     // global filters, then 404 / 405
+            }
+        } catch (HttpStatusException e) {
+            reject(resp, e);
+            return;
+        } catch (UncheckedIOException e) {
+            // limit hit while the handler buffered the body → reject if nothing sent yet
+            if (!(e.getCause() instanceof HttpStatusException) || resp.isCommitted()) throw e;
+            reject(resp, (HttpStatusException) e.getCause());
+            return;
+        }
+        if (!resp.isDetached()) send(request, resp); // no-op if a filter already sent it; detached → the handler ends it
+    }
+
+    // the final send, as an http.server.Send event
+    private static void send(HttpRequest request, BufferedResponseWriter resp) {
+        ServerEvents.Send sent = new ServerEvents.Send();
+        long before = resp.getBytesSent();
+        sent.begin();
+        resp.send();
+        sent.end();
+        if (sent.shouldCommit()) {
+            sent.method = request.getMethod();
+            sent.route = request.getRoute();
+            sent.status = resp.getStatus();
+            sent.bytes = resp.getBytesSent() - before;
+            sent.commit();
+        }
+    }
+
+    // shared with the HTTP/2 session, which parses HEADERS itself
+    static void parsed(ServerEvents.Parse parsed, HttpRequest request) {
+        parsed.end();
+        if (parsed.shouldCommit()) {
+            parsed.method = request.getMethod();
+            parsed.path = request.getPath();
+            parsed.commit();
+        }
+    }
+
+    // terminal of the fallback chain: 405 with Allow if the path exists for other methods, else 404
+    private void notFound(HttpRequest request, HttpResponseWriter resp) {
+        String path = request.getPath();
+        Set<String> allowed = new HashSet<>();
+        for (String key : routes.keySet()) {
+            String routePath = key.substring(key.indexOf(' ') + 1);
+            if (path.startsWith(routePath)) {
+                allowed.add(key.split(" ")[0]);
+            }
+        }
+        if (!allowed.isEmpty()) {
+            // 405 Method Not Allowed
+            resp.setStatus(405, "Method Not Allowed");
+            resp.setHeader("Allow", String.join(", ", allowed));
+        } else {
+            // 404 Not Found
+            resp.setStatus(404, "Not Found");
+            resp.setHeader("Content-Type", "text/plain");
+            resp.writeBody("404 Not Found");
+        }
+    }
+
+    // ----- filter pipeline -----
+
+    private record Route(String key, RequestHandler chain, long maxBodyBytes) { }
+    private record Compiled(Route[] routes, RequestHandler fallback) { }
+
+    // Bind every route's filters into one pre-built handler, once: request log, global
+    // filters, API key check, route filters, then the handler. Requests then make a fixed
+    // sequence of calls – no per-request chain objects and no filter list to walk.
+    private synchronized Compiled compile() {
+        if (compiled != null) return compiled;
+        List<Filter> base = new ArrayList<>();
+        base.add(Filters.requestLog());
+        base.addAll(globalFilters);
+        if (expectedApiKey != null) base.add(Filters.apiKey(expectedApiKey));
+
+        List<Route> list = new ArrayList<>();
+        for (var e : routes.entrySet()) {
+            List<Filter> fs = new ArrayList<>(base);
+            fs.addAll(routeFilters.getOrDefault(e.getKey(), List.of()));
+            list.add(new Route(e.getKey(), chain(fs, timed(e.getValue())),
+                    bodyLimits.getOrDefault(e.getKey(), maxBodyBytes)));
+        }
+        list.sort((a, b) -> b.key.length() - a.key.length());
+        compiled = new Compiled(list.toArray(new Route[0]), chain(base, this::notFound));
+        return compiled;
+    }
+
+    // the handler itself, without filters, as an http.server.Handler event
+    private static RequestHandler timed(RequestHandler handler) {
+        return (req, res) -> {
+            ServerEvents.Handler handled = new ServerEvents.Handler();
+            handled.begin();
+            try {
+                handler.handle(req, res);
+            } finally {
+                handled.end();
+                if (handled.shouldCommit()) {
+                    handled.method = req.getMethod();
+                    handled.route = req.getRoute();
+                    handled.status = res instanceof BufferedResponseWriter b ? b.getStatus() : 0;
+                    handled.commit();
                 }
             }
+        };
+    }
 
-            Logger.log(Logger.Level.DEBUG, "Handled " + method + " " + path);
-        } catch (Exception e) {
-            e.printStackTrace();
+    private static RequestHandler chain(List<Filter> filters, RequestHandler terminal) {
+        RequestHandler next = terminal;
+        for (int i = filters.size() - 1; i >= 0; i--) {
+            Filter f = filters.get(i);
+            RequestHandler n = next;
+            next = (req, res) -> f.filter(req, res, n);
         }
+        return next;
     }
 
-    // parse start-line, headers, and optional body into HttpRequest
-    private HttpRequest parseRequest(BufferedReader in) throws IOException {
-        String line = in.readLine();
+    // parse start-line and headers into HttpRequest; the body stays on the wire
+    private HttpRequest parseRequest(InputStream in, OutputStream out, HashedWheelTimer.Deadline deadline)
+            throws IOException {
+        String line;
+        try {
+            line = HttpIo.readLine(in, maxHeaderBytes);
+        } catch (HttpIo.LineTooLongException e) {
+            throw new HttpStatusException(414, "URI Too Long");
+        }
         if (line == null || line.isEmpty()) return null;
         String[] p = line.split(" ");
         if (p.length < 3) return null;
@@ -124,25 +478,192 @@ public class SimpleHttpServer {
         HttpRequest req = new HttpRequest();
         req.setMethod(p[0]);
         req.setPath(p[1]);
+        req.setVersion(p[2]);
 
-        Map<String,String> headers = new HashMap<>();
-        while ((line = in.readLine()) != null && !line.isEmpty()) {
-            int idx = line.indexOf(':');
-            if (idx > 0) {
-                String name = line.substring(0, idx).trim();
-                String val  = line.substring(idx+1).trim();
-                headers.put(name, val);
+        Map<String,String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        int budget = maxHeaderBytes - line.length();
+        try {
+            while ((line = HttpIo.readLine(in, Math.max(budget, 1))) != null && !line.isEmpty()) {
+                budget -= line.length() + 2;
+                if (headers.size() >= maxHeaderCount) {
+                    throw new HttpStatusException(431, "Request Header Fields Too Large");
+                }
+                int idx = line.indexOf(':');
+                if (idx > 0) {
+                    String name = line.substring(0, idx).trim();
+                    String val  = line.substring(idx+1).trim();
+                    headers.put(name, val);
+                }
             }
+        } catch (HttpIo.LineTooLongException e) {
+            throw new HttpStatusException(431, "Request Header Fields Too Large");
         }
         req.setHeaders(headers);
+        if (!req.getMethod().equals("PRI")) frameBody(req, in, out, deadline);
+        return req;
+    }
 
-        int len = headers.getOrDefault("Content-Length", "0").isEmpty() ? 0 :
-                Integer.parseInt(headers.getOrDefault("Content-Length", "0"));
-        if (len > 0) {
-            char[] buf = new char[len];
-            in.read(buf);
-            req.setBody(new String(buf));
+    // frame the body (chunked or Content-Length) and defer "100 Continue" until the handler reads
+    private void frameBody(HttpRequest req, InputStream in, OutputStream out, HashedWheelTimer.Deadline deadline)
+            throws IOException {
+        Map<String,String> h = req.getHeaders();
+        InputStream body;
+        if (h.containsKey("Transfer-Encoding")) {
+            // both framings: a proxy in front may have used the other one (request smuggling,
+            // RFC 9112 §6.1) → reject, and the connection is closed after the error
+            if (h.containsKey("Content-Length")) throw new HttpStatusException(400, "Bad Request");
+            if (!h.get("Transfer-Encoding").equalsIgnoreCase("chunked")) {
+                throw new HttpStatusException(501, "Not Implemented");
+            }
+            body = new ChunkedInputStream(in);
+        } else {
+            long len = contentLength(req);
+            if (len == 0) return;
+            body = new FixedLengthInputStream(in, len);
+        }
+        body = new TimedInputStream(body, deadline, bodyTimeout);
+
+        if ("100-continue".equalsIgnoreCase(h.getOrDefault("Expect", ""))) {
+            body = new ContinueInputStream(body, out);
+        }
+        req.setBodyStream(body);
+    }
+
+    // enforce the route's body limit: declared length up front, actual bytes while reading
+    private static void limitBody(HttpRequest req, long limit) throws HttpStatusException {
+        if (req.getBodyStream() == null) return;
+        if (contentLength(req) > limit) throw new HttpStatusException(413, "Content Too Large");
+        req.setBodyStream(new LimitedInputStream(req.getBodyStream(), limit));
+    }
+
+    private static long contentLength(HttpRequest req) throws HttpStatusException {
+        String cl = req.getHeaders().getOrDefault("Content-Length", "").trim();
+        try {
+            long len = cl.isEmpty() ? 0 : Long.parseLong(cl);
+            if (len < 0) throw new NumberFormatException(cl);
+            return len;
+        } catch (NumberFormatException e) {
+            throw new HttpStatusException(400, "Bad Request");
+        }
+    }
+
+    // Upgrade: h2c is only honoured for bodiless requests (no HTTP/1.1 body to drain first)
+    private static boolean isH2cUpgrade(HttpRequest req) {
+        Map<String,String> h = req.getHeaders();
+        return h.getOrDefault("Upgrade", "").toLowerCase().contains("h2c")
+                && h.getOrDefault("Connection", "").toLowerCase().contains("upgrade")
+                && h.containsKey("HTTP2-Settings")
+                && req.getBodyStream() == null;
+    }
+
+    private static void reject(BufferedResponseWriter resp, HttpStatusException e) {
+        resp.reset();
+        resp.setStatus(e.getStatus(), e.getMessage());
+        resp.setHeader("Connection", "close");
+        resp.send();
+    }
+
+    // bodiless error response before a request could be parsed; the connection is closed afterwards
+    private static void sendError(OutputStream out, HttpStatusException e) {
+        reject(new SimpleHttpResponseWriter(out), e);
+    }
+
+    // Fails with 413 once more than `limit` body bytes have been read (chunked bodies)
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override public int read() throws IOException {
+            int b = super.read();
+            if (b != -1 && --remaining < 0) throw new HttpStatusException(413, "Content Too Large");
+            return b;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0 && (remaining -= n) < 0) throw new HttpStatusException(413, "Content Too Large");
+            return n;
+        }
+    }
+
+    // Arms the read deadline around each body read: a client that stops sending mid-body is cut off
+    private static final class TimedInputStream extends FilterInputStream {
+        private final HashedWheelTimer.Deadline deadline;
+        private final long timeout;
+
+        TimedInputStream(InputStream in, HashedWheelTimer.Deadline deadline, long timeout) {
+            super(in);
+            this.deadline = deadline;
+            this.timeout = timeout;
+        }
+
+        @Override public int read() throws IOException {
+            deadline.armRead(timeout, "body");
+            try { return super.read(); } finally { deadline.disarmRead(); }
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            deadline.armRead(timeout, "body");
+            try { return super.read(b, off, len); } finally { deadline.disarmRead(); }
+        }
+    }
+
+    // Arms the write deadline around each socket write: a client that stops reading is cut off
+    private static final class TimedOutputStream extends FilterOutputStream {
+        private final HashedWheelTimer.Deadline deadline;
+        private final long timeout;
+
+        TimedOutputStream(OutputStream out, HashedWheelTimer.Deadline deadline, long timeout) {
+            super(out);
+            this.deadline = deadline;
+            this.timeout = timeout;
+        }
+
+        @Override public void write(int b) throws IOException {
+            deadline.armWrite(timeout, "write");
+            try { out.write(b); } finally { deadline.disarmWrite(); }
+        }
+
+        @Override public void write(byte[] b, int off, int len) throws IOException {
+            deadline.armWrite(timeout, "write");
+            try { out.write(b, off, len); } finally { deadline.disarmWrite(); }
+        }
+
+        @Override public void flush() throws IOException {
+            deadline.armWrite(timeout, "write");
+            try { out.flush(); } finally { deadline.disarmWrite(); }
+        }
+    }
+
+    // Sends the interim "100 Continue" right before the first body read
+    private static final class ContinueInputStream extends FilterInputStream {
+        private final OutputStream out;
+        private boolean sent;
+
+        ContinueInputStream(InputStream in, OutputStream out) {
+            super(in);
+            this.out = out;
+        }
+
+        @Override public int read() throws IOException {
+            sendContinue();
+            return super.read();
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            sendContinue();
+            return super.read(b, off, len);
+        }
+
+        private void sendContinue() throws IOException {
+            if (sent) return;
+            sent = true;
+            out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
         }
-        return req;
     }
 }
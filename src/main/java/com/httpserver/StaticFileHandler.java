@@ -0,0 +1,235 @@
+package main.java.com.httpserver;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// GET / HEAD /static: index.html for /static itself, files below the static directory
+// for /static/<path>. Byte ranges per RFC 9110 §14: one range → 206 with Content-Range,
+// several → 206 multipart/byteranges (merged where they overlap or touch; more bytes
+// than the file → 200 with all of it), none satisfiable → 416. If-Range with the ETag or
+// Last-Modified turns a stale range request into a full 200. The body is read with
+// positional FileChannel reads in CHUNK pieces and streamed with its Content-Length,
+// so large files and many parallel segments don't load the file into memory.
+public class StaticFileHandler implements RequestHandler {
+
+    private static final int CHUNK = 64 * 1024;           // read / flush size
+    private static final int MAX_RANGES = 100;            // more than that → ignore Range, send it all
+    private static final Map<String, String> TYPES = Map.ofEntries(
+            Map.entry("html", "text/html"), Map.entry("htm", "text/html"), Map.entry("txt", "text/plain"),
+            Map.entry("css", "text/css"), Map.entry("js", "text/javascript"), Map.entry("json", "application/json"),
+            Map.entry("svg", "image/svg+xml"), Map.entry("png", "image/png"), Map.entry("jpg", "image/jpeg"),
+            Map.entry("jpeg", "image/jpeg"), Map.entry("gif", "image/gif"), Map.entry("pdf", "application/pdf"),
+            Map.entry("zip", "application/zip"), Map.entry("gz", "application/gzip"), Map.entry("tar", "application/x-tar"));
+
+    private final Path dir;                               // root of /static/<path>
+    private final Path index;                             // answer for /static
+
+    public StaticFileHandler(Path dir, Path index) {
+        this.dir = dir.toAbsolutePath().normalize();
+        this.index = index;
+    }
+
+    @Override public void handle(HttpRequest req, HttpResponseWriter res) {
+        Path file = resolve(req.getPath());
+        FileChannel ch;
+        long len, mtime;
+        try {
+            if (file == null || !Files.isRegularFile(file)) throw new IOException("no such file");
+            ch = FileChannel.open(file, StandardOpenOption.READ);
+            len = ch.size();
+            mtime = Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            res.setStatus(404, "Not Found");
+            res.setHeader("Content-Type", "text/plain");
+            res.writeBody("Static file not found");
+            return;
+        }
+        try (ch) {
+            String etag = "\"" + Long.toHexString(mtime) + "-" + Long.toHexString(len) + "\"";
+            res.setHeader("Cache-Control", "max-age=60");
+            res.setHeader("Accept-Ranges", "bytes");
+            if (ServerApp.notModified(req, res, etag, mtime)) return;
+
+            String type = contentType(file);
+            boolean head = req.getMethod().equalsIgnoreCase("HEAD");
+            String range = req.getHeaders().get("Range");
+            List<long[]> ranges = range == null || head || !ifRangeHolds(req.getHeaders().get("If-Range"), etag, mtime)
+                    ? null : parseRanges(range, len);
+
+            if (ranges == null) {                         // whole file
+                res.setStatus(200, "OK");
+                res.setHeader("Content-Type", type);
+                res.setHeader("Content-Length", String.valueOf(len));
+                if (!head) copy(ch, 0, len, res);
+            } else if (ranges.isEmpty()) {
+                res.setStatus(416, "Range Not Satisfiable");
+                res.setHeader("Content-Range", "bytes */" + len);
+            } else if (ranges.size() == 1) {
+                long[] r = ranges.get(0);
+                res.setStatus(206, "Partial Content");
+                res.setHeader("Content-Type", type);
+                res.setHeader("Content-Range", "bytes " + r[0] + "-" + r[1] + "/" + len);
+                res.setHeader("Content-Length", String.valueOf(r[1] - r[0] + 1));
+                copy(ch, r[0], r[1] - r[0] + 1, res);
+            } else {
+                writeMultipart(ch, len, type, ranges, res);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // mid-body: the connection has to go
+        }
+    }
+
+    // ----- ranges -----
+
+    // "bytes=0-99, 200-, -50" → inclusive [first, last] pairs clipped to the file;
+    // null = not a byte range set we understand (serve the whole file),
+    // empty = syntactically fine but nothing satisfiable (416)
+    static List<long[]> parseRanges(String header, long len) {
+        String h = header.trim();
+        if (!h.regionMatches(true, 0, "bytes=", 0, 6)) return null;
+        String[] specs = h.substring(6).split(",");
+        if (specs.length > MAX_RANGES) return null;
+        List<long[]> out = new ArrayList<>();
+        try {
+            for (String spec : specs) {
+                String s = spec.trim();
+                int dash = s.indexOf('-');
+                if (dash < 0) return null;
+                String a = s.substring(0, dash).trim(), b = s.substring(dash + 1).trim();
+                if (a.isEmpty()) {                        // suffix: last n bytes
+                    long n = digits(b);
+                    if (n > 0 && len > 0) out.add(new long[] { Math.max(0, len - n), len - 1 });
+                    continue;
+                }
+                long first = digits(a);
+                long last = b.isEmpty() ? Long.MAX_VALUE : digits(b);
+                if (last < first) return null;
+                if (first < len) out.add(new long[] { first, Math.min(last, len - 1) });
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return coalesce(out, len);
+    }
+
+    // RFC 9110 §14.2: ranges that add up to more than the file (e.g. "0-,0-,0-…") get the
+    // whole file once (null); the rest are sorted and overlapping / adjacent ones merged
+    private static List<long[]> coalesce(List<long[]> ranges, long len) {
+        if (ranges.size() < 2) return ranges;
+        long total = 0;
+        for (long[] r : ranges) total += r[1] - r[0] + 1;
+        if (total > len) return null;
+        List<long[]> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(r -> r[0]));
+        List<long[]> out = new ArrayList<>();
+        for (long[] r : sorted) {
+            long[] prev = out.isEmpty() ? null : out.get(out.size() - 1);
+            if (prev != null && r[0] <= prev[1] + 1) prev[1] = Math.max(prev[1], r[1]);
+            else out.add(new long[] { r[0], r[1] });
+        }
+        return out;
+    }
+
+    private static long digits(String s) {
+        if (s.isEmpty() || !s.chars().allMatch(c -> c >= '0' && c <= '9')) throw new NumberFormatException(s);
+        return Long.parseLong(s);
+    }
+
+    // If-Range (RFC 9110 §13.1.5): strong ETag match, or the exact Last-Modified date
+    private static boolean ifRangeHolds(String ifRange, String etag, long mtime) {
+        if (ifRange == null) return true;
+        String v = ifRange.trim();
+        if (v.startsWith("\"") || v.startsWith("W/")) return v.equals(etag);
+        try {
+            Instant since = ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return since.toEpochMilli() == mtime / 1000 * 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    // one part per range, length computed up front so the body streams with Content-Length
+    private static void writeMultipart(FileChannel ch, long len, String type, List<long[]> ranges,
+                                       HttpResponseWriter res) throws IOException {
+        String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong()) + Long.toHexString(System.nanoTime());
+        List<byte[]> heads = new ArrayList<>(ranges.size());
+        long total = 0;
+        for (long[] r : ranges) {
+            byte[] h = ("--" + boundary + "\r\nContent-Type: " + type + "\r\nContent-Range: bytes "
+                    + r[0] + "-" + r[1] + "/" + len + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+            heads.add(h);
+            total += h.length + (r[1] - r[0] + 1) + 2;
+        }
+        byte[] end = ("--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        total += end.length;
+
+        res.setStatus(206, "Partial Content");
+        res.setHeader("Content-Type", "multipart/byteranges; boundary=" + boundary);
+        res.setHeader("Content-Length", String.valueOf(total));
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] r = ranges.get(i);
+            res.writeBody(heads.get(i), 0, heads.get(i).length);
+            copy(ch, r[0], r[1] - r[0] + 1, res);
+            res.writeBody("\r\n");
+        }
+        res.writeBody(end, 0, end.length);
+    }
+
+    // positional reads (no shared file position), one flush per chunk; the final
+    // partial chunk is left for send()
+    private static void copy(FileChannel ch, long pos, long count, HttpResponseWriter res) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(CHUNK, Math.max(count, 1)));
+        while (count > 0) {
+            buf.clear().limit((int) Math.min(buf.capacity(), count));
+            int n = ch.read(buf, pos);
+            if (n < 0) throw new EOFException("File shrank while being sent");
+            res.writeBody(buf.array(), 0, n);
+            pos += n;
+            count -= n;
+            if (count > 0) res.flush();
+        }
+    }
+
+    // ----- files -----
+
+    // /static → index; /static/a/b.txt → dir/a/b.txt, never outside dir
+    private Path resolve(String rawPath) {
+        String p = rawPath;
+        int q = p.indexOf('?');
+        if (q >= 0) p = p.substring(0, q);
+        p = p.substring(Math.min(p.length(), "/static".length()));
+        if (p.isEmpty() || p.equals("/")) return index;
+        if (p.charAt(0) != '/') return null;              // e.g. /staticfoo
+        Path f;
+        try {
+            f = dir.resolve(URLDecoder.decode(p.substring(1).replace("+", "%2B"), StandardCharsets.UTF_8)).normalize();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return f.startsWith(dir) ? f : null;
+    }
+
+    private static String contentType(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "application/octet-stream"
+                : TYPES.getOrDefault(name.substring(dot + 1).toLowerCase(), "application/octet-stream");
+    }
+}
@@ -0,0 +1,117 @@
+package main.java.com.httpserver;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+/*
+ * Compares the resource stores at scale: load time, retained heap, off-heap bytes,
+ * GC count / time / longest pause, and random read throughput (appendJson).
+ * Usage: StoreBench [records] [map|compact|both]   (defaults: 1000000 both)
+ * "both" runs each store in its own JVM (same -Xmx etc.) so one can't tax the other's GC.
+ * Records look like /resources POST bodies: {"name":"item-N","value":N,"tag":"t-K"}.
+ */
+public class StoreBench {
+
+    private static final int READS = 2_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int n       = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String mode = args.length > 1 ? args[1] : "both";
+        if (!mode.equals("both")) {
+            run(n, mode);
+            return;
+        }
+        for (String m : List.of("map", "compact")) {
+            List<String> cmd = new ArrayList<>();
+            cmd.add(System.getProperty("java.home") + "/bin/java");
+            cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            cmd.addAll(List.of("-cp", System.getProperty("java.class.path"), StoreBench.class.getName(), String.valueOf(n), m));
+            int exit = new ProcessBuilder(cmd).inheritIO().start().waitFor();
+            if (exit != 0) System.out.println(m + ": exited with " + exit);
+        }
+    }
+
+    private static void run(int n, String mode) {
+        AtomicLong maxPauseMs = new AtomicLong();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener((note, hb) -> {
+                if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(note.getType())) return;
+                var info = GarbageCollectionNotificationInfo.from((CompositeData) note.getUserData());
+                String name = info.getGcName();
+                if (name.contains("Concurrent") || name.contains("Cycles")) return; // concurrent work, not a pause
+                maxPauseMs.accumulateAndGet(info.getGcInfo().getDuration(), Math::max);
+            }, null, null);
+        }
+        long heapBefore = usedHeapAfterGc();
+        long[] gc0 = gcTotals();
+        maxPauseMs.set(0);
+
+        ResourceStore store = mode.equals("compact") ? new CompactResourceStore(64 * 1024 * 1024) : new MapResourceStore();
+        long t0 = System.nanoTime();
+        Map<Integer, Map<String, Object>> batch = new HashMap<>();
+        for (int id = 1; id <= n; id++) {
+            Map<String, Object> d = new HashMap<>();
+            d.put("name", "item-" + id);
+            d.put("value", id);
+            d.put("tag", "t-" + (id % 100));
+            batch.put(id, d);
+            if (batch.size() == 1000) { store.putAll(batch); batch.clear(); } // like bulk ingest
+        }
+        store.putAll(batch);
+        long loadNs = System.nanoTime() - t0;
+        long[] gcLoad = gcTotals();
+        long pauseLoad = maxPauseMs.getAndSet(0);
+
+        // explicit collections for the heap figure are left out of the GC numbers
+        long heap = usedHeapAfterGc() - heapBefore;
+        long direct = 0;
+        for (BufferPoolMXBean p : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+            if (p.getName().equals("direct")) direct = p.getMemoryUsed();
+
+        long[] gc1 = gcTotals();
+        maxPauseMs.set(0);
+
+        StringBuilder sb = new StringBuilder(256);
+        long bytes = 0;
+        t0 = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            sb.setLength(0);
+            store.appendJson(1 + ThreadLocalRandom.current().nextInt(n), sb);
+            bytes += sb.length();
+        }
+        long readNs = System.nanoTime() - t0;
+        long[] gc2 = gcTotals();
+        long runs = gcLoad[0] - gc0[0] + gc2[0] - gc1[0], gcMs = gcLoad[1] - gc0[1] + gc2[1] - gc1[1];
+
+        System.out.printf("%-8s %,d records  load %,.0f ms  heap %,d MiB (%.0f B/record)  off-heap %,d MiB  "
+                        + "GC %d runs / %,d ms (max pause %d ms)  reads %,.0f/s (%d B avg)%n",
+                mode, store.size(), loadNs / 1e6, heap >> 20, (double) heap / n, direct >> 20,
+                runs, gcMs, Math.max(pauseLoad, maxPauseMs.get()), READS / (readNs / 1e9), bytes / READS);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    // { collections, milliseconds } over all collectors
+    private static long[] gcTotals() {
+        long count = 0, ms = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            ms += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] { count, ms };
+    }
+}
@@ -0,0 +1,175 @@
+package main.java.com.httpserver;
+
+import main.java.com.common.Json;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Sampled request capture to a JSONL file, one object per exchange:
+//   {"ts":…,"method":…,"path":…,"headers":{…},"body":…,"bodyTruncated":…,
+//    "status":…,"responseBytes":…,"durationUs":…}
+// Request threads only copy what they already hold and offer() it to a bounded
+// queue; a daemon thread serializes and writes in batches. A full queue drops the
+// record (counted) instead of slowing requests down. Credentials are redacted.
+public class TrafficCapture {
+
+    private static final Set<String> REDACTED = Set.of("x-api-key", "authorization", "cookie", "proxy-authorization");
+    private static final int BATCH = 256;                 // records per write / flush
+
+    private final Path file;
+    private final double sampleRate;                      // 0..1
+    private final int maxBodyBytes;                       // request body bytes kept per record
+    private final BlockingQueue<Record> queue;
+    private final AtomicLong captured = new AtomicLong(), dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    // one exchange, immutable once queued
+    private record Record(long ts, String method, String path, Map<String,String> headers,
+                          byte[] body, boolean bodyTruncated, int status, long responseBytes, long durationNanos) { }
+
+    public TrafficCapture(Path file, double sampleRate, int maxBodyBytes, int queueSize) throws IOException {
+        this.file = file;
+        this.sampleRate = sampleRate;
+        this.maxBodyBytes = maxBodyBytes;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND).close(); // fail fast
+        writer = new Thread(this::writeLoop, "traffic-capture");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public long getCaptured() { return captured.get(); }
+    public long getDropped()  { return dropped.get(); }
+
+    // per-request coin flip, decided before any copying happens
+    boolean sample() {
+        return sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    // tee the request body so whatever the handler reads is also captured (up to the limit)
+    Tee tee(HttpRequest req) {
+        Tee t = new Tee(req.getBodyStream(), maxBodyBytes);
+        if (req.getBodyStream() != null) req.setBodyStream(t);
+        return t;
+    }
+
+    void record(long startMillis, HttpRequest req, Tee body, int status, long responseBytes, long durationNanos) {
+        if (closed) return;
+        Map<String,String> h = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        h.putAll(req.getHeaders());
+        Record r = new Record(startMillis, req.getMethod(), req.getPath(), h,
+                body.bytes(), body.truncated, status, responseBytes, durationNanos);
+        if (queue.offer(r)) captured.incrementAndGet();
+        else dropped.incrementAndGet();
+    }
+
+    // stop accepting records, write what is queued
+    public void close() {
+        closed = true; // no interrupt: it would close the file channel mid-write
+        try { writer.join(5000); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>(BATCH);
+        StringBuilder sb = new StringBuilder(1024);
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            while (true) {
+                Record first;
+                try {
+                    first = queue.poll(200, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH - 1);
+                } else if (closed) {
+                    queue.drainTo(batch);
+                }
+                for (Record r : batch) {
+                    sb.setLength(0);
+                    w.append(toJson(sb, r).append('\n'));
+                }
+                batch.clear();
+                if (queue.isEmpty()) w.flush(); // idle → make it visible on disk
+                if (closed && queue.isEmpty()) return;
+            }
+        } catch (IOException e) {
+            Logger.log(Logger.Level.ERROR, "Traffic capture stopped: " + e.getMessage());
+        }
+    }
+
+    private static StringBuilder toJson(StringBuilder sb, Record r) {
+        sb.append("{\"ts\":").append(r.ts)
+          .append(",\"method\":"); Json.quote(sb, r.method);
+        sb.append(",\"path\":"); Json.quote(sb, r.path);
+        sb.append(",\"headers\":{");
+        boolean first = true;
+        for (var e : r.headers.entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            Json.quote(sb, e.getKey()).append(':');
+            Json.quote(sb, REDACTED.contains(e.getKey().toLowerCase()) ? "REDACTED" : e.getValue());
+        }
+        sb.append('}');
+        if (r.body.length > 0) {
+            sb.append(",\"body\":");
+            Json.quote(sb, new String(r.body, StandardCharsets.UTF_8));
+        }
+        if (r.bodyTruncated) sb.append(",\"bodyTruncated\":true");
+        return sb.append(",\"status\":").append(r.status)
+                 .append(",\"responseBytes\":").append(r.responseBytes)
+                 .append(",\"durationUs\":").append(r.durationNanos / 1000)
+                 .append('}');
+    }
+
+    // copies the first max bytes read through it
+    static final class Tee extends FilterInputStream {
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private final int max;
+        private boolean truncated;
+
+        Tee(InputStream in, int max) {
+            super(in);
+            this.max = max;
+        }
+
+        @Override public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) keep(new byte[] { (byte) b }, 0, 1);
+            return b;
+        }
+
+        @Override public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) keep(b, off, n);
+            return n;
+        }
+
+        private void keep(byte[] b, int off, int n) {
+            int room = max - copy.size();
+            if (n > room) truncated = true;
+            if (room > 0) copy.write(b, off, Math.min(room, n));
+        }
+
+        byte[] bytes() { return copy.toByteArray(); }
+    }
+}
@@ -0,0 +1,141 @@
+package main.java.com.httpserver;
+
+import main.java.com.common.HttpIo;
+import main.java.com.common.MemoryTransport;
+import main.java.com.common.TcpTransport;
+import main.java.com.common.Transport;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/*
+ * Framework overhead per request: keep-alive GETs against an in-process SimpleHttpServer
+ * whose handler does nothing, over in-memory pipes (parse, route, filters, serialize and
+ * nothing else) and over loopback TCP (the same plus the kernel). The difference between
+ * the two is what the network stack costs; the memory numbers are the framework itself.
+ * Usage: TransportBench [connections] [requests per connection] [mem|tcp|both]
+ *        (defaults: 1000 200 both; tcp listens on port 18080)
+ * All connections are opened before the clock starts and send their requests in parallel.
+ */
+public class TransportBench {
+
+    private static final int TCP_PORT = 18080;
+    private static final byte[] BODY = "pong".getBytes(StandardCharsets.ISO_8859_1);
+
+    public static void main(String[] args) throws Exception {
+        int conns   = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int perConn = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        String mode = args.length > 2 ? args[2] : "both";
+
+        if (!mode.equals("tcp")) run("mem", new MemoryTransport(), 1, conns, perConn);
+        if (!mode.equals("mem")) run("tcp", new TcpTransport(), TCP_PORT, conns, perConn);
+        System.exit(0); // the server's connection threads are not daemons
+    }
+
+    private static void run(String label, Transport transport, int port, int conns, int perConn) throws Exception {
+        SimpleHttpServer srv = new SimpleHttpServer(port, null);
+        srv.on("GET", "/ping", TransportBench::ping);
+        start(srv, transport);
+
+        pass(transport, port, Math.min(conns, 50), Math.max(perConn, 200), null); // warm up the JIT
+        pass(transport, port, conns, perConn, label);
+        srv.stop();
+    }
+
+    // the do-nothing handler
+    static void ping(HttpRequest req, HttpResponseWriter res) {
+        res.setStatus(200, "OK");
+        res.setHeader("Content-Type", "text/plain");
+        res.writeBody(BODY, 0, BODY.length);
+    }
+
+    // keep-alive server on its own daemon thread
+    static void start(SimpleHttpServer srv, Transport transport) {
+        srv.setTransport(transport);
+        srv.setKeepAliveTimeout(60_000);
+        Thread server = new Thread(() -> {
+            try { srv.start(); } catch (IOException e) { e.printStackTrace(); }
+        }, "bench-server");
+        server.setDaemon(true);
+        server.start();
+    }
+
+    // conns connections, perConn sequential GET /ping each; prints a summary if label != null;
+    // returns all latencies in ns, sorted
+    static long[] pass(Transport transport, int port, int conns, int perConn, String label) throws Exception {
+        List<Transport.Connection> open = new ArrayList<>(conns);
+        for (int i = 0; i < conns; i++) open.add(connect(transport, port));
+
+        long[][] lat = new long[conns][perConn];
+        CountDownLatch go = new CountDownLatch(1), done = new CountDownLatch(conns);
+        for (int i = 0; i < conns; i++) {
+            int c = i;
+            Thread t = new Thread(() -> {
+                try (Transport.Connection conn = open.get(c)) {
+                    go.await();
+                    exchange(conn, lat[c]);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    done.countDown();
+                }
+            }, "bench-client-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        long wall = System.nanoTime();
+        go.countDown();
+        done.await();
+        wall = System.nanoTime() - wall;
+        long[] sorted = Arrays.stream(lat).flatMapToLong(Arrays::stream).sorted().toArray();
+        if (label != null) report(label, conns, sorted, wall);
+        return sorted;
+    }
+
+    // the server may still be binding its listener
+    private static Transport.Connection connect(Transport transport, int port) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return transport.connect("localhost", port, 5_000);
+            } catch (IOException e) {
+                if (attempt == 50) throw e;
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    private static void exchange(Transport.Connection conn, long[] lat) throws IOException {
+        byte[] req = "GET /ping HTTP/1.1\r\nHost: bench\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+        InputStream in = new HttpIo.LineBufferedInputStream(conn.getInputStream());
+        OutputStream out = new BufferedOutputStream(conn.getOutputStream());
+        byte[] body = new byte[BODY.length];
+        for (int i = 0; i < lat.length; i++) {
+            long t0 = System.nanoTime();
+            out.write(req);
+            out.flush();
+            String status = HttpIo.readLine(in, 8192);
+            if (status == null || !status.startsWith("HTTP/1.1 200")) throw new IOException("Unexpected response: " + status);
+            long length = -1;
+            for (String line; (line = HttpIo.readLine(in, 8192)) != null && !line.isEmpty(); ) {
+                if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) length = Long.parseLong(line.substring(15).trim());
+            }
+            if (length != body.length) throw new IOException("Unexpected Content-Length: " + length);
+            for (int n = 0, r; n < body.length; n += r) {
+                if ((r = in.read(body, n, body.length - n)) < 0) throw new IOException("Connection closed mid-body");
+            }
+            lat[i] = System.nanoTime() - t0;
+        }
+    }
+
+    private static void report(String label, int conns, long[] s, long wallNs) {
+        System.out.printf("%-4s %5d conns %8d requests  %9.0f req/s  p50 %8.1f us  p99 %8.1f us  max %8.1f us%n",
+                label, conns, s.length, s.length / (wallNs / 1e9),
+                s[s.length / 2] / 1e3, s[(int) (s.length * 0.99)] / 1e3, s[s.length - 1] / 1e3);
+    }
+}